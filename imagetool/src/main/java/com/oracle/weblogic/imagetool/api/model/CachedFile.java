@@ -12,6 +12,7 @@ import java.nio.file.Paths;
 import java.util.Objects;
 
 import com.oracle.weblogic.imagetool.cachestore.CacheStore;
+import com.oracle.weblogic.imagetool.cachestore.ContentStore;
 import com.oracle.weblogic.imagetool.installer.InstallerType;
 import com.oracle.weblogic.imagetool.logging.LoggingFacade;
 import com.oracle.weblogic.imagetool.logging.LoggingFactory;
@@ -87,7 +88,7 @@ public class CachedFile {
         // check entry exists in cache
         String key = getKey();
         logger.entering(key);
-        String filePath = cacheStore.getValueFromCache(key);
+        String filePath = cacheStore.fetchValue(key);
         if (!isFileOnDisk(filePath)) {
             throw new FileNotFoundException(Utils.getMessage("IMG-0011", key));
         }
@@ -109,7 +110,12 @@ public class CachedFile {
         logger.info("IMG-0043", sourceFile);
         String targetFilename = new File(sourceFile).getName();
         try {
-            result = Files.copy(Paths.get(sourceFile), Paths.get(buildContextDir, targetFilename));
+            if (ContentStore.isContentAddressed(sourceFile)) {
+                // content-addressed files are never modified, a link avoids copying large installers
+                result = ContentStore.linkOrCopy(Paths.get(sourceFile), Paths.get(buildContextDir, targetFilename));
+            } else {
+                result = Files.copy(Paths.get(sourceFile), Paths.get(buildContextDir, targetFilename));
+            }
         } catch (Exception ee) {
             String msg = Utils.getMessage("IMG-0064", sourceFile, buildContextDir);
             logger.severe(msg);
@@ -0,0 +1,319 @@
+// Copyright (c) 2021, Oracle and/or its affiliates.
+// Licensed under the Universal Permissive License v 1.0 as shown at https://oss.oracle.com/licenses/upl.
+
+package com.oracle.weblogic.imagetool.aru;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.util.Date;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import com.oracle.weblogic.imagetool.logging.LoggingFacade;
+import com.oracle.weblogic.imagetool.logging.LoggingFactory;
+import com.oracle.weblogic.imagetool.util.HttpUtil;
+import com.oracle.weblogic.imagetool.util.RetryPolicy;
+import com.oracle.weblogic.imagetool.util.Utils;
+import org.apache.http.Header;
+import org.apache.http.HttpHeaders;
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpStatus;
+import org.apache.http.client.fluent.Executor;
+import org.apache.http.client.fluent.Request;
+import org.apache.http.util.EntityUtils;
+
+/**
+ * ARU metadata responses saved in the cache directory, so that builds do not query ARU again for the same releases,
+ * recommended patches, and bug searches.  A response is used for the time to live of its endpoint, and then it is
+ * revalidated with its ETag and Last-Modified date.  When ARU cannot be reached, an expired response is used instead.
+ * Responses that contain an ARU error are not saved.  Without a directory, responses are read from ARU every time.
+ * Patch sets that passed the ARU conflict check are also recorded, so that the same patches are not checked again.
+ */
+class AruMetadataCache {
+
+    private static final LoggingFacade logger = LoggingFactory.getLogger(AruMetadataCache.class);
+
+    static final String TTL = "WLSIMG_ARU_METADATA_TTL";
+    static final String DIR_NAME = ".aru";
+    private static final int TIMEOUT = 30000;
+
+    /**
+     * The ARU endpoints that are cached, and how long their responses are used without asking ARU.
+     */
+    enum Endpoint {
+        RELEASES(TimeUnit.HOURS.toMillis(24)),
+        RECOMMENDED(TimeUnit.HOURS.toMillis(4)),
+        SEARCH(TimeUnit.HOURS.toMillis(4)),
+        CONFLICTS(TimeUnit.HOURS.toMillis(24));
+
+        private final long defaultTtl;
+
+        Endpoint(long defaultTtl) {
+            this.defaultTtl = defaultTtl;
+        }
+    }
+
+    private final Path directory;
+    private final Map<Endpoint, Long> ttl = new EnumMap<>(Endpoint.class);
+    private volatile boolean refresh = false;
+    private RetryPolicy retryPolicy = RetryPolicy.shared();
+
+    /**
+     * Create a metadata cache in a directory.
+     * @param directory  the directory for the saved responses, or null to not save responses
+     * @param ttlSetting time to live for all endpoints, like 4h, or for each endpoint, like releases=24h,search=1h
+     */
+    AruMetadataCache(Path directory, String ttlSetting) {
+        this.directory = directory;
+        for (Endpoint endpoint : Endpoint.values()) {
+            ttl.put(endpoint, endpoint.defaultTtl);
+        }
+        if (!Utils.isEmptyString(ttlSetting)) {
+            for (String setting : ttlSetting.split(",")) {
+                String[] parts = setting.split("=", 2);
+                try {
+                    if (parts.length == 1) {
+                        long millis = Utils.parseDuration(parts[0]).toMillis();
+                        ttl.replaceAll((endpoint, value) -> millis);
+                    } else {
+                        ttl.put(Endpoint.valueOf(parts[0].trim().toUpperCase()),
+                            Utils.parseDuration(parts[1]).toMillis());
+                    }
+                } catch (IllegalArgumentException e) {
+                    logger.warning("IMG-0144", TTL, setting);
+                }
+            }
+        }
+    }
+
+    /**
+     * Ignore saved responses that have not expired, and get every response from ARU again.
+     * @param value true to refresh the saved responses
+     */
+    void refresh(boolean value) {
+        refresh = value;
+    }
+
+    /**
+     * Use a retry policy other than the shared policy for requests to Oracle.
+     * @param policy the retry policy
+     * @return this
+     */
+    AruMetadataCache retryPolicy(RetryPolicy policy) {
+        retryPolicy = policy;
+        return this;
+    }
+
+    /**
+     * Get an ARU metadata document, from the cache directory if it has not expired.
+     * @param endpoint the ARU endpoint, for its time to live
+     * @param url      the ARU URL
+     * @param userId   Oracle Support credential user
+     * @param password Oracle Support credential password
+     * @return the ARU response
+     * @throws IOException if ARU cannot be reached and no response was saved
+     */
+    AruResponse get(Endpoint endpoint, String url, String userId, String password) throws IOException {
+        return get(endpoint, url, userId, HttpUtil.getHttpExecutor(userId, password));
+    }
+
+    AruResponse get(Endpoint endpoint, String url, String userId, Executor executor) throws IOException {
+        if (directory == null) {
+            return retryPolicy.execute(url, () -> executor.execute(request(url, null))
+                .handleResponse(response -> {
+                    checkStatus(response, url);
+                    return AruResponse.parse(response.getEntity().getContent());
+                }));
+        }
+
+        // responses depend on the entitlements of the user
+        Path file = directory.resolve(Utils.toHex(Utils.sha256Digest()
+            .digest((userId + " " + url).getBytes(StandardCharsets.UTF_8))));
+        Entry saved = refresh ? null : Entry.read(file);
+        if (saved != null && System.currentTimeMillis() - saved.fetched < ttl.get(endpoint)) {
+            logger.fine("Using ARU metadata for {0} saved at {1}", url, new Date(saved.fetched));
+            return saved.response(file);
+        }
+
+        try {
+            return retryPolicy.execute(url, () -> executor.execute(request(url, saved))
+                .handleResponse(response -> {
+                    if (response.getStatusLine().getStatusCode() == HttpStatus.SC_NOT_MODIFIED && saved != null) {
+                        logger.fine("ARU metadata for {0} has not changed", url);
+                        // the modification time of the file is the time it was last validated
+                        Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis()));
+                        return saved.response(file);
+                    }
+                    checkStatus(response, url);
+                    return save(file, url, response);
+                }));
+        } catch (IOException e) {
+            if (saved == null) {
+                throw e;
+            }
+            logger.warning("IMG-0145", url, new Date(saved.fetched), e.getMessage());
+            return saved.response(file);
+        }
+    }
+
+    /**
+     * Check whether the patch set passed the ARU conflict check within the time to live of conflict checks.
+     * @param userId      Oracle Support credential user
+     * @param fingerprint canonical description of the installed and candidate patches
+     * @return true if the patch set had no conflicts when it was last checked
+     */
+    boolean hasNoConflicts(String userId, String fingerprint) {
+        if (directory == null || refresh) {
+            return false;
+        }
+        Path file = conflictsFile(userId, fingerprint);
+        try {
+            long checked = Files.getLastModifiedTime(file).toMillis();
+            if (System.currentTimeMillis() - checked < ttl.get(Endpoint.CONFLICTS)) {
+                logger.fine("Patches had no conflicts when they were checked at {0}", new Date(checked));
+                return true;
+            }
+        } catch (IOException e) {
+            // never checked
+        }
+        return false;
+    }
+
+    /**
+     * Record that the patch set passed the ARU conflict check.  Patch sets with conflicts are never recorded.
+     * @param userId      Oracle Support credential user
+     * @param fingerprint canonical description of the installed and candidate patches
+     */
+    void saveNoConflicts(String userId, String fingerprint) {
+        if (directory == null) {
+            return;
+        }
+        Path file = conflictsFile(userId, fingerprint);
+        try {
+            Files.createDirectories(directory);
+            Files.write(file, fingerprint.getBytes(StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            logger.fine("Unable to save the ARU conflict check result {0}: {1}", file, e.getMessage());
+        }
+    }
+
+    private Path conflictsFile(String userId, String fingerprint) {
+        return directory.resolve("conflicts-" + Utils.toHex(Utils.sha256Digest()
+            .digest((userId + " " + fingerprint).getBytes(StandardCharsets.UTF_8))));
+    }
+
+    /**
+     * A request for the URL, conditional on the saved response if there is one.
+     */
+    private static Request request(String url, Entry saved) {
+        Request request = Request.Get(url).connectTimeout(TIMEOUT).socketTimeout(TIMEOUT);
+        if (saved != null && saved.etag != null) {
+            request.addHeader(HttpHeaders.IF_NONE_MATCH, saved.etag);
+        }
+        if (saved != null && saved.lastModified != null) {
+            request.addHeader(HttpHeaders.IF_MODIFIED_SINCE, saved.lastModified);
+        }
+        return request;
+    }
+
+    private static void checkStatus(HttpResponse response, String url) throws IOException {
+        if (response.getStatusLine().getStatusCode() != HttpStatus.SC_OK) {
+            EntityUtils.consume(response.getEntity());
+            throw RetryPolicy.statusError(response, url);
+        }
+    }
+
+    /**
+     * Write the response to the file, and read it from the file, so that the response is never held in memory.
+     * Responses with an ARU error are not kept.
+     */
+    private static AruResponse save(Path file, String url, HttpResponse response) throws IOException {
+        Files.createDirectories(file.getParent());
+        Path temp = Files.createTempFile(file.getParent(), file.getFileName().toString(), ".tmp");
+        try {
+            try (OutputStream output = Files.newOutputStream(temp);
+                 InputStream input = response.getEntity().getContent()) {
+                StringBuilder headers = new StringBuilder("URL: ").append(url).append("\n");
+                Header etag = response.getFirstHeader(HttpHeaders.ETAG);
+                if (etag != null) {
+                    headers.append(HttpHeaders.ETAG).append(": ").append(etag.getValue()).append("\n");
+                }
+                Header lastModified = response.getFirstHeader(HttpHeaders.LAST_MODIFIED);
+                if (lastModified != null) {
+                    headers.append(HttpHeaders.LAST_MODIFIED).append(": ").append(lastModified.getValue()).append("\n");
+                }
+                output.write(headers.append("\n").toString().getBytes(StandardCharsets.UTF_8));
+                byte[] buffer = new byte[8192];
+                int read;
+                while ((read = input.read(buffer)) != -1) {
+                    output.write(buffer, 0, read);
+                }
+            }
+            AruResponse result = Entry.read(temp).response(temp);
+            if (!result.hasError()) {
+                // another build may read the file at the same time
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            }
+            return result;
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /**
+     * A saved response, with HTTP-style header lines, an empty line, and the response body.
+     * The modification time of the file is the time that the response was last received or validated.
+     */
+    private static class Entry {
+        private long fetched;
+        private String etag;
+        private String lastModified;
+
+        static Entry read(Path file) {
+            if (!Files.isRegularFile(file)) {
+                return null;
+            }
+            Entry entry = new Entry();
+            try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+                entry.fetched = Files.getLastModifiedTime(file).toMillis();
+                String line;
+                while ((line = reader.readLine()) != null && !line.isEmpty()) {
+                    String[] header = line.split(": ", 2);
+                    if (header.length < 2) {
+                        continue;
+                    }
+                    if (HttpHeaders.ETAG.equals(header[0])) {
+                        entry.etag = header[1];
+                    } else if (HttpHeaders.LAST_MODIFIED.equals(header[0])) {
+                        entry.lastModified = header[1];
+                    }
+                }
+            } catch (IOException e) {
+                logger.fine("Ignoring unreadable ARU metadata {0}: {1}", file, e.getMessage());
+                return null;
+            }
+            return entry;
+        }
+
+        /**
+         * Read the response body that follows the header lines.
+         */
+        AruResponse response(Path file) throws IOException {
+            try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+                String line;
+                do {
+                    line = reader.readLine();
+                } while (line != null && !line.isEmpty());
+                return AruResponse.parse(reader);
+            }
+        }
+    }
+}
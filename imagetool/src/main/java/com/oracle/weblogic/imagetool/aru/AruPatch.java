@@ -3,19 +3,15 @@
 
 package com.oracle.weblogic.imagetool.aru;
 
-import java.util.ArrayList;
+import java.io.IOException;
+import java.io.InputStream;
 import java.util.List;
 import java.util.Map;
 import java.util.stream.Collectors;
-import javax.xml.xpath.XPathExpressionException;
 
 import com.oracle.weblogic.imagetool.logging.LoggingFacade;
 import com.oracle.weblogic.imagetool.logging.LoggingFactory;
 import com.oracle.weblogic.imagetool.util.Utils;
-import com.oracle.weblogic.imagetool.util.XPathUtil;
-import org.w3c.dom.Document;
-import org.w3c.dom.Node;
-import org.w3c.dom.NodeList;
 
 /**
  * Metadata for a patch, as defined by ARU.
@@ -34,6 +30,8 @@ public class AruPatch implements Comparable<AruPatch> {
     private String downloadHost;
     private String downloadPath;
     private String fileName;
+    private String sha256;
+    private long size;
     private String access;
     private String lifecycle;
 
@@ -105,6 +103,10 @@ public class AruPatch implements Comparable<AruPatch> {
         return !Utils.isEmptyString(psuBundle);
     }
 
+    public String downloadHost() {
+        return downloadHost;
+    }
+
     public AruPatch downloadHost(String value) {
         downloadHost = value;
         return this;
@@ -132,6 +134,32 @@ public class AruPatch implements Comparable<AruPatch> {
         return fileName;
     }
 
+    /**
+     * The SHA-256 digest of the patch file, as published by ARU.
+     * @return hex string digest, or null if not known
+     */
+    public String sha256() {
+        return sha256;
+    }
+
+    public AruPatch sha256(String value) {
+        sha256 = Utils.isEmptyString(value) ? null : value.toLowerCase();
+        return this;
+    }
+
+    /**
+     * The size of the patch file in bytes, as published by ARU.
+     * @return size in bytes, or 0 if not known
+     */
+    public long size() {
+        return size;
+    }
+
+    public AruPatch size(long value) {
+        size = value;
+        return this;
+    }
+
     public AruPatch access(String value) {
         access = value;
         return this;
@@ -163,60 +191,13 @@ public class AruPatch implements Comparable<AruPatch> {
     }
 
     /**
-     * Given an XML document with a list of patches, extract each patch into the AruPatch bean and return the list.
-     * @param patchList an XML document with a list of patches from ARU
-     * @return a list of AruPatch
-     * @throws XPathExpressionException if the document is not the expected format from ARU
-     */
-    public static List<AruPatch> getPatches(Document patchList) throws XPathExpressionException {
-        return getPatches(patchList, "");
-    }
-
-    /**
-     * Given an XML document with a list of patches, extract each patch into the AruPatch bean and return the list.
+     * Read the patches for the Linux platforms from an ARU patch search or recommended patches response.
      * @param patchList an XML document with a list of patches from ARU
-     * @param patchSelector additional XPath selector to limit the patches further
      * @return a list of AruPatch
-     * @throws XPathExpressionException if the document is not the expected format from ARU
+     * @throws IOException if the document cannot be read, or is not the expected format from ARU
      */
-    public static List<AruPatch> getPatches(Document patchList, String patchSelector) throws XPathExpressionException {
-        // create list of all patches that apply to the Linux platform
-        NodeList nodeList = XPathUtil.nodelist(patchList,
-            "/results/patch[./platform[@id='2000' or @id='226']]" + patchSelector);
-        List<AruPatch> result = new ArrayList<>();
-        for (int i = 0; i < nodeList.getLength(); i++) {
-            if (nodeList.item(i).getNodeType() == Node.ELEMENT_NODE) {
-                AruPatch patch = new AruPatch()
-                    .patchId(XPathUtil.string(nodeList.item(i), "./name"))
-                    .version(XPathUtil.string(nodeList.item(i), "./release/@name"))
-                    .release(XPathUtil.string(nodeList.item(i), "./release/@id"))
-                    .releaseName(XPathUtil.string(nodeList.item(i), "./release/text()"))
-                    .description(XPathUtil.string(nodeList.item(i), "./bug/abstract"))
-                    .product(XPathUtil.string(nodeList.item(i), "./product/@id"))
-                    .psuBundle(XPathUtil.string(nodeList.item(i), "./psu_bundle"))
-                    .access(XPathUtil.string(nodeList.item(i), "./access"))
-                    .lifecycle(XPathUtil.string(nodeList.item(i), "./life_cycle"))
-                    .downloadHost(XPathUtil.string(nodeList.item(i), "./files/file/download_url/@host"))
-                    .downloadPath(XPathUtil.string(nodeList.item(i), "./files/file/download_url/text()"));
-
-                int index = patch.downloadPath().indexOf("patch_file=");
-                if (index < 0) {
-                    throw new XPathExpressionException(Utils.getMessage("IMG-0059", patch.patchId()));
-                }
-                patch.fileName(patch.downloadPath().substring(index + "patch_file=".length()));
-
-                logger.fine("AruPatch created id:" + patch.patchId()
-                    + "  ver:" + patch.version()
-                    + "  desc:" + patch.description()
-                    + "  rel:" + patch.release()
-                    + "  product:" + patch.product()
-                    + "  relName:" + patch.releaseName()
-                    + "  psu:" + patch.psuBundle()
-                    + "  url:" + patch.downloadUrl());
-                result.add(patch);
-            }
-        }
-        return result;
+    public static List<AruPatch> getPatches(InputStream patchList) throws IOException {
+        return AruResponse.parse(patchList).patches();
     }
 
     /**
@@ -0,0 +1,249 @@
+// Copyright (c) 2021, Oracle and/or its affiliates.
+// Licensed under the Universal Permissive License v 1.0 as shown at https://oss.oracle.com/licenses/upl.
+
+package com.oracle.weblogic.imagetool.aru;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import com.oracle.weblogic.imagetool.logging.LoggingFacade;
+import com.oracle.weblogic.imagetool.logging.LoggingFactory;
+import com.oracle.weblogic.imagetool.util.Utils;
+
+/**
+ * The parts of an ARU REST response that are used by the Image Tool: the error, the releases, and the patches for
+ * the Linux platforms.  The response is read with a streaming parser, directly from the HTTP response or a file,
+ * without building a DOM or evaluating XPath expressions for each field of each patch.
+ * A response is not modified after it is read, so it can be shared by threads.
+ */
+class AruResponse {
+
+    private static final LoggingFacade logger = LoggingFactory.getLogger(AruResponse.class);
+
+    // the Generic and Linux x86-64 platforms
+    private static final List<String> PLATFORMS = Arrays.asList("2000", "226");
+    private static final XMLInputFactory factory = createFactory();
+
+    private String errorId = "";
+    private String errorMessage = "";
+    private final List<Release> releases = new ArrayList<>();
+    private final List<AruPatch> patches = new ArrayList<>();
+
+    private AruResponse() {
+        // use parse
+    }
+
+    private static XMLInputFactory createFactory() {
+        XMLInputFactory result = XMLInputFactory.newInstance();
+        // Prevent XXE attacks
+        result.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        result.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        result.setProperty(XMLInputFactory.IS_COALESCING, true);
+        return result;
+    }
+
+    /**
+     * Read an ARU response.
+     * @param input the XML response, which is not closed
+     * @return the response
+     * @throws IOException if the response cannot be read or is not well formed XML
+     */
+    static AruResponse parse(InputStream input) throws IOException {
+        try {
+            return parse(factory.createXMLStreamReader(input));
+        } catch (XMLStreamException e) {
+            throw new IOException("Malformed XML document", e);
+        }
+    }
+
+    /**
+     * Read an ARU response.
+     * @param input the XML response, which is not closed
+     * @return the response
+     * @throws IOException if the response cannot be read or is not well formed XML
+     */
+    static AruResponse parse(Reader input) throws IOException {
+        try {
+            return parse(factory.createXMLStreamReader(input));
+        } catch (XMLStreamException e) {
+            throw new IOException("Malformed XML document", e);
+        }
+    }
+
+    private static AruResponse parse(XMLStreamReader reader) throws XMLStreamException, IOException {
+        AruResponse response = new AruResponse();
+        // element names from the root to the current element
+        List<String> path = new ArrayList<>();
+        StringBuilder text = new StringBuilder();
+        // the first value of each element and attribute of the current patch, by path relative to the patch
+        Map<String, String> fields = new HashMap<>();
+        boolean linux = false;
+        Release release = null;
+        try {
+            while (reader.hasNext()) {
+                switch (reader.next()) {
+                    case XMLStreamConstants.START_ELEMENT:
+                        path.add(reader.getLocalName());
+                        text.setLength(0);
+                        if (path.size() == 2 && "release".equals(path.get(1))) {
+                            release = new Release(reader.getAttributeValue(null, "id"),
+                                reader.getAttributeValue(null, "name"));
+                        } else if (path.size() > 2 && "patch".equals(path.get(1))) {
+                            String field = String.join("/", path.subList(2, path.size()));
+                            if ("platform".equals(field)) {
+                                linux |= PLATFORMS.contains(reader.getAttributeValue(null, "id"));
+                            }
+                            for (int i = 0; i < reader.getAttributeCount(); i++) {
+                                fields.putIfAbsent(field + "@" + reader.getAttributeLocalName(i),
+                                    reader.getAttributeValue(i));
+                            }
+                        }
+                        break;
+                    case XMLStreamConstants.CHARACTERS:
+                    case XMLStreamConstants.CDATA:
+                        text.append(reader.getText());
+                        break;
+                    case XMLStreamConstants.END_ELEMENT:
+                        if (path.size() == 2 && "release".equals(path.get(1)) && release != null) {
+                            release.description = text.toString();
+                            response.releases.add(release);
+                            release = null;
+                        } else if (path.size() == 2 && "patch".equals(path.get(1))) {
+                            if (linux) {
+                                response.patches.add(toPatch(fields));
+                            }
+                            fields.clear();
+                            linux = false;
+                        } else if (path.size() == 3 && "error".equals(path.get(1))) {
+                            if ("id".equals(path.get(2))) {
+                                response.errorId = text.toString();
+                            } else if ("message".equals(path.get(2))) {
+                                response.errorMessage = text.toString();
+                            }
+                        } else if (path.size() > 2 && "patch".equals(path.get(1))) {
+                            String field = String.join("/", path.subList(2, path.size()));
+                            if ("files/file/digest".equals(field)) {
+                                field += "@" + fields.get("files/file/digest@type");
+                                fields.remove("files/file/digest@type");
+                            }
+                            fields.putIfAbsent(field, text.toString());
+                        }
+                        path.remove(path.size() - 1);
+                        text.setLength(0);
+                        break;
+                    default:
+                        break;
+                }
+            }
+        } finally {
+            reader.close();
+        }
+        return response;
+    }
+
+    private static AruPatch toPatch(Map<String, String> fields) throws IOException {
+        AruPatch patch = new AruPatch()
+            .patchId(fields.getOrDefault("name", ""))
+            .version(fields.getOrDefault("release@name", ""))
+            .release(fields.getOrDefault("release@id", ""))
+            .releaseName(fields.getOrDefault("release", ""))
+            .description(fields.getOrDefault("bug/abstract", ""))
+            .product(fields.getOrDefault("product@id", ""))
+            .psuBundle(fields.getOrDefault("psu_bundle", ""))
+            .access(fields.getOrDefault("access", ""))
+            .lifecycle(fields.getOrDefault("life_cycle", ""))
+            .downloadHost(fields.getOrDefault("files/file/download_url@host", ""))
+            .downloadPath(fields.getOrDefault("files/file/download_url", ""))
+            .sha256(fields.get("files/file/digest@SHA-256"))
+            .size(parseSize(fields.get("files/file/size")));
+
+        int index = patch.downloadPath().indexOf("patch_file=");
+        if (index < 0) {
+            throw new IOException(Utils.getMessage("IMG-0059", patch.patchId()));
+        }
+        patch.fileName(patch.downloadPath().substring(index + "patch_file=".length()));
+
+        logger.fine("AruPatch created id:" + patch.patchId()
+            + "  ver:" + patch.version()
+            + "  desc:" + patch.description()
+            + "  rel:" + patch.release()
+            + "  product:" + patch.product()
+            + "  relName:" + patch.releaseName()
+            + "  psu:" + patch.psuBundle()
+            + "  url:" + patch.downloadUrl());
+        return patch;
+    }
+
+    private static long parseSize(String value) {
+        try {
+            return Utils.isEmptyString(value) ? 0 : Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    boolean hasError() {
+        return !Utils.isEmptyString(errorId) || !Utils.isEmptyString(errorMessage);
+    }
+
+    String errorId() {
+        return errorId;
+    }
+
+    String errorMessage() {
+        return errorMessage;
+    }
+
+    /**
+     * The releases in a release list response.
+     * @return list of releases, in the order of the response
+     */
+    List<Release> releases() {
+        return Collections.unmodifiableList(releases);
+    }
+
+    /**
+     * The patches for the Linux platforms.
+     * @return list of patches, in the order of the response
+     */
+    List<AruPatch> patches() {
+        return Collections.unmodifiableList(patches);
+    }
+
+    /**
+     * An ARU release, like id 600000000073715, name 12.2.1.3.0, and description Oracle WebLogic Server 12.2.1.3.0.
+     */
+    static class Release {
+        private final String id;
+        private final String name;
+        private String description;
+
+        Release(String id, String name) {
+            this.id = id;
+            this.name = name;
+        }
+
+        String id() {
+            return id;
+        }
+
+        String name() {
+            return name;
+        }
+
+        String description() {
+            return description;
+        }
+    }
+}
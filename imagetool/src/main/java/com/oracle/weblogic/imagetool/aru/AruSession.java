@@ -0,0 +1,235 @@
+// Copyright (c) 2021, Oracle and/or its affiliates.
+// Licensed under the Universal Permissive License v 1.0 as shown at https://oss.oracle.com/licenses/upl.
+
+package com.oracle.weblogic.imagetool.aru;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.PBEKeySpec;
+
+import com.oracle.weblogic.imagetool.logging.LoggingFacade;
+import com.oracle.weblogic.imagetool.logging.LoggingFactory;
+import com.oracle.weblogic.imagetool.util.Utils;
+import org.apache.http.client.CookieStore;
+import org.apache.http.cookie.ClientCookie;
+import org.apache.http.cookie.Cookie;
+import org.apache.http.impl.cookie.BasicClientCookie;
+
+/**
+ * The Oracle login session of a user, saved in the cache directory after the credentials were checked, so that later
+ * builds reuse the session cookies instead of checking the credentials with ARU again.  The file can only be read by
+ * its owner, and it holds a salted PBKDF2 hash of the password, so a session is only reused with the same password.
+ * A session is reused until its time to live expires.
+ */
+class AruSession {
+
+    private static final LoggingFacade logger = LoggingFactory.getLogger(AruSession.class);
+
+    static final String TTL = "WLSIMG_ARU_SESSION_TTL";
+    private static final long DEFAULT_TTL = TimeUnit.HOURS.toMillis(8);
+    private static final int ITERATIONS = 10000;
+    private static final String SALT = "# salt ";
+    private static final String CHECK = "# check ";
+
+    private final Path directory;
+    private long ttl = DEFAULT_TTL;
+    private volatile boolean refresh = false;
+
+    /**
+     * Create a session store in a directory.
+     * @param directory  the directory for the saved sessions, or null to not save sessions
+     * @param ttlSetting how long a session is reused, like 8h, or null for the default
+     */
+    AruSession(Path directory, String ttlSetting) {
+        this.directory = directory;
+        if (!Utils.isEmptyString(ttlSetting)) {
+            try {
+                ttl = Utils.parseDuration(ttlSetting).toMillis();
+            } catch (IllegalArgumentException e) {
+                logger.warning("IMG-0150", TTL, ttlSetting);
+            }
+        }
+    }
+
+    /**
+     * Ignore saved sessions, and check the credentials with ARU again.
+     * @param value true to ignore saved sessions
+     */
+    void refresh(boolean value) {
+        refresh = value;
+    }
+
+    /**
+     * Add the cookies of the saved session for the credentials to the cookie store.
+     * @param userId   Oracle Support credential user
+     * @param password Oracle Support credential password
+     * @param cookies  the cookie store of the HTTP client for the credentials
+     * @return true if a saved session for the credentials has not expired
+     */
+    boolean restore(String userId, String password, CookieStore cookies) {
+        if (directory == null || refresh) {
+            return false;
+        }
+        Path file = sessionFile(userId);
+        if (!Files.isRegularFile(file)) {
+            return false;
+        }
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            long saved = Files.getLastModifiedTime(file).toMillis();
+            if (System.currentTimeMillis() - saved >= ttl) {
+                logger.fine("The Oracle session saved at {0} has expired", new Date(saved));
+                return false;
+            }
+            String salt = reader.readLine();
+            String check = reader.readLine();
+            if (salt == null || check == null || !salt.startsWith(SALT) || !check.startsWith(CHECK)
+                || !MessageDigest.isEqual(check.substring(CHECK.length()).getBytes(StandardCharsets.UTF_8),
+                hash(password, salt.substring(SALT.length())).getBytes(StandardCharsets.UTF_8))) {
+                logger.fine("The saved Oracle session is for other credentials");
+                return false;
+            }
+            Date now = new Date();
+            String line;
+            while ((line = reader.readLine()) != null) {
+                Cookie cookie = parse(line);
+                if (cookie != null && !cookie.isExpired(now)) {
+                    cookies.addCookie(cookie);
+                }
+            }
+            logger.fine("Reusing the Oracle session saved at {0}", new Date(saved));
+            return true;
+        } catch (IOException | GeneralSecurityException | IllegalArgumentException e) {
+            logger.fine("Ignoring unreadable Oracle session {0}: {1}", file, e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Save the session cookies after the credentials were checked with ARU.
+     * @param userId   Oracle Support credential user
+     * @param password Oracle Support credential password
+     * @param cookies  the cookie store of the HTTP client for the credentials
+     */
+    void save(String userId, String password, CookieStore cookies) {
+        if (directory == null) {
+            return;
+        }
+        Path file = sessionFile(userId);
+        Path temp = null;
+        try {
+            Files.createDirectories(directory);
+            if (FileSystems.getDefault().supportedFileAttributeViews().contains("posix")) {
+                temp = Files.createTempFile(directory, file.getFileName().toString(), ".tmp",
+                    PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rw-------")));
+            } else {
+                temp = Files.createTempFile(directory, file.getFileName().toString(), ".tmp");
+            }
+            byte[] salt = new byte[16];
+            new SecureRandom().nextBytes(salt);
+            try (Writer writer = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+                writer.write(SALT + Utils.toHex(salt) + "\n");
+                writer.write(CHECK + hash(password, Utils.toHex(salt)) + "\n");
+                Date now = new Date();
+                for (Cookie cookie : cookies.getCookies()) {
+                    if (!cookie.isExpired(now)) {
+                        writer.write(format(cookie) + "\n");
+                    }
+                }
+            }
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException | GeneralSecurityException e) {
+            logger.fine("Unable to save the Oracle session {0}: {1}", file, e.getMessage());
+        } finally {
+            if (temp != null) {
+                try {
+                    Files.deleteIfExists(temp);
+                } catch (IOException e) {
+                    logger.finest("Unable to delete {0}", temp);
+                }
+            }
+        }
+    }
+
+    /**
+     * Delete the saved session of the user, after ARU rejected the credentials.
+     * @param userId Oracle Support credential user
+     */
+    void discard(String userId) {
+        if (directory == null) {
+            return;
+        }
+        try {
+            Files.deleteIfExists(sessionFile(userId));
+        } catch (IOException e) {
+            logger.fine("Unable to delete the saved Oracle session: {0}", e.getMessage());
+        }
+    }
+
+    private Path sessionFile(String userId) {
+        return directory.resolve("session-" + Utils.toHex(Utils.sha256Digest()
+            .digest(userId.getBytes(StandardCharsets.UTF_8))));
+    }
+
+    private static String hash(String password, String salt) throws GeneralSecurityException {
+        byte[] saltBytes = new byte[salt.length() / 2];
+        for (int i = 0; i < saltBytes.length; i++) {
+            saltBytes[i] = (byte) Integer.parseInt(salt.substring(2 * i, 2 * i + 2), 16);
+        }
+        PBEKeySpec spec = new PBEKeySpec(password.toCharArray(), saltBytes, ITERATIONS, 256);
+        try {
+            return Utils.toHex(SecretKeyFactory.getInstance("PBKDF2WithHmacSHA256").generateSecret(spec).getEncoded());
+        } finally {
+            spec.clearPassword();
+        }
+    }
+
+    /**
+     * A cookie in the Netscape cookies.txt format: domain, whether the cookie is for subdomains, path, secure,
+     * expiry in seconds or 0 for a session cookie, name, and value, separated by tabs.
+     */
+    private static String format(Cookie cookie) {
+        boolean subdomains = cookie instanceof ClientCookie
+            && ((ClientCookie) cookie).containsAttribute(ClientCookie.DOMAIN_ATTR);
+        long expiry = cookie.getExpiryDate() == null ? 0 : cookie.getExpiryDate().getTime() / 1000;
+        return String.join("\t", cookie.getDomain(), subdomains ? "TRUE" : "FALSE", cookie.getPath(),
+            cookie.isSecure() ? "TRUE" : "FALSE", String.valueOf(expiry), cookie.getName(), cookie.getValue());
+    }
+
+    private static Cookie parse(String line) {
+        String[] fields = line.split("\t", 7);
+        if (fields.length < 7 || line.startsWith("#")) {
+            return null;
+        }
+        BasicClientCookie cookie = new BasicClientCookie(fields[5], fields[6]);
+        cookie.setDomain(fields[0]);
+        if ("TRUE".equals(fields[1])) {
+            // without the domain attribute, the cookie is only sent to the host that set it
+            cookie.setAttribute(ClientCookie.DOMAIN_ATTR, fields[0]);
+        }
+        cookie.setPath(fields[2]);
+        cookie.setAttribute(ClientCookie.PATH_ATTR, fields[2]);
+        cookie.setSecure("TRUE".equals(fields[3]));
+        try {
+            long expiry = Long.parseLong(fields[4]);
+            if (expiry > 0) {
+                cookie.setExpiryDate(new Date(TimeUnit.SECONDS.toMillis(expiry)));
+            }
+        } catch (NumberFormatException e) {
+            return null;
+        }
+        return cookie;
+    }
+}
@@ -5,22 +5,35 @@ package com.oracle.weblogic.imagetool.aru;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
-import javax.xml.xpath.XPathExpressionException;
-
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+import com.oracle.weblogic.imagetool.cachestore.CacheStoreException;
+import com.oracle.weblogic.imagetool.cachestore.CacheStoreFactory;
 import com.oracle.weblogic.imagetool.installer.FmwInstallerType;
 import com.oracle.weblogic.imagetool.logging.LoggingFacade;
 import com.oracle.weblogic.imagetool.logging.LoggingFactory;
+import com.oracle.weblogic.imagetool.util.HttpDownloader;
 import com.oracle.weblogic.imagetool.util.HttpUtil;
+import com.oracle.weblogic.imagetool.util.ParallelTasks;
+import com.oracle.weblogic.imagetool.util.SingleFlight;
 import com.oracle.weblogic.imagetool.util.Utils;
-import com.oracle.weblogic.imagetool.util.XPathUtil;
 import org.apache.http.HttpStatus;
+import org.apache.http.client.CookieStore;
 import org.apache.http.client.HttpResponseException;
-import org.apache.http.client.fluent.Request;
-import org.w3c.dom.Document;
-import org.w3c.dom.NodeList;
 
 import static com.oracle.weblogic.imagetool.util.Constants.ARU_LANG_URL;
 import static com.oracle.weblogic.imagetool.util.Constants.ARU_REST_URL;
@@ -35,22 +48,83 @@ public class AruUtil {
     private static AruUtil instance;
 
     private static final String BUG_SEARCH_URL = ARU_REST_URL + "/search?bug=%s";
+    private static final int MAX_PARALLEL_LOOKUPS = 4;
+    // the directory in the cache directory with the saved ARU responses, conflict check records, and sessions
+    public static final String METADATA_DIR = AruMetadataCache.DIR_NAME;
 
     /**
      * Get ARU HTTP helper instance.
      * @return ARU helper.
      */
-    public static AruUtil rest() {
+    public static synchronized AruUtil rest() {
         if (instance == null) {
             instance = new AruUtil();
         }
         return instance;
     }
 
+    private AruMetadataCache metadataCache;
+    private AruSession session;
+    private boolean refreshMetadata = false;
+    // concurrent requests for the same ARU metadata share one request
+    private final SingleFlight<String, AruResponse> metadataRequests = new SingleFlight<>();
+
     protected AruUtil() {
         // hide constructor
     }
 
+    /**
+     * Get the ARU metadata from ARU, instead of the metadata saved in the cache directory by earlier builds.
+     * @param value true to ignore saved metadata that has not expired
+     * @return this
+     */
+    public synchronized AruUtil refreshMetadata(boolean value) {
+        refreshMetadata = value;
+        if (metadataCache != null) {
+            metadataCache.refresh(value);
+        }
+        if (session != null) {
+            session.refresh(value);
+        }
+        return this;
+    }
+
+    /**
+     * Get an ARU metadata document, from the metadata cache in the cache directory when possible.
+     * When another thread is already getting the same document, wait for that request and share its response.
+     */
+    private AruResponse getMetadata(AruMetadataCache.Endpoint endpoint, String url, String userId, String password)
+        throws IOException {
+        AruMetadataCache cache = metadataCache();
+        return metadataRequests.execute(userId + " " + url, () -> cache.get(endpoint, url, userId, password));
+    }
+
+    private synchronized AruMetadataCache metadataCache() {
+        if (metadataCache == null) {
+            metadataCache = new AruMetadataCache(metadataDirectory(),
+                Utils.getEnvironmentProperty(AruMetadataCache.TTL, null));
+            metadataCache.refresh(refreshMetadata);
+        }
+        return metadataCache;
+    }
+
+    private synchronized AruSession session() {
+        if (session == null) {
+            session = new AruSession(metadataDirectory(), Utils.getEnvironmentProperty(AruSession.TTL, null));
+            session.refresh(refreshMetadata);
+        }
+        return session;
+    }
+
+    private static Path metadataDirectory() {
+        try {
+            return Paths.get(CacheStoreFactory.cache().getCacheDir(), AruMetadataCache.DIR_NAME);
+        } catch (CacheStoreException e) {
+            logger.fine("ARU metadata is not cached, the cache directory is not available: {0}", e.getMessage());
+            return null;
+        }
+    }
+
     /**
      * Get list of PSU available for each of the ARU products for the given FMW install type.
      *
@@ -64,8 +138,11 @@ public class AruUtil {
     public List<AruPatch> getLatestPsu(FmwInstallerType type, String version, String userId, String password)
         throws AruException {
         List<AruPatch> result = new ArrayList<>();
-        for (AruProduct product : type.products()) {
-            List<AruPatch> psuList = getLatestPsu(product, version, userId, password);
+        Map<AruProduct, List<AruPatch>> products =
+            forEachProduct(type, product -> getLatestPsu(product, version, userId, password));
+        for (Map.Entry<AruProduct, List<AruPatch>> entry : products.entrySet()) {
+            AruProduct product = entry.getKey();
+            List<AruPatch> psuList = entry.getValue();
             if (!psuList.isEmpty()) {
                 for (AruPatch psu: psuList) {
                     String patchAndVersion = psu.patchId() + "_" + psu.version();
@@ -98,18 +175,75 @@ public class AruUtil {
         try {
             logger.info("IMG-0019", product.description());
             String releaseNumber = getReleaseNumber(product, version, userId, password);
-            Document aruRecommendations = getRecommendedPatchesMetadata(product, releaseNumber, userId, password);
+            AruResponse aruRecommendations = getRecommendedPatchesMetadata(product, releaseNumber, userId, password);
             logger.exiting();
-            return AruPatch.removeStackPatchBundle(AruPatch.getPatches(aruRecommendations, "[./psu_bundle]"));
+            return AruPatch.removeStackPatchBundle(aruRecommendations.patches().stream()
+                .filter(AruPatch::isPsu).collect(Collectors.toList()));
         } catch (NoPatchesFoundException | ReleaseNotFoundException ex) {
             logger.exiting();
             return Collections.emptyList();
-        } catch (IOException | XPathExpressionException e) {
+        } catch (IOException e) {
             throw logger.throwing(
                 new AruException(Utils.getMessage("IMG-0032", product.description(), version), e));
         }
     }
 
+    /**
+     * Look up the patches for each product of the installer type at the same time.
+     * @return the patches for each product, in the order of the products of the installer type
+     * @throws AruException the first failure, with any other failures as suppressed exceptions
+     */
+    private Map<AruProduct, List<AruPatch>> forEachProduct(FmwInstallerType type, Lookup<AruProduct> lookup)
+        throws AruException {
+        try {
+            return lookupAll(type.products(), MAX_PARALLEL_LOOKUPS, "aru-lookup", lookup);
+        } catch (IOException e) {
+            throw new AruException(e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Run the lookup for each item at the same time, bounded by the parallelism.
+     * @return the patches for each item, in the order of the items
+     * @throws AruException the first failure, with any other failures as suppressed exceptions
+     * @throws IOException the first failure, with any other failures as suppressed exceptions
+     */
+    private static <T> Map<T, List<AruPatch>> lookupAll(Collection<T> items, int parallelism, String name,
+                                                       Lookup<T> lookup) throws AruException, IOException {
+
+        Map<T, List<AruPatch>> results = new ConcurrentHashMap<>();
+        Map<T, Exception> failures;
+        try {
+            failures = ParallelTasks.forEach(items, parallelism, name, item -> results.put(item, lookup.get(item)));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new AruException("Interrupted while getting patches from ARU", e);
+        }
+        if (!failures.isEmpty()) {
+            Iterator<Exception> errors = failures.values().iterator();
+            Exception first = errors.next();
+            errors.forEachRemaining(first::addSuppressed);
+            if (first instanceof AruException) {
+                throw (AruException) first;
+            } else if (first instanceof IOException) {
+                throw (IOException) first;
+            } else if (first instanceof RuntimeException) {
+                throw (RuntimeException) first;
+            }
+            throw new AruException(first.getMessage(), first);
+        }
+        Map<T, List<AruPatch>> ordered = new LinkedHashMap<>();
+        for (T item : items) {
+            ordered.put(item, results.get(item));
+        }
+        return ordered;
+    }
+
+    @FunctionalInterface
+    private interface Lookup<T> {
+        List<AruPatch> get(T item) throws AruException, IOException;
+    }
+
     /**
      * Get list of recommended patches available for a given product and version.
      *
@@ -121,12 +255,8 @@ public class AruUtil {
     public List<AruPatch> getRecommendedPatches(FmwInstallerType type, String version,
                                                      String userId, String password) throws AruException {
         List<AruPatch> result = new ArrayList<>();
-        for (AruProduct product : type.products()) {
-            List<AruPatch> patches = getRecommendedPatches(product, version, userId, password);
-            if (!patches.isEmpty()) {
-                result.addAll(patches);
-            }
-        }
+        forEachProduct(type, product -> getRecommendedPatches(product, version, userId, password))
+            .values().forEach(result::addAll);
         if (result.isEmpty()) {
             logger.warning("IMG-0069", type, version);
         }
@@ -149,8 +279,8 @@ public class AruUtil {
         try {
             logger.info("IMG-0067", product.description());
             String releaseNumber = getReleaseNumber(product, version, userId, password);
-            Document aruRecommendations = getRecommendedPatchesMetadata(product, releaseNumber, userId, password);
-            List<AruPatch> patches = AruPatch.removeStackPatchBundle(AruPatch.getPatches(aruRecommendations));
+            AruResponse aruRecommendations = getRecommendedPatchesMetadata(product, releaseNumber, userId, password);
+            List<AruPatch> patches = AruPatch.removeStackPatchBundle(aruRecommendations.patches());
             String psuVersion = getPsuVersion(patches);
             if (!Utils.isEmptyString(psuVersion)) {
                 patches.forEach(p -> logger.fine("Discarding recommended patch {0} {1}", p.patchId(), p.description()));
@@ -159,8 +289,9 @@ public class AruUtil {
                 // get release number for PSU
                 String psuReleaseNumber = getReleaseNumber(product, psuVersion, userId, password);
                 // get recommended patches for PSU release (Overlay patches are only recommended on the PSU release)
-                Document psuRecommendation = getRecommendedPatchesMetadata(product, psuReleaseNumber, userId, password);
-                patches = AruPatch.removeStackPatchBundle(AruPatch.getPatches(psuRecommendation));
+                AruResponse psuRecommendation =
+                    getRecommendedPatchesMetadata(product, psuReleaseNumber, userId, password);
+                patches = AruPatch.removeStackPatchBundle(psuRecommendation.patches());
             }
             patches.forEach(p -> logger.info("IMG-0068", product.description(), p.patchId(), p.description()));
             logger.exiting(patches);
@@ -170,7 +301,7 @@ public class AruUtil {
         } catch (NoPatchesFoundException npf) {
             logger.info("IMG-0069", product.description(), version);
             return Collections.emptyList();
-        } catch (IOException | XPathExpressionException e) {
+        } catch (IOException e) {
             throw new AruException(Utils.getMessage("IMG-0070", product.description(), version), e);
         }
     }
@@ -218,6 +349,15 @@ public class AruUtil {
         }
         logger.info("IMG-0012");
 
+        // nightly builds check the same patches again and again, a patch set without conflicts is checked once
+        String fingerprint = conflictCheckFingerprint(installedPatches, patches);
+        AruMetadataCache cache = rest().metadataCache();
+        if (cache.hasNoConflicts(aruHttpHelper.userId(), fingerprint)) {
+            logger.info("IMG-0006");
+            logger.exiting();
+            return;
+        }
+
         StringBuilder payload = new StringBuilder("<conflict_check_request><platform>2000</platform>");
 
         if (installedPatches != null && !installedPatches.isEmpty()) {
@@ -252,6 +392,7 @@ public class AruUtil {
 
         if (aruHttpHelper.success()) {
             logger.info("IMG-0006");
+            cache.saveNoConflicts(aruHttpHelper.userId(), fingerprint);
         } else {
             String error = aruHttpHelper.errorMessage();
             logger.severe(error);
@@ -260,7 +401,26 @@ public class AruUtil {
         logger.exiting(aruHttpHelper);
     }
 
-    private Document allReleasesDocument = null;
+    /**
+     * A description of the patches for the conflict check that does not depend on the order of the patches.
+     * @param installedPatches the patches in the Oracle Home, by unique patch identifier
+     * @param patches the patches to apply, by release and patch number
+     * @return sorted installed patches and sorted candidate patches
+     */
+    static String conflictCheckFingerprint(List<InstalledPatch> installedPatches, List<AruPatch> patches) {
+        Set<String> installed = new TreeSet<>();
+        if (installedPatches != null) {
+            installedPatches.forEach(p -> installed.add(p.getUniquePatchNumber()));
+        }
+        Set<String> candidates = new TreeSet<>();
+        if (patches != null) {
+            patches.stream().filter(Objects::nonNull).forEach(p -> candidates.add(p.release() + ":" + p.patchId()));
+        }
+        return "installed=" + String.join(",", installed) + ";candidates=" + String.join(",", candidates);
+    }
+
+    private volatile ReleaseIndex releaseIndex = null;
+    private final Object releaseIndexLock = new Object();
 
     /**
      * Lookup all Oracle releases metadata from Oracle ARU.
@@ -268,30 +428,46 @@ public class AruUtil {
      *
      * @param userId   OTN credential user
      * @param password OTN credential password
-     * @return the XML document from ARU with releases metadata
+     * @return the releases metadata from ARU
      * @throws AruException when ARU could not be reached or returns an error
      */
-    Document getAllReleases(String userId, String password) throws AruException {
-        if (allReleasesDocument == null) {
-            logger.fine("Getting all releases document from ARU...");
-            try {
-                Document response = HttpUtil.getXMLContent(REL_URL, userId, password);
-                verifyResponse(response);
-                allReleasesDocument = response;
-            } catch (IOException | AruException | XPathExpressionException ex) {
-                throw new AruException(Utils.getMessage("IMG-0081"), ex);
+    AruResponse getAllReleases(String userId, String password) throws AruException {
+        logger.fine("Getting all releases document from ARU...");
+        try {
+            AruResponse response = getMetadata(AruMetadataCache.Endpoint.RELEASES, REL_URL, userId, password);
+            verifyResponse(response);
+            return response;
+        } catch (IOException | AruException ex) {
+            throw new AruException(Utils.getMessage("IMG-0081"), ex);
+        }
+    }
+
+    /**
+     * The index of all Oracle releases, read from ARU once and kept instead of the release list.
+     */
+    private ReleaseIndex getReleaseIndex(String userId, String password) throws AruException {
+        ReleaseIndex result = releaseIndex;
+        if (result == null) {
+            // not synchronized on this, other ARU requests can continue while the release list is downloaded
+            synchronized (releaseIndexLock) {
+                result = releaseIndex;
+                if (result == null) {
+                    result = new ReleaseIndex(getAllReleases(userId, password).releases());
+                    logger.fine("Indexed {0} ARU releases", result.size());
+                    releaseIndex = result;
+                }
             }
         }
-        return allReleasesDocument;
+        return result;
     }
 
-    Document getRecommendedPatchesMetadata(AruProduct product, String releaseNumber, String userId, String password)
-        throws IOException, AruException, XPathExpressionException {
+    AruResponse getRecommendedPatchesMetadata(AruProduct product, String releaseNumber, String userId,
+                                              String password) throws IOException, AruException {
 
         logger.entering();
         String url = String.format(RECOMMENDED_PATCHES_URL, product.productId(), releaseNumber);
         logger.finer("getting recommended patches info from {0}", url);
-        Document response = HttpUtil.getXMLContent(url, userId, password);
+        AruResponse response = getMetadata(AruMetadataCache.Endpoint.RECOMMENDED, url, userId, password);
         verifyResponse(response);
         logger.exiting();
         return response;
@@ -312,22 +488,13 @@ public class AruUtil {
         throws AruException {
         logger.entering(product, version);
 
-        String result;
-        Document allReleases = getAllReleases(userId, password);
-
-        String expression = String.format("string(/results/release[starts-with(text(), '%s %s')]/@id)",
-            product.description(), version);
-        try {
-            result = XPathUtil.string(allReleases, expression);
-            logger.fine("Release number for {0} is {1}", product.description(), result);
-        } catch (XPathExpressionException xpe) {
-            throw new AruException("Could not extract release number with XPath", xpe);
-        }
+        String result = getReleaseIndex(userId, password).find(product, version);
         if (Utils.isEmptyString(result)) {
             String msg = Utils.getMessage("IMG-0082", version, product);
             logger.info(msg);
             throw new ReleaseNotFoundException(msg);
         }
+        logger.fine("Release number for {0} is {1}", product.description(), result);
         logger.exiting(result);
         return result;
     }
@@ -343,25 +510,34 @@ public class AruUtil {
         if (username == null || username.isEmpty() || password == null || password.isEmpty()) {
             return false;
         }
+        // a session saved by an earlier build with the same credentials is reused without asking ARU
+        AruSession session = rest().session();
+        CookieStore cookies = HttpUtil.getCookieStore(username, password);
+        if (session.restore(username, password, cookies)) {
+            return true;
+        }
         AruHttpHelper aruHttpHelper = new AruHttpHelper(username, password);
         try {
             aruHttpHelper.execSearch(ARU_LANG_URL);
         } catch (IOException e) {
             Throwable cause = (e.getCause() == null) ? e : e.getCause();
-            if (cause.getClass().isAssignableFrom(HttpResponseException.class)
+            if (cause instanceof HttpResponseException
                     && ((HttpResponseException) cause).getStatusCode() == HttpStatus.SC_UNAUTHORIZED) {
+                session.discard(username);
                 return false;
             }
         }
+        if (aruHttpHelper.success()) {
+            session.save(username, password, cookies);
+        }
         return aruHttpHelper.success();
     }
 
-    void verifyResponse(Document response) throws AruException, XPathExpressionException {
-        NodeList nodeList = XPathUtil.nodelist(response, "/results/error");
-        if (nodeList.getLength() > 0) {
-            String errorMessage = XPathUtil.string(response, "/results/error/message");
+    void verifyResponse(AruResponse response) throws AruException {
+        if (response.hasError()) {
+            String errorMessage = response.errorMessage();
             logger.fine(errorMessage);
-            String errorId = XPathUtil.string(response, "/results/error/id");
+            String errorId = response.errorId();
             AruException error;
             if ("10-016".equals(errorId)) {
                 error = new NoPatchesFoundException(errorMessage);
@@ -380,11 +556,10 @@ public class AruUtil {
      * @param userId user credentials with access to OTN
      * @param password password for the provided userId
      * @return an AruPatch
-     * @throws IOException if there is an error retrieving the XML from ARU
-     * @throws XPathExpressionException if AruPatch failed while extracting patch data from the XML
+     * @throws IOException if there is an error retrieving the XML from ARU, or extracting patch data from the XML
      */
     public List<AruPatch> getPatches(String bugNumber, String userId, String password)
-        throws AruException, IOException, XPathExpressionException {
+        throws AruException, IOException {
 
         if (userId == null || password == null) {
             // running in offline mode (no credentials to connect to ARU)
@@ -393,13 +568,33 @@ public class AruUtil {
 
         String url = String.format(BUG_SEARCH_URL, bugNumber);
         logger.info("IMG-0063", bugNumber);
-        Document response = HttpUtil.getXMLContent(url, userId, password);
+        AruResponse response = getMetadata(AruMetadataCache.Endpoint.SEARCH, url, userId, password);
         try {
             verifyResponse(response);
         } catch (NoPatchesFoundException patchEx) {
             throw new NoPatchesFoundException(Utils.getMessage("IMG-0086", bugNumber), patchEx);
         }
-        return AruPatch.getPatches(response);
+        return response.patches();
+    }
+
+    /**
+     * Search ARU for the patches of each bug number.  The searches run at the same time, bounded by the
+     * parallelism, because the ARU search does not accept more than one bug number per request.
+     * @param bugNumbers the bug numbers to query ARU
+     * @param parallelism maximum number of searches at the same time
+     * @param userId user credentials with access to OTN
+     * @param password password for the provided userId
+     * @return the patches for each bug number, in the order of the bug numbers
+     * @throws AruException if ARU returns an error for a bug number, with errors for other bug numbers suppressed
+     * @throws IOException if there is an error retrieving the XML from ARU, or extracting patch data from the XML
+     */
+    public Map<String, List<AruPatch>> getPatches(Collection<String> bugNumbers, int parallelism, String userId,
+                                                  String password) throws AruException, IOException {
+
+        // no searches when running in offline mode (no credentials to connect to ARU)
+        int threads = userId == null || password == null ? 1 : parallelism;
+        return lookupAll(new LinkedHashSet<>(bugNumbers), threads, "aru-search",
+            bugNumber -> getPatches(bugNumber, userId, password));
     }
 
     /**
@@ -421,10 +616,9 @@ public class AruUtil {
         String filename = targetDir + File.separator + aruPatch.fileName();
         logger.info("IMG-0018", aruPatch.patchId());
         try {
-            HttpUtil.getHttpExecutor(username, password)
-                .execute(Request.Get(aruPatch.downloadUrl()).connectTimeout(30000)
-                    .socketTimeout(30000))
-                .saveContent(new File(filename));
+            // the partial file is kept when the download fails, the next attempt resumes from it
+            new HttpDownloader(HttpUtil.getHttpExecutor(username, password))
+                .download(aruPatch.downloadUrl(), Paths.get(filename), aruPatch.size(), aruPatch.sha256());
         } catch (Exception ex) {
             String message = String.format("Failed to download and save file %s from %s: %s", filename,
                 aruPatch.downloadUrl(), ex.getLocalizedMessage());
@@ -0,0 +1,161 @@
+// Copyright (c) 2021, Oracle and/or its affiliates.
+// Licensed under the Universal Permissive License v 1.0 as shown at https://oss.oracle.com/licenses/upl.
+
+package com.oracle.weblogic.imagetool.aru;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.json.JSONTokener;
+
+/**
+ * The patches that ARU selected for an installer version, written by the resolve command.
+ * With a patch lock file, a build applies exactly the same patches without asking ARU for patch metadata again:
+ * the lock has the release, file name, download URL, and digest of each patch.
+ */
+public class PatchLock {
+
+    private static final int FORMAT_VERSION = 1;
+
+    private final String installerType;
+    private final String installerVersion;
+    private final List<AruPatch> patches;
+    private final AruPatch opatch;
+
+    /**
+     * Create a patch lock.
+     * @param installerType    the installer type that the patches were selected for, like WLS
+     * @param installerVersion the installer version that the patches were selected for, like 12.2.1.4.0
+     * @param patches          the patches to apply
+     * @param opatch           the OPatch patch to install before the patches, or null to not update OPatch
+     */
+    public PatchLock(String installerType, String installerVersion, List<AruPatch> patches, AruPatch opatch) {
+        this.installerType = installerType;
+        this.installerVersion = installerVersion;
+        this.patches = Collections.unmodifiableList(new ArrayList<>(patches));
+        this.opatch = opatch;
+    }
+
+    public String installerType() {
+        return installerType;
+    }
+
+    public String installerVersion() {
+        return installerVersion;
+    }
+
+    public List<AruPatch> patches() {
+        return patches;
+    }
+
+    public AruPatch opatch() {
+        return opatch;
+    }
+
+    /**
+     * Read a patch lock file.
+     * @param file the patch lock file
+     * @return the patch lock
+     * @throws IOException if the file cannot be read or is not a valid patch lock file
+     */
+    public static PatchLock read(Path file) throws IOException {
+        try (InputStream input = Files.newInputStream(file)) {
+            return read(input);
+        }
+    }
+
+    /**
+     * Read a patch lock.
+     * @param input the patch lock JSON
+     * @return the patch lock
+     * @throws IOException if the patch lock cannot be read or is not valid
+     */
+    public static PatchLock read(InputStream input) throws IOException {
+        try {
+            JSONObject json = new JSONObject(new JSONTokener(input));
+            int version = json.getInt("version");
+            if (version > FORMAT_VERSION) {
+                throw new IOException("Unsupported patch lock version " + version);
+            }
+            List<AruPatch> patches = new ArrayList<>();
+            JSONArray list = json.getJSONArray("patches");
+            for (int i = 0; i < list.length(); i++) {
+                patches.add(fromJson(list.getJSONObject(i)));
+            }
+            JSONObject opatch = json.optJSONObject("opatch");
+            return new PatchLock(json.getString("installerType"), json.getString("installerVersion"), patches,
+                opatch == null ? null : fromJson(opatch));
+        } catch (JSONException e) {
+            throw new IOException("Invalid patch lock: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Write this patch lock as JSON.
+     * @param output where to write the patch lock, which is not closed
+     * @throws IOException if the patch lock cannot be written
+     */
+    public void write(OutputStream output) throws IOException {
+        JSONArray list = new JSONArray();
+        for (AruPatch patch : patches) {
+            list.put(toJson(patch));
+        }
+        JSONObject json = new JSONObject()
+            .put("version", FORMAT_VERSION)
+            .put("installerType", installerType)
+            .put("installerVersion", installerVersion)
+            .put("patches", list);
+        if (opatch != null) {
+            json.put("opatch", toJson(opatch));
+        }
+        Writer writer = new OutputStreamWriter(output, StandardCharsets.UTF_8);
+        json.write(writer, 2, 0);
+        writer.write(System.lineSeparator());
+        writer.flush();
+    }
+
+    private static JSONObject toJson(AruPatch patch) {
+        // JSONObject does not add keys with null values
+        return new JSONObject()
+            .put("patchId", patch.patchId())
+            .put("version", patch.version())
+            .put("description", patch.description())
+            .put("product", patch.product())
+            .put("release", patch.release())
+            .put("releaseName", patch.releaseName())
+            .put("psuBundle", patch.psuBundle())
+            .put("fileName", patch.fileName())
+            .put("downloadHost", patch.downloadHost())
+            .put("downloadPath", patch.downloadPath())
+            .put("sha256", patch.sha256())
+            .put("size", patch.size());
+    }
+
+    private static AruPatch fromJson(JSONObject json) {
+        return new AruPatch()
+            .patchId(json.getString("patchId"))
+            .version(json.getString("version"))
+            .description(json.optString("description", null))
+            .product(json.optString("product", null))
+            .release(json.optString("release", null))
+            .releaseName(json.optString("releaseName", null))
+            .psuBundle(json.optString("psuBundle", null))
+            .fileName(json.getString("fileName"))
+            .downloadHost(json.getString("downloadHost"))
+            .downloadPath(json.getString("downloadPath"))
+            .sha256(json.optString("sha256", null))
+            .size(json.optLong("size", 0));
+    }
+}
@@ -0,0 +1,61 @@
+// Copyright (c) 2021, Oracle and/or its affiliates.
+// Licensed under the Universal Permissive License v 1.0 as shown at https://oss.oracle.com/licenses/upl.
+
+package com.oracle.weblogic.imagetool.aru;
+
+import java.util.List;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+/**
+ * The ARU releases, sorted by description, like Oracle WebLogic Server 12.2.1.3.0, for lookups by product and
+ * version without scanning the whole release list.
+ */
+class ReleaseIndex {
+
+    // release description to the position and id of the first release in the ARU response with that description
+    private final NavigableMap<String, Entry> releases = new TreeMap<>();
+
+    ReleaseIndex(List<AruResponse.Release> releaseList) {
+        for (int i = 0; i < releaseList.size(); i++) {
+            AruResponse.Release release = releaseList.get(i);
+            if (release.description() != null) {
+                releases.putIfAbsent(release.description(), new Entry(i, release.id()));
+            }
+        }
+    }
+
+    /**
+     * Find the release with a description that starts with the product description and version.
+     * When more than one release matches, like 12.2.1.3.0 and 12.2.1.3.200624 for version 12.2.1.3, the release
+     * that comes first in the ARU response is used.
+     * @param product the ARU product
+     * @param version the version like 12.2.1.3.0
+     * @return the release id, or null if no release matches
+     */
+    String find(AruProduct product, String version) {
+        String prefix = product.description() + " " + version;
+        Entry result = null;
+        // all descriptions that start with the prefix sort between the prefix and the prefix followed by MAX_VALUE
+        for (Entry entry : releases.subMap(prefix, true, prefix + Character.MAX_VALUE, true).values()) {
+            if (result == null || entry.position < result.position) {
+                result = entry;
+            }
+        }
+        return result == null ? null : result.id;
+    }
+
+    int size() {
+        return releases.size();
+    }
+
+    private static class Entry {
+        private final int position;
+        private final String id;
+
+        Entry(int position, String id) {
+            this.position = position;
+            this.id = id;
+        }
+    }
+}
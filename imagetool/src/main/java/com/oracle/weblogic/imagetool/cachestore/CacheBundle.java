@@ -0,0 +1,274 @@
+// Copyright (c) 2021, Oracle and/or its affiliates.
+// Licensed under the Universal Permissive License v 1.0 as shown at https://oss.oracle.com/licenses/upl.
+
+package com.oracle.weblogic.imagetool.cachestore;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import com.oracle.weblogic.imagetool.api.model.CachedFile;
+import com.oracle.weblogic.imagetool.logging.LoggingFacade;
+import com.oracle.weblogic.imagetool.logging.LoggingFactory;
+import com.oracle.weblogic.imagetool.util.Utils;
+
+/**
+ * Moves cache entries between cache directories, as a single tar stream.
+ * The bundle starts with a {@link CacheManifest}, followed by each file once, as
+ * {@code files/<sha256>/<file name>}.  An unpacked bundle can be used as a shared cache.
+ * Entries that the target cache already has (listed in the target manifest) are left out of the bundle.
+ */
+public class CacheBundle {
+
+    private static final LoggingFacade logger = LoggingFactory.getLogger(CacheBundle.class);
+    private static final String FILES_DIR = "files/";
+
+    private final CacheStore cache;
+
+    public CacheBundle(CacheStore cache) {
+        this.cache = cache;
+    }
+
+    /**
+     * Create a manifest of the cache entries that point to files.
+     * @param keys the keys to include, or null for every entry
+     * @return manifest of the selected entries
+     * @throws IOException if a file cannot be read
+     */
+    public CacheManifest manifest(Collection<String> keys) throws IOException {
+        Map<String, String> items = new TreeMap<>(cache.getCacheItems());
+        if (keys != null) {
+            Map<String, String> selected = new TreeMap<>();
+            for (String key : keys) {
+                String value = cache.getValueFromCache(key);
+                if (value == null) {
+                    throw new IOException(Utils.getMessage("IMG-0118", key));
+                }
+                selected.put(key.toLowerCase(), value);
+            }
+            items = selected;
+        }
+
+        CacheManifest result = new CacheManifest();
+        // files that were verified or exported before are not read again
+        ChecksumCache checksums = new ChecksumCache(Paths.get(cache.getCacheDir())).load();
+        // hash every file once, even when several entries point to it
+        Map<Path, String> digests = new HashMap<>();
+        for (Map.Entry<String, String> item : items.entrySet()) {
+            if (!CachedFile.isFileOnDisk(item.getValue())) {
+                logger.fine("Skipping cache entry {0}, {1} is not a file", item.getKey(), item.getValue());
+                continue;
+            }
+            Path file = Paths.get(item.getValue()).toAbsolutePath();
+            String digest = digests.get(file);
+            if (digest == null) {
+                digest = ContentStore.digestOf(file.toString());
+                if (digest == null) {
+                    digest = checksums.digest(file);
+                }
+                digests.put(file, digest);
+            }
+            result.add(item.getKey(), FILES_DIR + digest + "/" + file.getFileName(), digest, Files.size(file));
+        }
+        try (Closeable lock = cache.lock(ChecksumCache.FILE_NAME)) {
+            checksums.save();
+        }
+        return result;
+    }
+
+    /**
+     * Write the selected cache entries, and their files, to a tar stream.
+     * Files are streamed from the cache directory, no copies are made.
+     *
+     * @param output  where to write the bundle, which is not closed
+     * @param keys    the keys to export, or null for every entry
+     * @param exclude manifest of the target cache, entries with the same key and content are left out, or null
+     * @return what was exported
+     * @throws IOException if a file cannot be read or the bundle cannot be written
+     */
+    public Result export(OutputStream output, Collection<String> keys, CacheManifest exclude) throws IOException {
+        logger.entering(keys);
+        CacheManifest all = manifest(keys);
+        CacheManifest manifest = new CacheManifest();
+        // bundle file location to the cache file it was created from
+        Map<String, Path> sources = new LinkedHashMap<>();
+        for (CacheManifest.Entry entry : all.entries()) {
+            if (exclude != null && exclude.contains(entry)) {
+                logger.fine("Target cache already has {0}", entry.key());
+                continue;
+            }
+            manifest.add(entry.key(), entry.file(), entry.sha256(), entry.size());
+            sources.put(entry.file(), Paths.get(cache.getValueFromCache(entry.key())));
+        }
+
+        Result result = new Result();
+        TarFormat.Writer tar = new TarFormat.Writer(output);
+        ByteArrayOutputStream manifestBytes = new ByteArrayOutputStream();
+        manifest.write(manifestBytes);
+        tar.putFile(CacheManifest.FILE_NAME, manifestBytes.size(),
+            new ByteArrayInputStream(manifestBytes.toByteArray()));
+        for (Map.Entry<String, Path> source : sources.entrySet()) {
+            long size = Files.size(source.getValue());
+            logger.fine("Exporting {0} as {1}", source.getValue(), source.getKey());
+            try (InputStream input = Files.newInputStream(source.getValue())) {
+                tar.putFile(source.getKey(), size, input);
+            }
+            result.files++;
+            result.bytes += size;
+        }
+        tar.finish();
+        for (CacheManifest.Entry entry : manifest.entries()) {
+            result.entries.add(entry.key());
+        }
+        logger.exiting(result.entries);
+        return result;
+    }
+
+    /**
+     * Read a bundle and add its entries to the cache.
+     * Each file is verified against the SHA-256 digest and size in the bundle manifest before it is added.
+     * Entries that the cache already has, with the same content, are skipped.
+     *
+     * @param input the bundle, which is not closed
+     * @return what was imported
+     * @throws IOException if the bundle is not valid, or a file does not match the manifest
+     */
+    public Result importBundle(InputStream input) throws IOException {
+        logger.entering();
+        TarFormat.Reader tar = new TarFormat.Reader(input);
+        TarFormat.Entry first = tar.next();
+        if (first == null || !CacheManifest.FILE_NAME.equals(first.name())) {
+            throw new IOException(Utils.getMessage("IMG-0119"));
+        }
+        CacheManifest manifest = CacheManifest.read(first.content());
+        CacheManifest local = localManifest(manifest);
+
+        // bundle file location to the entries that use it
+        Map<String, List<CacheManifest.Entry>> files = new HashMap<>();
+        for (CacheManifest.Entry entry : manifest.entries()) {
+            files.computeIfAbsent(entry.file(), f -> new ArrayList<>()).add(entry);
+        }
+
+        Result result = new Result();
+        for (TarFormat.Entry file = tar.next(); file != null; file = tar.next()) {
+            List<CacheManifest.Entry> entries = files.remove(file.name());
+            if (entries == null) {
+                logger.fine("Ignoring {0}, it is not in the bundle manifest", file.name());
+                continue;
+            }
+            List<CacheManifest.Entry> missing = new ArrayList<>();
+            for (CacheManifest.Entry entry : entries) {
+                if (local.contains(entry)) {
+                    result.skipped.add(entry.key());
+                } else {
+                    missing.add(entry);
+                }
+            }
+            if (missing.isEmpty()) {
+                continue;
+            }
+            try (Closeable lock = cache.lock(missing.get(0).fileName())) {
+                Path target = receive(file, missing.get(0));
+                for (CacheManifest.Entry entry : missing) {
+                    logger.info("IMG-0120", entry.key());
+                    cache.addFileToCache(entry.key(), target);
+                    result.entries.add(entry.key());
+                }
+            }
+            result.files++;
+            result.bytes += file.size();
+        }
+        if (!files.isEmpty()) {
+            throw new IOException(Utils.getMessage("IMG-0121", files.keySet()));
+        }
+        logger.exiting(result.entries);
+        return result;
+    }
+
+    /**
+     * Build a manifest of the local entries that are also in the bundle, to find entries that can be skipped.
+     */
+    private CacheManifest localManifest(CacheManifest bundle) throws IOException {
+        List<String> keys = new ArrayList<>();
+        for (CacheManifest.Entry entry : bundle.entries()) {
+            if (CachedFile.isFileOnDisk(cache.getValueFromCache(entry.key()))) {
+                keys.add(entry.key());
+            }
+        }
+        return keys.isEmpty() ? new CacheManifest() : manifest(keys);
+    }
+
+    /**
+     * Copy one file from the bundle into the cache directory, and verify it.
+     */
+    private Path receive(TarFormat.Entry file, CacheManifest.Entry entry) throws IOException {
+        Path cacheDir = Paths.get(cache.getCacheDir());
+        Path target = cacheDir.resolve(entry.fileName());
+        if (Files.exists(target) && !entry.sha256().equals(Utils.sha256(target))) {
+            // a different file with the same name is already in the cache directory
+            target = Files.createDirectories(cacheDir.resolve(entry.sha256())).resolve(entry.fileName());
+        }
+        Path partFile = Paths.get(target + ".part");
+        try {
+            MessageDigest sha256 = Utils.sha256Digest();
+            Files.copy(new DigestInputStream(file.content(), sha256), partFile, StandardCopyOption.REPLACE_EXISTING);
+            String digest = Utils.toHex(sha256.digest());
+            long size = Files.size(partFile);
+            if (!entry.sha256().equals(digest) || entry.size() != size) {
+                throw new IOException(Utils.getMessage("IMG-0122", entry.file(), entry.sha256(), entry.size(),
+                    digest, size));
+            }
+            Files.move(partFile, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(partFile);
+        }
+        return target;
+    }
+
+    public static class Result {
+        private final List<String> entries = new ArrayList<>();
+        private final List<String> skipped = new ArrayList<>();
+        private int files;
+        private long bytes;
+
+        /**
+         * Keys of the entries that were exported or imported.
+         * @return list of keys
+         */
+        public List<String> entries() {
+            return entries;
+        }
+
+        /**
+         * Keys of the entries that were already in the cache, and were not imported.
+         * @return list of keys
+         */
+        public List<String> skipped() {
+            return skipped;
+        }
+
+        public int files() {
+            return files;
+        }
+
+        public long bytes() {
+            return bytes;
+        }
+    }
+}
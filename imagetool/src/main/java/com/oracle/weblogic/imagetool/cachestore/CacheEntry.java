@@ -0,0 +1,157 @@
+// Copyright (c) 2021, Oracle and/or its affiliates.
+// Licensed under the Universal Permissive License v 1.0 as shown at https://oss.oracle.com/licenses/upl.
+
+package com.oracle.weblogic.imagetool.cachestore;
+
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Comparator;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import com.oracle.weblogic.imagetool.util.Utils;
+
+/**
+ * A typed view of a cache entry.
+ * Cache keys are an ID and a version, separated by an underscore, like wls_12.2.1.4.0 or 28186730_13.9.4.2.5.
+ * Patch IDs are numeric, every other ID is an installer type.
+ */
+public class CacheEntry {
+
+    public enum Type {
+        INSTALLER,
+        PATCH,
+        OPATCH
+    }
+
+    /**
+     * Orders versions from oldest to newest.
+     * Numeric versions are ordered with {@link Utils#compareVersions}, and are newer than any non-numeric version,
+     * like 8u202 or opatch.  Versions that compare as equal are ordered as strings, so that the order is total.
+     */
+    public static final Comparator<String> VERSION_ORDER = CacheEntry::compareVersions;
+
+    private static final Pattern NUMERIC_ID = Pattern.compile("\\d+");
+    private static final Pattern NUMERIC_VERSION = Pattern.compile("\\d{1,9}(\\.\\d{1,9})*(-.*)?");
+    // ARU patch files are named p<bug number>_<release>_<platform>.zip
+    private static final Pattern PATCH_FILE = Pattern.compile("p\\d+_[^_]+_(.+)\\.zip");
+
+    private final String key;
+    private final String value;
+    private final Type type;
+    private final String id;
+    private final String version;
+    private final String architecture;
+    private final long size;
+    private final String digest;
+
+    private CacheEntry(String key, String value, CacheUsage usage) {
+        this.key = key;
+        this.value = value;
+        int split = key.indexOf(CacheStore.CACHE_KEY_SEPARATOR);
+        id = split < 0 ? key : key.substring(0, split);
+        version = split < 0 ? null : key.substring(split + 1);
+        if (!NUMERIC_ID.matcher(id).matches()) {
+            type = Type.INSTALLER;
+        } else if (OPatchFile.DEFAULT_BUG_NUM.equals(id)) {
+            type = Type.OPATCH;
+        } else {
+            type = Type.PATCH;
+        }
+        architecture = architectureOf(value);
+        size = usage == null ? -1 : usage.size();
+        digest = ContentStore.digestOf(value);
+    }
+
+    /**
+     * Create a typed entry from a cache key and value.
+     * @param key   cache key
+     * @param value cache value, usually a file path
+     * @param usage the usage recorded for the entry, or null
+     * @return a new entry
+     */
+    public static CacheEntry of(String key, String value, CacheUsage usage) {
+        return new CacheEntry(key.toLowerCase(), value, usage);
+    }
+
+    private static String architectureOf(String value) {
+        try {
+            Path fileName = value == null ? null : Paths.get(value).getFileName();
+            if (fileName != null) {
+                Matcher matcher = PATCH_FILE.matcher(fileName.toString());
+                if (matcher.matches()) {
+                    return matcher.group(1);
+                }
+            }
+        } catch (InvalidPathException e) {
+            // not a file path
+        }
+        return null;
+    }
+
+    private static int compareVersions(String thisVersion, String otherVersion) {
+        boolean thisNumeric = NUMERIC_VERSION.matcher(thisVersion).matches();
+        boolean otherNumeric = NUMERIC_VERSION.matcher(otherVersion).matches();
+        int result;
+        if (thisNumeric && otherNumeric) {
+            result = Utils.compareVersions(thisVersion, otherVersion);
+        } else {
+            result = Boolean.compare(thisNumeric, otherNumeric);
+        }
+        return result != 0 ? result : thisVersion.compareTo(otherVersion);
+    }
+
+    public String key() {
+        return key;
+    }
+
+    public String value() {
+        return value;
+    }
+
+    public Type type() {
+        return type;
+    }
+
+    public String id() {
+        return id;
+    }
+
+    /**
+     * The version part of the key.
+     * @return the version, or null if the key does not have a version
+     */
+    public String version() {
+        return version;
+    }
+
+    /**
+     * The platform of a patch file, like Generic or Linux-x86-64.
+     * @return the platform from the patch file name, or null if the file is not an ARU patch file
+     */
+    public String architecture() {
+        return architecture;
+    }
+
+    /**
+     * The size of the file, when the entry was last used.
+     * @return size in bytes, or -1 if the size is not known
+     */
+    public long size() {
+        return size;
+    }
+
+    /**
+     * The SHA-256 digest of the file, for files in the content store.
+     * @return the digest, or null if the file is not in a content store
+     */
+    public String digest() {
+        return digest;
+    }
+
+    @Override
+    public String toString() {
+        return key + "=" + value;
+    }
+}
@@ -0,0 +1,101 @@
+// Copyright (c) 2021, Oracle and/or its affiliates.
+// Licensed under the Universal Permissive License v 1.0 as shown at https://oss.oracle.com/licenses/upl.
+
+package com.oracle.weblogic.imagetool.cachestore;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Properties;
+import java.util.TreeMap;
+
+/**
+ * In-memory indexes of the cache entries.
+ * Entries are indexed by key, and by ID with the versions of each ID kept in version order, so that finding
+ * the latest version of an installer or patch does not require scanning every entry.
+ */
+class CacheIndex {
+
+    private final Map<String, CacheEntry> entries = new HashMap<>();
+    private final Map<String, NavigableMap<String, CacheEntry>> versions = new HashMap<>();
+    // read-only copy of the keys and values, rebuilt only after a change
+    private Map<String, String> items;
+
+    /**
+     * Replace the indexes with the provided metadata.
+     * @param properties cache keys and values
+     * @param usage      usage by cache key
+     */
+    void rebuild(Properties properties, Map<String, CacheUsage> usage) {
+        entries.clear();
+        versions.clear();
+        items = null;
+        for (String key : properties.stringPropertyNames()) {
+            put(key, properties.getProperty(key), usage.get(key));
+        }
+    }
+
+    void put(String key, String value, CacheUsage usage) {
+        remove(key);
+        CacheEntry entry = CacheEntry.of(key, value, usage);
+        entries.put(entry.key(), entry);
+        if (entry.version() != null) {
+            versions.computeIfAbsent(entry.id(), k -> new TreeMap<>(CacheEntry.VERSION_ORDER))
+                .put(entry.version(), entry);
+        }
+        items = null;
+    }
+
+    void remove(String key) {
+        CacheEntry entry = entries.remove(key);
+        if (entry != null && entry.version() != null) {
+            NavigableMap<String, CacheEntry> idVersions = versions.get(entry.id());
+            idVersions.remove(entry.version());
+            if (idVersions.isEmpty()) {
+                versions.remove(entry.id());
+            }
+        }
+        items = null;
+    }
+
+    CacheEntry get(String key) {
+        return entries.get(key);
+    }
+
+    /**
+     * All versions of an ID, oldest first.
+     * @param id installer type or patch ID
+     * @return a read-only copy of the versions, empty if there are none
+     */
+    NavigableMap<String, CacheEntry> versions(String id) {
+        NavigableMap<String, CacheEntry> result = versions.get(id);
+        if (result == null) {
+            return Collections.emptyNavigableMap();
+        }
+        return Collections.unmodifiableNavigableMap(new TreeMap<>(result));
+    }
+
+    /**
+     * The newest version of an ID.
+     * @param id installer type or patch ID
+     * @return the entry with the newest version, or null if there are none
+     */
+    CacheEntry latest(String id) {
+        NavigableMap<String, CacheEntry> result = versions.get(id);
+        return result == null ? null : result.lastEntry().getValue();
+    }
+
+    /**
+     * The keys and values in the cache.
+     * @return a read-only map, shared until the next change
+     */
+    Map<String, String> items() {
+        if (items == null) {
+            Map<String, String> result = new HashMap<>(entries.size() * 2);
+            entries.forEach((key, entry) -> result.put(key, entry.value()));
+            items = Collections.unmodifiableMap(result);
+        }
+        return items;
+    }
+}
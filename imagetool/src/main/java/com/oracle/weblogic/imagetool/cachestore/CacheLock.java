@@ -0,0 +1,92 @@
+// Copyright (c) 2021, Oracle and/or its affiliates.
+// Licensed under the Universal Permissive License v 1.0 as shown at https://oss.oracle.com/licenses/upl.
+
+package com.oracle.weblogic.imagetool.cachestore;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+import com.oracle.weblogic.imagetool.logging.LoggingFacade;
+import com.oracle.weblogic.imagetool.logging.LoggingFactory;
+
+/**
+ * An exclusive lock on a file in the cache directory, shared by every process that uses the same cache.
+ * File locks are held on behalf of the whole JVM, so threads in the same JVM are serialized with an in-process
+ * lock before the file lock is requested.  The lock is reentrant for the thread that holds it.
+ */
+class CacheLock implements Closeable {
+
+    private static final LoggingFacade logger = LoggingFactory.getLogger(CacheLock.class);
+
+    private static final Map<Path, ReentrantLock> localLocks = new ConcurrentHashMap<>();
+
+    private final ReentrantLock localLock;
+    private final FileChannel channel;
+    private final FileLock fileLock;
+
+    private CacheLock(ReentrantLock localLock, FileChannel channel, FileLock fileLock) {
+        this.localLock = localLock;
+        this.channel = channel;
+        this.fileLock = fileLock;
+    }
+
+    /**
+     * Acquire the lock, waiting for other threads and processes to release it.
+     * @param lockFile the file to lock, created if it does not exist
+     * @param name     the name of the locked resource, used for logging
+     * @return the held lock, which must be closed to release it
+     * @throws IOException if the lock file could not be opened
+     */
+    static CacheLock acquire(Path lockFile, String name) throws IOException {
+        ReentrantLock localLock = localLocks.computeIfAbsent(lockFile.toAbsolutePath(), k -> new ReentrantLock());
+        if (!localLock.tryLock()) {
+            logger.fine("Waiting for another thread to release the cache lock on {0}", name);
+            localLock.lock();
+        }
+        if (localLock.getHoldCount() > 1) {
+            // the file lock is already held by this thread
+            return new CacheLock(localLock, null, null);
+        }
+
+        FileChannel channel = null;
+        try {
+            Files.createDirectories(lockFile.getParent());
+            channel = FileChannel.open(lockFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+            FileLock fileLock = channel.tryLock();
+            if (fileLock == null) {
+                logger.info("IMG-0107", name);
+                fileLock = channel.lock();
+            }
+            logger.finer("Acquired cache lock {0}", lockFile);
+            return new CacheLock(localLock, channel, fileLock);
+        } catch (IOException | RuntimeException e) {
+            if (channel != null) {
+                channel.close();
+            }
+            localLock.unlock();
+            throw e;
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            if (fileLock != null) {
+                fileLock.release();
+            }
+            if (channel != null) {
+                channel.close();
+            }
+        } finally {
+            localLock.unlock();
+        }
+    }
+}
@@ -0,0 +1,172 @@
+// Copyright (c) 2021, Oracle and/or its affiliates.
+// Licensed under the Universal Permissive License v 1.0 as shown at https://oss.oracle.com/licenses/upl.
+
+package com.oracle.weblogic.imagetool.cachestore;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.regex.Pattern;
+
+import com.oracle.weblogic.imagetool.util.Constants;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.json.JSONTokener;
+
+/**
+ * A list of cache entries, with the location, SHA-256 digest, and size of each file.
+ * The manifest describes a shared cache directory, or the contents of a cache bundle.  File locations are
+ * relative to the directory (or bundle) that holds the manifest.
+ */
+public class CacheManifest {
+
+    public static final String FILE_NAME = "manifest.json";
+    private static final int FORMAT_VERSION = 1;
+    private static final Pattern SHA256 = Pattern.compile("[0-9a-f]{64}");
+
+    private final Map<String, Entry> entries = new TreeMap<>();
+    private final Map<String, Entry> digests = new HashMap<>();
+
+    /**
+     * Add an entry to the manifest, replacing any entry with the same key.
+     * @param key    cache key
+     * @param file   relative location of the file
+     * @param sha256 SHA-256 digest of the file
+     * @param size   size of the file in bytes
+     * @return the new entry
+     */
+    public Entry add(String key, String file, String sha256, long size) {
+        Entry entry = new Entry(key.toLowerCase(), file, sha256.toLowerCase(), size);
+        entries.put(entry.key(), entry);
+        digests.put(entry.sha256(), entry);
+        return entry;
+    }
+
+    public Entry get(String key) {
+        return key == null ? null : entries.get(key.toLowerCase());
+    }
+
+    public Entry findByDigest(String sha256) {
+        return sha256 == null ? null : digests.get(sha256.toLowerCase());
+    }
+
+    /**
+     * Returns true if this manifest has the key, with the same file contents.
+     * @param entry an entry from another manifest
+     * @return true if the key and digest match
+     */
+    public boolean contains(Entry entry) {
+        Entry existing = get(entry.key());
+        return existing != null && existing.sha256().equals(entry.sha256());
+    }
+
+    public Collection<Entry> entries() {
+        return Collections.unmodifiableCollection(entries.values());
+    }
+
+    /**
+     * Read a manifest.
+     * The digest and the file name of each entry are used to name files in the cache directory, so a manifest
+     * with a digest that is not 64 lowercase hex characters, or a file name that is not a plain file name, is
+     * rejected.
+     * @param input the manifest JSON
+     * @return the manifest
+     * @throws IOException if the manifest cannot be read or is not valid
+     */
+    public static CacheManifest read(InputStream input) throws IOException {
+        CacheManifest result = new CacheManifest();
+        try {
+            JSONObject json = new JSONObject(new JSONTokener(input));
+            JSONArray list = json.getJSONArray("entries");
+            for (int i = 0; i < list.length(); i++) {
+                JSONObject item = list.getJSONObject(i);
+                Entry entry = new Entry(item.getString("key"), item.getString("file"), item.getString("sha256"),
+                    item.getLong("size"));
+                if (!SHA256.matcher(entry.sha256()).matches() || !isPlainFileName(entry.fileName())) {
+                    throw new IOException("Invalid cache manifest entry: " + entry + " " + entry.sha256());
+                }
+                result.add(entry.key(), entry.file(), entry.sha256(), entry.size());
+            }
+        } catch (JSONException e) {
+            throw new IOException("Invalid cache manifest: " + e.getMessage(), e);
+        }
+        return result;
+    }
+
+    private static boolean isPlainFileName(String name) {
+        return !name.isEmpty() && !name.equals(".") && !name.equals("..") && name.indexOf('\\') < 0
+            && !name.startsWith(Constants.DEFAULT_META_FILE);
+    }
+
+    /**
+     * Write this manifest as JSON.
+     * @param output where to write the manifest, which is not closed
+     * @throws IOException if the manifest cannot be written
+     */
+    public void write(OutputStream output) throws IOException {
+        JSONArray list = new JSONArray();
+        for (Entry entry : entries.values()) {
+            list.put(new JSONObject()
+                .put("key", entry.key())
+                .put("file", entry.file())
+                .put("sha256", entry.sha256())
+                .put("size", entry.size()));
+        }
+        JSONObject json = new JSONObject().put("version", FORMAT_VERSION).put("entries", list);
+        Writer writer = new OutputStreamWriter(output, StandardCharsets.UTF_8);
+        json.write(writer, 2, 0);
+        writer.flush();
+    }
+
+    public static class Entry {
+        private final String key;
+        private final String file;
+        private final String sha256;
+        private final long size;
+
+        Entry(String key, String file, String sha256, long size) {
+            this.key = key;
+            this.file = file;
+            this.sha256 = sha256;
+            this.size = size;
+        }
+
+        public String key() {
+            return key;
+        }
+
+        public String file() {
+            return file;
+        }
+
+        public String sha256() {
+            return sha256;
+        }
+
+        public long size() {
+            return size;
+        }
+
+        /**
+         * The file name, without the directories.
+         * @return the last part of the file location
+         */
+        public String fileName() {
+            return file.substring(file.lastIndexOf('/') + 1);
+        }
+
+        @Override
+        public String toString() {
+            return key + "=" + file;
+        }
+    }
+}
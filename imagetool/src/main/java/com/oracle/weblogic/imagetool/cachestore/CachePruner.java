@@ -0,0 +1,292 @@
+// Copyright (c) 2021, Oracle and/or its affiliates.
+// Licensed under the Universal Permissive License v 1.0 as shown at https://oss.oracle.com/licenses/upl.
+
+package com.oracle.weblogic.imagetool.cachestore;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+import com.oracle.weblogic.imagetool.aru.AruUtil;
+import com.oracle.weblogic.imagetool.logging.LoggingFacade;
+import com.oracle.weblogic.imagetool.logging.LoggingFactory;
+import com.oracle.weblogic.imagetool.util.Constants;
+import com.oracle.weblogic.imagetool.util.Utils;
+
+/**
+ * Remove least recently used entries, and files that no entry refers to, from the cache directory.
+ * Only files inside the cache directory are deleted.  Entries that refer to files outside the cache directory,
+ * like installers added with addInstaller, are never removed.  Patches are removed before other entries.
+ */
+public class CachePruner {
+
+    private static final LoggingFacade logger = LoggingFactory.getLogger(CachePruner.class);
+
+    // files newer than this may still be written by another process, like a download in progress
+    private static final Duration ORPHAN_GRACE_PERIOD = Duration.ofHours(1);
+    private static final Pattern PATCH_KEY = Pattern.compile("\\d+" + CacheStore.CACHE_KEY_SEPARATOR + ".*");
+
+    private final CacheStore cacheStore;
+    private long maxSize = -1;
+    private Duration olderThan;
+    private boolean dryRun = false;
+    private final Set<String> keep = new HashSet<>();
+
+    public CachePruner(CacheStore cacheStore) {
+        this.cacheStore = cacheStore;
+    }
+
+    /**
+     * Remove least recently used entries until the files in the cache directory use less than this size.
+     * @param bytes maximum size of the cache directory
+     * @return this
+     */
+    public CachePruner maxSize(long bytes) {
+        maxSize = bytes;
+        return this;
+    }
+
+    /**
+     * Remove entries that have not been used for this long.
+     * @param age maximum time since last use
+     * @return this
+     */
+    public CachePruner olderThan(Duration age) {
+        olderThan = age;
+        return this;
+    }
+
+    /**
+     * Only report what would be removed.
+     * @param value true to leave the cache unchanged
+     * @return this
+     */
+    public CachePruner dryRun(boolean value) {
+        dryRun = value;
+        return this;
+    }
+
+    /**
+     * Never remove this entry.
+     * @param key cache key
+     * @return this
+     */
+    public CachePruner keep(String key) {
+        keep.add(key.toLowerCase());
+        return this;
+    }
+
+    /**
+     * Remove entries and files from the cache.
+     * @return what was removed
+     * @throws IOException if the cache directory could not be read, or a file could not be deleted
+     */
+    public Result prune() throws IOException {
+        logger.entering(maxSize, olderThan, dryRun);
+        Path cacheDir = Paths.get(cacheStore.getCacheDir()).toAbsolutePath().normalize();
+        Map<Path, BasicFileAttributes> files = listFiles(cacheDir);
+        Map<String, String> items = new HashMap<>(cacheStore.getCacheItems());
+        items.remove(Constants.CACHE_DIR_KEY);
+        Map<String, CacheUsage> usage = cacheStore.getUsage();
+
+        // the keys that refer to each file in the cache directory
+        Map<Path, Set<String>> references = new HashMap<>();
+        Map<String, Path> entryFiles = new HashMap<>();
+        for (Map.Entry<String, String> item : items.entrySet()) {
+            Path file = toPath(item.getValue());
+            if (file != null && files.containsKey(file)) {
+                references.computeIfAbsent(file, k -> new HashSet<>()).add(item.getKey());
+                entryFiles.put(item.getKey(), file);
+            }
+        }
+
+        Result result = new Result(dryRun);
+        Map<Object, Integer> links = new HashMap<>();
+        result.size = totalSize(files.values(), links);
+        long graceLimit = System.currentTimeMillis() - ORPHAN_GRACE_PERIOD.toMillis();
+        for (Map.Entry<Path, BasicFileAttributes> file : files.entrySet()) {
+            if (!references.containsKey(file.getKey())
+                && file.getValue().lastModifiedTime().toMillis() < graceLimit) {
+                if (!dryRun) {
+                    logger.info("IMG-0113", file.getKey());
+                }
+                deleteFile(cacheDir, file.getKey(), file.getValue(), links, result);
+            }
+        }
+
+        List<String> candidates = new ArrayList<>(entryFiles.keySet());
+        candidates.removeAll(keep);
+        candidates.sort(Comparator.comparing((String key) -> !PATCH_KEY.matcher(key).matches())
+            .thenComparingLong(key -> lastAccess(key, usage, files.get(entryFiles.get(key)))));
+
+        long ageLimit = olderThan == null ? Long.MIN_VALUE : System.currentTimeMillis() - olderThan.toMillis();
+        if (maxSize >= 0 && result.size > maxSize) {
+            logger.info("IMG-0114", Utils.formatSize(result.size), Utils.formatSize(maxSize));
+        }
+        for (String key : candidates) {
+            boolean expired = lastAccess(key, usage, files.get(entryFiles.get(key))) < ageLimit;
+            if (!expired && (maxSize < 0 || result.size <= maxSize)) {
+                continue;
+            }
+            Path file = entryFiles.get(key);
+            result.removedEntries.add(key);
+            if (!dryRun) {
+                logger.info("IMG-0112", key, file);
+                cacheStore.deleteFromCache(key);
+            }
+            Set<String> remaining = references.get(file);
+            remaining.remove(key);
+            if (remaining.isEmpty()) {
+                deleteFile(cacheDir, file, files.get(file), links, result);
+            }
+        }
+        logger.exiting(result);
+        return result;
+    }
+
+    private void deleteFile(Path cacheDir, Path file, BasicFileAttributes attributes, Map<Object, Integer> links,
+                            Result result) throws IOException {
+
+        result.removedFiles.add(file);
+        // the storage of a hard linked file is only freed when the last link is removed
+        Object fileKey = attributes.fileKey();
+        if (fileKey == null || links.merge(fileKey, -1, Integer::sum) == 0) {
+            result.freed += attributes.size();
+            result.size -= attributes.size();
+        }
+        if (dryRun) {
+            return;
+        }
+        Files.deleteIfExists(file);
+        // remove the digest directory of a content-addressed file once it is empty
+        Path parent = file.getParent();
+        if (ContentStore.isContentAddressed(file.toString()) && !parent.equals(cacheDir)) {
+            try (DirectoryStream<Path> stream = Files.newDirectoryStream(parent)) {
+                if (!stream.iterator().hasNext()) {
+                    Files.deleteIfExists(parent);
+                }
+            }
+        }
+    }
+
+    private static long lastAccess(String key, Map<String, CacheUsage> usage, BasicFileAttributes attributes) {
+        CacheUsage entryUsage = usage.get(key);
+        if (entryUsage != null) {
+            return entryUsage.lastAccess();
+        }
+        // entries added before usage was tracked
+        return attributes.lastModifiedTime().toMillis();
+    }
+
+    /**
+     * Hard links in the content store share storage, count each file once.
+     * @param links receives the number of links to each file, by file key
+     */
+    private static long totalSize(Iterable<BasicFileAttributes> files, Map<Object, Integer> links) {
+        long total = 0;
+        for (BasicFileAttributes attributes : files) {
+            if (attributes.fileKey() == null || links.merge(attributes.fileKey(), 1, Integer::sum) == 1) {
+                total += attributes.size();
+            }
+        }
+        return total;
+    }
+
+    private static Path toPath(String value) {
+        try {
+            return Paths.get(value).toAbsolutePath().normalize();
+        } catch (InvalidPathException e) {
+            return null;
+        }
+    }
+
+    /**
+     * List the files in the cache directory, except for the cache metadata files, and the directories of the tool:
+     * lock files, saved ARU metadata and sessions, and quarantined files.
+     */
+    private static Map<Path, BasicFileAttributes> listFiles(Path cacheDir) throws IOException {
+        Map<Path, BasicFileAttributes> result = new HashMap<>();
+        Files.walkFileTree(cacheDir, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+                if (dir.equals(cacheDir.resolve(FileCacheStore.LOCK_DIR))
+                    || dir.equals(cacheDir.resolve(AruUtil.METADATA_DIR))
+                    || dir.equals(cacheDir.resolve(CacheVerifier.QUARANTINE_DIR))) {
+                    return FileVisitResult.SKIP_SUBTREE;
+                }
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                boolean metadata = file.getParent().equals(cacheDir)
+                    && file.getFileName().toString().startsWith(Constants.DEFAULT_META_FILE);
+                if (attrs.isRegularFile() && !metadata) {
+                    result.put(file, attrs);
+                }
+                return FileVisitResult.CONTINUE;
+            }
+        });
+        return result;
+    }
+
+    /**
+     * The entries and files removed from the cache.
+     */
+    public static class Result {
+        private final boolean dryRun;
+        private final List<String> removedEntries = new ArrayList<>();
+        private final List<Path> removedFiles = new ArrayList<>();
+        private long freed = 0;
+        private long size = 0;
+
+        private Result(boolean dryRun) {
+            this.dryRun = dryRun;
+        }
+
+        public boolean dryRun() {
+            return dryRun;
+        }
+
+        public List<String> removedEntries() {
+            return removedEntries;
+        }
+
+        public List<Path> removedFiles() {
+            return removedFiles;
+        }
+
+        public long freed() {
+            return freed;
+        }
+
+        /**
+         * The size of the files in the cache directory, after pruning.
+         * @return size in bytes
+         */
+        public long size() {
+            return size;
+        }
+
+        @Override
+        public String toString() {
+            return "removed " + removedEntries.size() + " entries, " + removedFiles.size() + " files, "
+                + freed + " bytes";
+        }
+    }
+}
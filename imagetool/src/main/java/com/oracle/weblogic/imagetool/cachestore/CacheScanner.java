@@ -0,0 +1,255 @@
+// Copyright (c) 2021, Oracle and/or its affiliates.
+// Licensed under the Universal Permissive License v 1.0 as shown at https://oss.oracle.com/licenses/upl.
+
+package com.oracle.weblogic.imagetool.cachestore;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import com.oracle.weblogic.imagetool.installer.InstallerType;
+import com.oracle.weblogic.imagetool.logging.LoggingFacade;
+import com.oracle.weblogic.imagetool.logging.LoggingFactory;
+import com.oracle.weblogic.imagetool.util.ParallelTasks;
+
+/**
+ * Find installers and patches in a directory tree, and the cache key for each one.
+ * The installer type, version, and patch ID are taken from the file names used by Oracle downloads, like
+ * {@code fmw_12.2.1.4.0_wls_Disk1_1of1.zip}, {@code jdk-8u202-linux-x64.tar.gz}, and
+ * {@code p28186730_139424_Generic.zip}.  When the name of a zip file is not recognized, the names of the files
+ * inside it are used.  Files are examined in parallel.
+ */
+public class CacheScanner {
+
+    private static final LoggingFacade logger = LoggingFactory.getLogger(CacheScanner.class);
+
+    private static final Pattern PATCH = Pattern.compile("p(\\d+)_(\\d{6,})_[\\w-]+\\.zip");
+    private static final Pattern JDK = Pattern.compile("(?:jdk|server-jre)-(\\d+u\\d+|\\d+(?:\\.\\d+)*)[-_].*");
+    private static final Pattern FMW = Pattern.compile(
+        "fmw_(\\d+(?:\\.\\d+){4})_([a-z0-9_]+?)(?:_linux64)?(?:_generic)?(?:_disk1_1of1)?\\.(?:zip|jar|bin)");
+    private static final Pattern WDT = Pattern.compile("weblogic-deploy(?:-[\\w.-]+)?\\.zip");
+    private static final Pattern WDT_VERSION = Pattern.compile("(\\d+\\.\\d+\\.\\d+)");
+
+    private int threads = Runtime.getRuntime().availableProcessors();
+
+    /**
+     * The number of files to examine at the same time.
+     * @param value number of threads, at least 1
+     * @return this
+     */
+    public CacheScanner threads(int value) {
+        threads = Math.max(1, value);
+        return this;
+    }
+
+    /**
+     * Find the installers and patches in a directory tree.
+     * When two files have the same cache key, the first one, by path, is used.
+     *
+     * @param directory the directory to scan
+     * @return the recognized files by cache key, and the files that were not recognized
+     * @throws IOException if the directory cannot be read
+     */
+    public Result scan(Path directory) throws IOException {
+        logger.entering(directory);
+        List<Path> files;
+        try (Stream<Path> stream = Files.walk(directory)) {
+            files = stream.filter(Files::isRegularFile).sorted().collect(Collectors.toList());
+        }
+
+        Map<Path, String> keys = new ConcurrentHashMap<>();
+        Map<Path, Exception> failures;
+        try {
+            failures = ParallelTasks.forEach(files, threads, "cache-scan", file -> {
+                String key = identify(file);
+                if (key != null) {
+                    keys.put(file, key);
+                }
+            });
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while scanning " + directory, e);
+        }
+        if (!failures.isEmpty()) {
+            throw new IOException(failures.values().iterator().next());
+        }
+
+        Result result = new Result();
+        for (Path file : files) {
+            String key = keys.get(file);
+            if (key == null) {
+                result.unknown.add(file);
+            } else if (result.files.containsKey(key)) {
+                logger.warning("IMG-0134", file, key, result.files.get(key));
+                result.unknown.add(file);
+            } else {
+                result.files.put(key, file.toAbsolutePath());
+            }
+        }
+        logger.exiting(result.files.size());
+        return result;
+    }
+
+    /**
+     * Returns the cache key for an installer or patch file.
+     * @param file the file to examine
+     * @return the cache key, or null if the file is not a known installer or patch
+     */
+    static String identify(Path file) {
+        String name = file.getFileName().toString().toLowerCase(Locale.ROOT);
+        String key = keyForName(name);
+        if ((key == null && name.endsWith(".zip")) || WDT.matcher(name).matches()) {
+            key = keyForContents(file, name);
+        }
+        logger.fine("{0} identified as {1}", file, key);
+        return key;
+    }
+
+    /**
+     * Returns the cache key for a file name, or null.
+     */
+    static String keyForName(String name) {
+        Matcher matcher = PATCH.matcher(name);
+        if (matcher.matches()) {
+            return matcher.group(1) + CacheStore.CACHE_KEY_SEPARATOR + releaseVersion(matcher.group(2));
+        }
+        matcher = JDK.matcher(name);
+        if (matcher.matches() && (name.endsWith(".tar.gz") || name.endsWith(".tgz"))) {
+            return key(InstallerType.JDK, matcher.group(1));
+        }
+        matcher = FMW.matcher(name);
+        if (matcher.matches()) {
+            InstallerType type = installerType(matcher.group(2));
+            return type == null ? null : key(type, matcher.group(1));
+        }
+        if (WDT.matcher(name).matches()) {
+            // the version is in the zip file
+            return key(InstallerType.WDT, "");
+        }
+        return null;
+    }
+
+    /**
+     * Look inside a zip file for the installer that it contains, or the WDT version.
+     */
+    private static String keyForContents(Path file, String name) {
+        try (ZipFile zip = new ZipFile(file.toFile())) {
+            if (WDT.matcher(name).matches()) {
+                ZipEntry version = zip.getEntry("weblogic-deploy/VERSION.txt");
+                if (version == null) {
+                    return null;
+                }
+                try (BufferedReader reader = new BufferedReader(
+                    new InputStreamReader(zip.getInputStream(version), StandardCharsets.UTF_8))) {
+                    Matcher matcher = WDT_VERSION.matcher(reader.lines().collect(Collectors.joining(" ")));
+                    return matcher.find() ? key(InstallerType.WDT, matcher.group(1)) : null;
+                }
+            }
+            Enumeration<? extends ZipEntry> entries = zip.entries();
+            while (entries.hasMoreElements()) {
+                ZipEntry entry = entries.nextElement();
+                String entryName = entry.getName().substring(entry.getName().lastIndexOf('/') + 1);
+                String key = keyForName(entryName.toLowerCase(Locale.ROOT));
+                if (key != null && !key.endsWith(CacheStore.CACHE_KEY_SEPARATOR) && !entry.isDirectory()) {
+                    return key;
+                }
+            }
+        } catch (IOException e) {
+            logger.warning("IMG-0135", file, e.getMessage());
+        }
+        return null;
+    }
+
+    /**
+     * Convert the release in a patch file name to a version, like 122140 to 12.2.1.4.0, or 12213190416 to
+     * 12.2.1.3.190416.  The first two digits are the major version, the next three digits are one digit each, and
+     * the remaining digits are the last part of the version.
+     */
+    static String releaseVersion(String release) {
+        StringBuilder result = new StringBuilder(release.substring(0, 2));
+        for (int i = 2; i < 5; i++) {
+            result.append('.').append(release.charAt(i));
+        }
+        return result.append('.').append(release.substring(5)).toString();
+    }
+
+    private static InstallerType installerType(String product) {
+        if (product.contains("slim")) {
+            return InstallerType.WLSSLIM;
+        } else if (product.startsWith("wls_quick") || product.startsWith("wls_dev")) {
+            return InstallerType.WLSDEV;
+        } else if (product.equals("wls") || product.equals("wls_lite") || product.equals("wls_generic")) {
+            return InstallerType.WLS;
+        } else if (product.equals("infrastructure") || product.equals("fmw")) {
+            return InstallerType.FMW;
+        } else if (product.startsWith("b2b")) {
+            return InstallerType.B2B;
+        }
+        switch (product) {
+            case "soa":
+                return InstallerType.SOA;
+            case "osb":
+                return InstallerType.OSB;
+            case "mft":
+                return InstallerType.MFT;
+            case "idm":
+                return InstallerType.IDM;
+            case "oud":
+                return InstallerType.OUD;
+            case "oid":
+                return InstallerType.OID;
+            case "wccontent":
+                return InstallerType.WCC;
+            case "wcportal":
+                return InstallerType.WCP;
+            case "wcsites":
+                return InstallerType.WCS;
+            default:
+                return null;
+        }
+    }
+
+    private static String key(InstallerType type, String version) {
+        return type + CacheStore.CACHE_KEY_SEPARATOR + version;
+    }
+
+    /**
+     * The installers and patches found in a directory.
+     */
+    public static class Result {
+        private final Map<String, Path> files = new LinkedHashMap<>();
+        private final List<Path> unknown = new ArrayList<>();
+
+        /**
+         * The recognized files.
+         * @return map of cache key to absolute file location
+         */
+        public Map<String, Path> files() {
+            return files;
+        }
+
+        /**
+         * Files that are not recognized as an installer or patch, or that have the same key as another file.
+         * @return list of files
+         */
+        public List<Path> unknown() {
+            return unknown;
+        }
+    }
+}
@@ -3,7 +3,12 @@
 
 package com.oracle.weblogic.imagetool.cachestore;
 
+import java.io.Closeable;
+import java.nio.file.Path;
+import java.util.Collections;
 import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
 
 /**
  * This is the interface that helps keep track of application metadata like
@@ -30,6 +35,18 @@ public interface CacheStore {
      */
     String getValueFromCache(String key);
 
+    /**
+     * Returns the value for the key, like getValueFromCache, and when the file is not in the local cache, copies
+     * the file from the shared cache first, if there is one.  Use this when the file itself is needed, like for a
+     * build, and getValueFromCache to only check the cache.
+     *
+     * @param key key to look for. Ex: patch number
+     * @return value if present in cache or else null.
+     */
+    default String fetchValue(String key) {
+        return getValueFromCache(key);
+    }
+
     /**
      * Checks if cache has certain key, value combination. This is used to check if a certain artifact
      * is in the desired location if it has been downloaded previously.
@@ -48,6 +65,57 @@ public interface CacheStore {
      */
     void addToCache(String key, String value) throws CacheStoreException;
 
+    /**
+     * Add a file to the cache.  A content-addressed cache stores the file once, under the digest
+     * of its contents, and the entry points at the stored copy.  Otherwise, the entry points at the file provided.
+     *
+     * @param key  artifact identifier
+     * @param file the file to add
+     * @return the value stored for the key
+     */
+    default String addFileToCache(String key, Path file) throws CacheStoreException {
+        String value = file.toAbsolutePath().toString();
+        addToCache(key, value);
+        return value;
+    }
+
+    /**
+     * Add several files to the cache in one update, like {@link #addFileToCache(String, Path)}.
+     *
+     * @param files artifact identifiers and the files to add
+     * @return the values stored for the keys
+     */
+    default Map<String, String> addFilesToCache(Map<String, Path> files) throws CacheStoreException {
+        Map<String, String> result = new TreeMap<>();
+        for (Map.Entry<String, Path> file : files.entrySet()) {
+            result.put(file.getKey(), addFileToCache(file.getKey(), file.getValue()));
+        }
+        return result;
+    }
+
+    /**
+     * Find a file in the cache by the SHA-256 digest of its contents.
+     *
+     * @param digest   SHA-256 digest, as a hex string
+     * @param fileName the file name that the caller expects
+     * @return location of the file on disk, or null if this cache does not have a file with that content
+     */
+    default String getFileByDigest(String digest, String fileName) throws CacheStoreException {
+        return null;
+    }
+
+    /**
+     * Acquire an exclusive lock on an artifact in the cache.
+     * A cache that is shared by several processes uses the lock so that only one process
+     * downloads an artifact, while the others wait for the download to finish.
+     *
+     * @param name name of the artifact, usually the file name
+     * @return the held lock, which must be closed to release it
+     */
+    default Closeable lock(String name) throws CacheStoreException {
+        return () -> { };
+    }
+
     /**
      * Delete an entry from the cache.
      *
@@ -64,8 +132,57 @@ public interface CacheStore {
     /**
      * Returns a map of current items in the cache.
      *
-     * @return map of current items
+     * @return map of current items, which may be read-only
      */
     Map<String, String> getCacheItems();
 
+    /**
+     * Returns the typed cache entry for a key.
+     *
+     * @param key key to look for
+     * @return the entry, or null if the key is not in the cache
+     */
+    default CacheEntry getEntry(String key) {
+        String value = getValueFromCache(key);
+        return value == null ? null : CacheEntry.of(key, value, getUsage().get(key.toLowerCase()));
+    }
+
+    /**
+     * Returns all cached versions of an installer type or patch, oldest first.
+     *
+     * @param id installer type or patch ID, like wls or 28186730
+     * @return entries by version, empty if none are cached
+     */
+    default NavigableMap<String, CacheEntry> getVersions(String id) {
+        NavigableMap<String, CacheEntry> result = new TreeMap<>(CacheEntry.VERSION_ORDER);
+        getCacheItems().forEach((key, value) -> {
+            CacheEntry entry = CacheEntry.of(key, value, null);
+            if (entry.id().equalsIgnoreCase(id) && entry.version() != null) {
+                result.put(entry.version(), entry);
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Returns the newest cached version of an installer type or patch.
+     *
+     * @param id installer type or patch ID, like wls or 28186730
+     * @return the newest entry, or null if none are cached
+     */
+    default CacheEntry getLatestVersion(String id) {
+        NavigableMap<String, CacheEntry> versions = getVersions(id);
+        return versions.isEmpty() ? null : versions.lastEntry().getValue();
+    }
+
+    /**
+     * Returns when each cache entry was last used, and the size of its file.
+     * Entries that have never been used since they were added, by a version that tracked usage, may be missing.
+     *
+     * @return map of cache key to usage
+     */
+    default Map<String, CacheUsage> getUsage() {
+        return Collections.emptyMap();
+    }
+
 }
@@ -3,6 +3,8 @@
 
 package com.oracle.weblogic.imagetool.cachestore;
 
+import com.oracle.weblogic.imagetool.util.Utils;
+
 /**
  * Provides access to a Cache Store.
  */
@@ -16,11 +18,18 @@ public class CacheStoreFactory {
 
     /**
      * Get the cache store.
+     * When a shared cache is configured with WLSIMG_REMOTE_CACHE, the file cache store is backed by the shared cache.
      * @return the cached instance of the file cache store
      */
     public static CacheStore cache() throws CacheStoreException {
         if (store == null) {
-            store = new FileCacheStore();
+            FileCacheStore local = new FileCacheStore();
+            String remote = Utils.getEnvironmentProperty(TieredCacheStore.REMOTE_CACHE, null);
+            if (Utils.isEmptyString(remote)) {
+                store = local;
+            } else {
+                store = new TieredCacheStore(local, RemoteCacheTier.of(remote));
+            }
         }
 
         return store;
@@ -0,0 +1,60 @@
+// Copyright (c) 2021, Oracle and/or its affiliates.
+// Licensed under the Universal Permissive License v 1.0 as shown at https://oss.oracle.com/licenses/upl.
+
+package com.oracle.weblogic.imagetool.cachestore;
+
+/**
+ * When a cache entry was last used, and the size of the file it refers to.
+ */
+public class CacheUsage {
+
+    private final long lastAccess;
+    private final long size;
+
+    public CacheUsage(long lastAccess, long size) {
+        this.lastAccess = lastAccess;
+        this.size = size;
+    }
+
+    /**
+     * The last time the entry was added or used.
+     * @return milliseconds since the epoch
+     */
+    public long lastAccess() {
+        return lastAccess;
+    }
+
+    /**
+     * The size of the file, when the entry was last used.
+     * @return size in bytes, or -1 if the entry does not refer to a file
+     */
+    public long size() {
+        return size;
+    }
+
+    @Override
+    public String toString() {
+        return lastAccess + "," + size;
+    }
+
+    /**
+     * Parse the value written by toString().
+     * @param value a string with the last access time and size, separated by a comma
+     * @return the usage, or null if the value could not be parsed
+     */
+    static CacheUsage parse(String value) {
+        if (value == null) {
+            return null;
+        }
+        int split = value.indexOf(',');
+        try {
+            if (split < 0) {
+                return new CacheUsage(Long.parseLong(value.trim()), -1);
+            }
+            return new CacheUsage(Long.parseLong(value.substring(0, split).trim()),
+                Long.parseLong(value.substring(split + 1).trim()));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+}
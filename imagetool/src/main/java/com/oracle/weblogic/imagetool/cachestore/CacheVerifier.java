@@ -0,0 +1,265 @@
+// Copyright (c) 2021, Oracle and/or its affiliates.
+// Licensed under the Universal Permissive License v 1.0 as shown at https://oss.oracle.com/licenses/upl.
+
+package com.oracle.weblogic.imagetool.cachestore;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.ZipException;
+import java.util.zip.ZipFile;
+
+import com.oracle.weblogic.imagetool.api.model.CachedFile;
+import com.oracle.weblogic.imagetool.logging.LoggingFacade;
+import com.oracle.weblogic.imagetool.logging.LoggingFactory;
+import com.oracle.weblogic.imagetool.util.Constants;
+import com.oracle.weblogic.imagetool.util.ParallelTasks;
+import com.oracle.weblogic.imagetool.util.Utils;
+
+/**
+ * Check that the files in the cache are intact.
+ * Content-addressed files must match the digest in their location, and zip and jar files must have a readable
+ * central directory, which a truncated download does not have.  Files are hashed in parallel, and a file with the
+ * same size and modification time as the last time it was verified is not read again.
+ * Corrupt files in the cache directory are moved to the quarantine directory, and their entries are removed.
+ */
+public class CacheVerifier {
+
+    private static final LoggingFacade logger = LoggingFactory.getLogger(CacheVerifier.class);
+    public static final String QUARANTINE_DIR = ".quarantine";
+
+    private final CacheStore cacheStore;
+    private int threads = Runtime.getRuntime().availableProcessors();
+    private boolean dryRun = false;
+
+    public CacheVerifier(CacheStore cacheStore) {
+        this.cacheStore = cacheStore;
+    }
+
+    /**
+     * The number of files to read at the same time.
+     * @param value number of threads, at least 1
+     * @return this
+     */
+    public CacheVerifier threads(int value) {
+        threads = Math.max(1, value);
+        return this;
+    }
+
+    /**
+     * Only report corrupt files.
+     * @param value true to leave the cache unchanged
+     * @return this
+     */
+    public CacheVerifier dryRun(boolean value) {
+        dryRun = value;
+        return this;
+    }
+
+    /**
+     * Verify every file in the cache.
+     * @return the corrupt files and missing files that were found
+     * @throws IOException if the cache directory cannot be updated
+     */
+    public Result verify() throws IOException {
+        logger.entering(threads, dryRun);
+        Path cacheDir = Paths.get(cacheStore.getCacheDir()).toAbsolutePath().normalize();
+        ChecksumCache checksums = new ChecksumCache(cacheDir).load();
+        Map<String, String> items = new TreeMap<>(cacheStore.getCacheItems());
+        items.remove(Constants.CACHE_DIR_KEY);
+
+        Result result = new Result(dryRun);
+        // the keys that refer to each file
+        Map<Path, List<String>> files = new LinkedHashMap<>();
+        for (Map.Entry<String, String> item : items.entrySet()) {
+            if (CachedFile.isFileOnDisk(item.getValue())) {
+                Path file = Paths.get(item.getValue()).toAbsolutePath().normalize();
+                files.computeIfAbsent(file, k -> new ArrayList<>()).add(item.getKey());
+            } else if (!Files.isDirectory(Paths.get(item.getValue()))) {
+                logger.warning("IMG-0129", item.getKey(), item.getValue());
+                result.missing.add(item.getKey());
+            }
+        }
+        result.entries = items.size();
+        result.files = files.size();
+
+        // read the largest files first, so that one large file does not finish long after all the others
+        List<Path> order = new ArrayList<>(files.keySet());
+        Map<Path, Long> sizes = new HashMap<>();
+        for (Path file : order) {
+            sizes.put(file, Files.size(file));
+        }
+        order.sort((a, b) -> Long.compare(sizes.get(b), sizes.get(a)));
+
+        AtomicInteger hashed = new AtomicInteger();
+        AtomicLong hashedBytes = new AtomicLong();
+        Map<Path, String> problems = new ConcurrentHashMap<>();
+        Map<Path, Exception> failures;
+        try {
+            failures = ParallelTasks.forEach(order, threads, "cache-verify", file -> {
+                String problem = check(file, checksums, hashed, hashedBytes);
+                if (problem != null) {
+                    problems.put(file, problem);
+                }
+            });
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while verifying the cache", e);
+        }
+        if (!failures.isEmpty()) {
+            Exception error = failures.values().iterator().next();
+            throw error instanceof IOException ? (IOException) error : new IOException(error);
+        }
+        for (Path file : order) {
+            if (problems.containsKey(file)) {
+                logger.warning("IMG-0126", file, problems.get(file));
+                result.corrupt.put(file, problems.get(file));
+            }
+        }
+        result.hashed = hashed.get();
+        result.hashedBytes = hashedBytes.get();
+
+        if (!dryRun) {
+            for (Path file : result.corrupt.keySet()) {
+                quarantine(cacheDir, file, files.get(file), checksums);
+            }
+        }
+        try (Closeable lock = cacheStore.lock(ChecksumCache.FILE_NAME)) {
+            checksums.save();
+        }
+        logger.exiting(result);
+        return result;
+    }
+
+    /**
+     * Check one file.
+     * @return a description of the problem, or null if the file is intact
+     */
+    private static String check(Path file, ChecksumCache checksums, AtomicInteger hashed, AtomicLong hashedBytes)
+        throws IOException {
+
+        BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+        if (checksums.get(file, attributes) != null) {
+            logger.finer("{0} has not changed since it was verified", file);
+            return null;
+        }
+        logger.fine("Verifying {0}", file);
+        String digest = Utils.sha256(file);
+        hashed.incrementAndGet();
+        hashedBytes.addAndGet(attributes.size());
+
+        String expected = ContentStore.digestOf(file.toString());
+        if (expected != null && !expected.equals(digest)) {
+            return Utils.getMessage("IMG-0130", digest, expected);
+        }
+        String name = file.getFileName().toString().toLowerCase();
+        if (name.endsWith(".zip") || name.endsWith(".jar")) {
+            try (ZipFile zip = new ZipFile(file.toFile())) {
+                logger.finer("{0} has {1} zip entries", file, zip.size());
+            } catch (ZipException e) {
+                return Utils.getMessage("IMG-0131", e.getMessage());
+            }
+        }
+        checksums.put(file, attributes, digest);
+        return null;
+    }
+
+    /**
+     * Remove the entries for a corrupt file, and move the file out of the way if the cache owns it.
+     * Files outside the cache directory, like installers added with addInstaller, are left in place.
+     */
+    private void quarantine(Path cacheDir, Path file, List<String> keys, ChecksumCache checksums)
+        throws IOException {
+
+        for (String key : keys) {
+            cacheStore.deleteFromCache(key);
+        }
+        checksums.remove(file);
+        if (!file.startsWith(cacheDir)) {
+            logger.info("IMG-0127", file, keys);
+            return;
+        }
+        Path quarantineDir = Files.createDirectories(cacheDir.resolve(QUARANTINE_DIR));
+        Path target = quarantineDir.resolve(file.getFileName());
+        for (int i = 1; Files.exists(target); i++) {
+            target = quarantineDir.resolve(file.getFileName() + "." + i);
+        }
+        Files.move(file, target);
+        logger.info("IMG-0128", file, target, keys);
+    }
+
+    /**
+     * The corrupt and missing files found in the cache.
+     */
+    public static class Result {
+        private final boolean dryRun;
+        private final Map<Path, String> corrupt = new LinkedHashMap<>();
+        private final List<String> missing = new ArrayList<>();
+        private int entries;
+        private int files;
+        private int hashed;
+        private long hashedBytes;
+
+        private Result(boolean dryRun) {
+            this.dryRun = dryRun;
+        }
+
+        public boolean dryRun() {
+            return dryRun;
+        }
+
+        /**
+         * The corrupt files, and the problem found in each one.
+         * @return map of file to description of the problem
+         */
+        public Map<Path, String> corrupt() {
+            return corrupt;
+        }
+
+        /**
+         * Keys of the entries that refer to files that do not exist.
+         * @return list of keys
+         */
+        public List<String> missing() {
+            return missing;
+        }
+
+        public int entries() {
+            return entries;
+        }
+
+        public int files() {
+            return files;
+        }
+
+        /**
+         * The number of files that were read, because they were new or changed since the last verification.
+         * @return number of files
+         */
+        public int hashed() {
+            return hashed;
+        }
+
+        public long hashedBytes() {
+            return hashedBytes;
+        }
+
+        @Override
+        public String toString() {
+            return "verified " + files + " files, read " + hashed + " files, " + corrupt.size() + " corrupt, "
+                + missing.size() + " missing";
+        }
+    }
+}
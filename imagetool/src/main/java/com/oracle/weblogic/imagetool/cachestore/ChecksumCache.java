@@ -0,0 +1,151 @@
+// Copyright (c) 2021, Oracle and/or its affiliates.
+// Licensed under the Universal Permissive License v 1.0 as shown at https://oss.oracle.com/licenses/upl.
+
+package com.oracle.weblogic.imagetool.cachestore;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.oracle.weblogic.imagetool.logging.LoggingFacade;
+import com.oracle.weblogic.imagetool.logging.LoggingFactory;
+import com.oracle.weblogic.imagetool.util.Constants;
+import com.oracle.weblogic.imagetool.util.Utils;
+
+/**
+ * The SHA-256 digests of files in the cache, with the size and modification time of each file when it was hashed.
+ * A file with the same size and modification time is not read again.
+ * Saved in the cache directory as {@code .metadata.checksums}, one file per line.
+ */
+class ChecksumCache {
+
+    private static final LoggingFacade logger = LoggingFactory.getLogger(ChecksumCache.class);
+    static final String FILE_NAME = Constants.DEFAULT_META_FILE + ".checksums";
+
+    private final Path file;
+    private final Map<Path, Checksum> checksums = new ConcurrentHashMap<>();
+    private volatile boolean changed = false;
+
+    ChecksumCache(Path cacheDir) {
+        file = cacheDir.resolve(FILE_NAME);
+    }
+
+    /**
+     * Read the saved checksums.  Malformed lines are ignored.
+     * @return this
+     * @throws IOException if the file exists but cannot be read
+     */
+    ChecksumCache load() throws IOException {
+        checksums.putAll(readFile());
+        return this;
+    }
+
+    /**
+     * Returns the digest of a file, if the file has not changed since it was hashed.
+     * @param path       absolute location of the file
+     * @param attributes current attributes of the file
+     * @return the digest, or null if the file is new or changed
+     */
+    String get(Path path, BasicFileAttributes attributes) {
+        Checksum checksum = checksums.get(path);
+        if (checksum != null && checksum.size == attributes.size()
+            && checksum.modified == attributes.lastModifiedTime().toMillis()) {
+            return checksum.digest;
+        }
+        return null;
+    }
+
+    void put(Path path, BasicFileAttributes attributes, String digest) {
+        checksums.put(path, new Checksum(digest, attributes.size(), attributes.lastModifiedTime().toMillis()));
+        changed = true;
+    }
+
+    void remove(Path path) {
+        changed |= checksums.remove(path) != null;
+    }
+
+    /**
+     * Returns the digest of a file, reading the file only if it changed since it was last hashed.
+     * @param path absolute location of the file
+     * @return the SHA-256 digest
+     * @throws IOException if the file cannot be read
+     */
+    String digest(Path path) throws IOException {
+        BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+        String digest = get(path, attributes);
+        if (digest == null) {
+            digest = Utils.sha256(path);
+            put(path, attributes, digest);
+        }
+        return digest;
+    }
+
+    /**
+     * Save the checksums, if any were added, merged with checksums saved by other processes since this was loaded.
+     * Checksums of files that no longer exist are dropped.  The caller should hold the cache lock for this file.
+     * @throws IOException if the file cannot be written
+     */
+    void save() throws IOException {
+        if (!changed) {
+            return;
+        }
+        Map<Path, Checksum> merged = readFile();
+        merged.putAll(checksums);
+        Path temp = Files.createTempFile(file.getParent(), FILE_NAME, ".tmp");
+        try {
+            try (BufferedWriter writer = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+                for (Map.Entry<Path, Checksum> entry : merged.entrySet()) {
+                    if (Files.isRegularFile(entry.getKey())) {
+                        Checksum checksum = entry.getValue();
+                        writer.write(checksum.digest + '\t' + checksum.size + '\t' + checksum.modified + '\t'
+                            + entry.getKey());
+                        writer.newLine();
+                    }
+                }
+            }
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+        changed = false;
+    }
+
+    private Map<Path, Checksum> readFile() throws IOException {
+        Map<Path, Checksum> result = new ConcurrentHashMap<>();
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String[] fields = line.split("\t", 4);
+                try {
+                    result.put(file.getFileSystem().getPath(fields[3]),
+                        new Checksum(fields[0], Long.parseLong(fields[1]), Long.parseLong(fields[2])));
+                } catch (RuntimeException e) {
+                    logger.fine("Ignoring invalid checksum record: {0}", line);
+                }
+            }
+        } catch (NoSuchFileException e) {
+            // no checksums yet
+        }
+        return result;
+    }
+
+    private static class Checksum {
+        private final String digest;
+        private final long size;
+        private final long modified;
+
+        Checksum(String digest, long size, long modified) {
+            this.digest = digest;
+            this.size = size;
+            this.modified = modified;
+        }
+    }
+}
@@ -0,0 +1,167 @@
+// Copyright (c) 2021, Oracle and/or its affiliates.
+// Licensed under the Universal Permissive License v 1.0 as shown at https://oss.oracle.com/licenses/upl.
+
+package com.oracle.weblogic.imagetool.cachestore;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.regex.Pattern;
+
+import com.oracle.weblogic.imagetool.logging.LoggingFacade;
+import com.oracle.weblogic.imagetool.logging.LoggingFactory;
+import com.oracle.weblogic.imagetool.util.Utils;
+
+/**
+ * Content-addressed file storage inside the cache directory.
+ * Every artifact is stored once, under the SHA-256 digest of its contents, as
+ * {@code <cache dir>/sha256/<digest>/<file name>}.  The original file name is kept because the
+ * Dockerfile templates refer to installers and patches by file name.
+ */
+public class ContentStore {
+
+    private static final LoggingFacade logger = LoggingFactory.getLogger(ContentStore.class);
+
+    public static final String STORE_DIR = "sha256";
+    private static final Pattern DIGEST_PATTERN = Pattern.compile("[0-9a-f]{64}");
+
+    private final Path root;
+
+    ContentStore(Path cacheDir) {
+        root = cacheDir.resolve(STORE_DIR);
+    }
+
+    /**
+     * Store a file by its content.
+     * If a file with the same digest is already in the store, the existing copy is used.
+     *
+     * @param source   the file to store
+     * @param fileName the file name to use inside the store
+     * @param move     true if the source file should be moved into the store (instead of copied)
+     * @return the location of the stored file
+     * @throws IOException if the file could not be read or stored
+     */
+    Path store(Path source, String fileName, boolean move) throws IOException {
+        logger.entering(source, fileName, move);
+        String digest = Utils.sha256(source);
+        Path existing = find(digest, fileName);
+        if (existing != null) {
+            logger.fine("Content of {0} already stored as {1}", source, existing);
+            if (move) {
+                Files.delete(source);
+            }
+            logger.exiting(existing);
+            return existing;
+        }
+
+        Path digestDir = Files.createDirectories(root.resolve(digest));
+        Path target = digestDir.resolve(fileName);
+        // copy into a temporary file first, so that a partially copied file is never visible under the final name
+        Path temp = Files.createTempFile(digestDir, fileName, ".tmp");
+        try {
+            if (move) {
+                Files.move(source, temp, StandardCopyOption.REPLACE_EXISTING);
+            } else {
+                Files.copy(source, temp, StandardCopyOption.REPLACE_EXISTING);
+            }
+            Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+        logger.exiting(target);
+        return target;
+    }
+
+    /**
+     * Find a stored file by digest.
+     * If the content is stored under a different file name, a link with the requested name is added
+     * next to the existing file.
+     *
+     * @param digest   SHA-256 digest of the file contents
+     * @param fileName the file name the caller needs
+     * @return the stored file, or null if the content is not in the store
+     * @throws IOException if the store could not be read
+     */
+    Path find(String digest, String fileName) throws IOException {
+        if (digest == null || !DIGEST_PATTERN.matcher(digest.toLowerCase()).matches()) {
+            return null;
+        }
+        Path digestDir = root.resolve(digest.toLowerCase());
+        if (!Files.isDirectory(digestDir)) {
+            return null;
+        }
+        Path target = digestDir.resolve(fileName);
+        if (Files.isRegularFile(target)) {
+            return target;
+        }
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(digestDir, p -> !p.toString().endsWith(".tmp"))) {
+            for (Path other : stream) {
+                if (Files.isRegularFile(other)) {
+                    try {
+                        return linkOrCopy(other, target);
+                    } catch (FileAlreadyExistsException e) {
+                        // another process added the same name first
+                        return target;
+                    }
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns the digest encoded in the path of a content-addressed file.
+     *
+     * @param filePath a file location, usually a value from the cache
+     * @return the SHA-256 digest, or null if the file is not in a content store
+     */
+    public static String digestOf(String filePath) {
+        if (filePath == null) {
+            return null;
+        }
+        Path digestDir = Paths.get(filePath).getParent();
+        if (digestDir == null || digestDir.getParent() == null || digestDir.getFileName() == null) {
+            return null;
+        }
+        String digest = digestDir.getFileName().toString();
+        Path storeDir = digestDir.getParent().getFileName();
+        if (storeDir != null && STORE_DIR.equals(storeDir.toString()) && DIGEST_PATTERN.matcher(digest).matches()) {
+            return digest;
+        }
+        return null;
+    }
+
+    /**
+     * Returns true if the file is managed by a content store.
+     * Content-addressed files are never modified in place, so they can safely be linked instead of copied.
+     *
+     * @param filePath a file location, usually a value from the cache
+     * @return true if the file path is inside a content store
+     */
+    public static boolean isContentAddressed(String filePath) {
+        return digestOf(filePath) != null;
+    }
+
+    /**
+     * Create a hard link to an existing file, falling back to a copy when the file system does not support links.
+     *
+     * @param existing the file to link to
+     * @param link     the new file name
+     * @return the new link (or copy)
+     * @throws IOException if neither a link nor a copy could be created
+     */
+    public static Path linkOrCopy(Path existing, Path link) throws IOException {
+        try {
+            return Files.createLink(link, existing);
+        } catch (FileAlreadyExistsException e) {
+            throw e;
+        } catch (IOException | UnsupportedOperationException e) {
+            logger.fine("Unable to link {0} to {1}, copying instead: {2}", link, existing, e.getMessage());
+            return Files.copy(existing, link);
+        }
+    }
+}
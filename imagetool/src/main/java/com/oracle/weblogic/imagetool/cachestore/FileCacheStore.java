@@ -3,22 +3,24 @@
 
 package com.oracle.weblogic.imagetool.cachestore;
 
-import java.io.BufferedReader;
+import java.io.Closeable;
 import java.io.File;
-import java.io.FileOutputStream;
-import java.io.FileReader;
 import java.io.IOException;
 import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
 import java.nio.file.LinkOption;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
+import java.util.NavigableMap;
 import java.util.Objects;
 import java.util.Properties;
-import java.util.stream.Collectors;
-import java.util.stream.Stream;
+import java.util.TreeMap;
+import java.util.function.Supplier;
 
 import com.oracle.weblogic.imagetool.logging.LoggingFacade;
 import com.oracle.weblogic.imagetool.logging.LoggingFactory;
@@ -28,32 +30,47 @@ import com.oracle.weblogic.imagetool.util.Utils;
 public class FileCacheStore implements CacheStore {
 
     public static final String CACHEDIR = "WLSIMG_CACHEDIR";
+    public static final String CONTENT_ADDRESSED = "WLSIMG_CACHE_CONTENT_ADDRESSED";
+    public static final String MAX_SIZE = "WLSIMG_CACHE_MAX_SIZE";
+    static final String LOCK_DIR = ".locks";
+    static final String LOCK_SUFFIX = ".lock";
     private static final LoggingFacade logger = LoggingFactory.getLogger(FileCacheStore.class);
+    // usage is recorded at most once a minute per entry
+    private static final long ACCESS_INTERVAL = 60000;
 
     private final Properties properties = new Properties();
-    private String metadataPath;
+    private final CacheIndex index = new CacheIndex();
+    private long indexedChanges = -1;
+    private MetadataJournal journal;
+    private Path metadataLockFile;
+    private String cacheDirectory;
+    private ContentStore contentStore;
 
     FileCacheStore() throws CacheStoreException {
         try {
             String userCacheDir = initCacheDir();
-            metadataPath = userCacheDir + File.separator + Constants.DEFAULT_META_FILE;
-            File metadataFile = new File(metadataPath);
-            if (metadataFile.exists() && metadataFile.isFile()) {
-                loadProperties(metadataFile);
-            } else {
-                if (!metadataFile.createNewFile()) {
-                    throw new IOException("Failed to create file cache metadata file " + metadataFile.getName());
+            Path metadataFile = Paths.get(userCacheDir, Constants.DEFAULT_META_FILE);
+            metadataLockFile = metadataFile.resolveSibling(metadataFile.getFileName() + LOCK_SUFFIX);
+            journal = new MetadataJournal(metadataFile);
+            try (CacheLock lock = CacheLock.acquire(metadataLockFile, Constants.DEFAULT_META_FILE)) {
+                journal.load(properties);
+                if (properties.getProperty(Constants.CACHE_DIR_KEY) == null) {
+                    properties.put(Constants.CACHE_DIR_KEY, userCacheDir);
+                    journal.compact(properties);
+                } else if (journal.needsCompaction(properties.size())) {
+                    journal.compact(properties);
                 }
             }
-            if (properties.getProperty(Constants.CACHE_DIR_KEY) == null) {
-                properties.put(Constants.CACHE_DIR_KEY, userCacheDir);
-                persistToDisk();
-            }
-            File cacheDir = new File(properties.getProperty(Constants.CACHE_DIR_KEY));
+            cacheDirectory = properties.getProperty(Constants.CACHE_DIR_KEY);
+            File cacheDir = new File(cacheDirectory);
             if (!cacheDir.exists() && !cacheDir.mkdirs()) {
                 // the cache directory did not exist, and the mkdirs failed to create it
                 throw new IOException("Failed to create cache directory: " + cacheDir.getName());
             }
+            if (Boolean.parseBoolean(Utils.getEnvironmentProperty(CONTENT_ADDRESSED, "false"))) {
+                logger.fine("Using content-addressed storage in {0}", cacheDir);
+                contentStore = new ContentStore(cacheDir.toPath());
+            }
         } catch (IOException e) {
             CacheStoreException error =
                 new CacheStoreException("Failed to establish a cache store on the filesystem", e);
@@ -64,13 +81,17 @@ public class FileCacheStore implements CacheStore {
 
     @Override
     public String getCacheDir() {
-        return properties.getProperty(Constants.CACHE_DIR_KEY);
+        return cacheDirectory;
     }
 
     @Override
     public String getValueFromCache(String key) {
         Objects.requireNonNull(key, Utils.getMessage("IMG-0066"));
-        return properties.getProperty(key.toLowerCase());
+        String value = read(() -> properties.getProperty(key.toLowerCase()));
+        if (value != null) {
+            recordAccess(key.toLowerCase(), value);
+        }
+        return value;
     }
 
     @Override
@@ -78,15 +99,133 @@ public class FileCacheStore implements CacheStore {
         if (key == null || value == null) {
             return false;
         }
-        return value.equals(properties.getProperty(key.toLowerCase()));
+        return read(() -> value.equals(properties.getProperty(key.toLowerCase())));
     }
 
     @Override
     public void addToCache(String key, String value) throws CacheStoreException {
         Objects.requireNonNull(key, Utils.getMessage("IMG-0066"));
         Objects.requireNonNull(value, "Cache item value cannot be null");
-        properties.put(key.toLowerCase(), value);
-        persistToDisk();
+        update(() -> {
+            CacheUsage usage = new CacheUsage(System.currentTimeMillis(), fileSize(value));
+            properties.put(key.toLowerCase(), value);
+            journal.put(key.toLowerCase(), value);
+            journal.access(key.toLowerCase(), usage);
+            index.put(key.toLowerCase(), value, usage);
+            return null;
+        });
+    }
+
+    private void recordAccess(String key, String value) {
+        long now = System.currentTimeMillis();
+        CacheUsage last = read(() -> journal.usage().get(key));
+        if (last != null && now - last.lastAccess() < ACCESS_INTERVAL) {
+            return;
+        }
+        try {
+            update(() -> {
+                journal.access(key, new CacheUsage(now, fileSize(value)));
+                return null;
+            });
+        } catch (CacheStoreException e) {
+            // usage is only used to choose which entries to prune
+            logger.fine("Failed to record usage of cache entry " + key, e);
+        }
+    }
+
+    private static long fileSize(String value) {
+        try {
+            Path file = Paths.get(value);
+            return Files.isRegularFile(file) ? Files.size(file) : -1;
+        } catch (IOException | InvalidPathException e) {
+            return -1;
+        }
+    }
+
+    @Override
+    public String addFileToCache(String key, Path file) throws CacheStoreException {
+        Objects.requireNonNull(key, Utils.getMessage("IMG-0066"));
+        String value = storeFile(file);
+        addToCache(key, value);
+        pruneToMaxSize(Collections.singleton(key));
+        return value;
+    }
+
+    @Override
+    public Map<String, String> addFilesToCache(Map<String, Path> files) throws CacheStoreException {
+        Map<String, String> values = new TreeMap<>();
+        for (Map.Entry<String, Path> file : files.entrySet()) {
+            Objects.requireNonNull(file.getKey(), Utils.getMessage("IMG-0066"));
+            values.put(file.getKey().toLowerCase(), storeFile(file.getValue()));
+        }
+        // one journal write for all entries
+        update(() -> {
+            journal.putAll(values);
+            long now = System.currentTimeMillis();
+            for (Map.Entry<String, String> value : values.entrySet()) {
+                CacheUsage usage = new CacheUsage(now, fileSize(value.getValue()));
+                properties.put(value.getKey(), value.getValue());
+                journal.access(value.getKey(), usage);
+                index.put(value.getKey(), value.getValue(), usage);
+            }
+            return null;
+        });
+        pruneToMaxSize(values.keySet());
+        return values;
+    }
+
+    /**
+     * Returns the value to store in the cache for a file.  A content-addressed cache stores a copy of the file.
+     */
+    private String storeFile(Path file) throws CacheStoreException {
+        Objects.requireNonNull(file, "Cache item file cannot be null");
+        Path source = file.toAbsolutePath();
+        if (contentStore == null) {
+            return source.toString();
+        }
+        // files that are already owned by the cache, like downloaded patches, are moved into the store
+        boolean move = source.startsWith(Paths.get(getCacheDir()).toAbsolutePath())
+            && !ContentStore.isContentAddressed(source.toString());
+        try {
+            return contentStore.store(source, source.getFileName().toString(), move).toString();
+        } catch (IOException e) {
+            CacheStoreException error = new CacheStoreException("Could not store " + file + " in the cache", e);
+            logger.throwing(error);
+            throw error;
+        }
+    }
+
+    /**
+     * When a maximum cache size is configured, remove least recently used entries until the cache fits.
+     * @param newKeys the entries that were just added, which are never removed
+     */
+    private void pruneToMaxSize(Collection<String> newKeys) throws CacheStoreException {
+        String maxSize = Utils.getEnvironmentProperty(MAX_SIZE, null);
+        if (Utils.isEmptyString(maxSize)) {
+            return;
+        }
+        try {
+            CachePruner pruner = new CachePruner(this).maxSize(Utils.parseSize(maxSize));
+            newKeys.forEach(pruner::keep);
+            pruner.prune();
+        } catch (IllegalArgumentException e) {
+            logger.warning(e.getMessage());
+        } catch (IOException e) {
+            throw new CacheStoreException("Failed to prune the cache to " + maxSize, e);
+        }
+    }
+
+    @Override
+    public String getFileByDigest(String digest, String fileName) throws CacheStoreException {
+        if (contentStore == null) {
+            return null;
+        }
+        try {
+            Path result = contentStore.find(digest, fileName);
+            return result == null ? null : result.toString();
+        } catch (IOException e) {
+            throw new CacheStoreException("Could not read content store for digest " + digest, e);
+        }
     }
 
     @Override
@@ -95,63 +234,122 @@ public class FileCacheStore implements CacheStore {
         if (Constants.CACHE_DIR_KEY.equalsIgnoreCase(key)) {
             return properties.getProperty(Constants.CACHE_DIR_KEY, null);
         }
-        String oldValue = (String) properties.remove(key.toLowerCase());
-        if (oldValue != null) {
-            persistToDisk();
-        }
-        return oldValue;
+        return update(() -> {
+            String oldValue = (String) properties.remove(key.toLowerCase());
+            if (oldValue != null) {
+                journal.remove(key.toLowerCase());
+                index.remove(key.toLowerCase());
+            }
+            return oldValue;
+        });
     }
 
     @Override
     public void clearCache() throws CacheStoreException {
         // remove all cache entries except the cache directory
-        for (Object key: new HashSet<>(properties.keySet())) {
-            if (!key.equals(Constants.CACHE_DIR_KEY)) {
-                properties.remove(key);
+        update(() -> {
+            for (Object key: new HashSet<>(properties.keySet())) {
+                if (!key.equals(Constants.CACHE_DIR_KEY)) {
+                    properties.remove(key);
+                }
             }
+            journal.compact(properties);
+            index.rebuild(properties, journal.usage());
+            return null;
+        });
+    }
+
+    @Override
+    public Closeable lock(String name) throws CacheStoreException {
+        Objects.requireNonNull(name, "Cache lock name cannot be null");
+        Path lockFile = Paths.get(cacheDirectory, LOCK_DIR, name.replaceAll("[^A-Za-z0-9._-]", "_") + LOCK_SUFFIX);
+        try {
+            return CacheLock.acquire(lockFile, name);
+        } catch (IOException e) {
+            throw new CacheStoreException("Could not lock " + lockFile, e);
         }
-        persistToDisk();
+    }
+
+    @Override
+    public Map<String, CacheUsage> getUsage() {
+        return read(() -> new HashMap<>(journal.usage()));
     }
 
     @Override
     public Map<String, String> getCacheItems() {
-        Stream<Map.Entry<Object, Object>> stream = properties.entrySet().stream();
-        return stream.collect(Collectors.toMap(
-            e -> String.valueOf(e.getKey()),
-            e -> String.valueOf(e.getValue())));
+        return read(index::items);
+    }
+
+    @Override
+    public CacheEntry getEntry(String key) {
+        Objects.requireNonNull(key, Utils.getMessage("IMG-0066"));
+        return read(() -> index.get(key.toLowerCase()));
     }
 
-    private void persistToDisk() throws CacheStoreException {
+    @Override
+    public NavigableMap<String, CacheEntry> getVersions(String id) {
+        Objects.requireNonNull(id, "Cache item id cannot be null");
+        return read(() -> index.versions(id.toLowerCase()));
+    }
+
+    @Override
+    public CacheEntry getLatestVersion(String id) {
+        Objects.requireNonNull(id, "Cache item id cannot be null");
+        return read(() -> index.latest(id.toLowerCase()));
+    }
+
+    /**
+     * Apply a change to the cache metadata while holding the metadata lock.
+     * Changes made by other processes are read first, so that the change is applied to the latest metadata.
+     * The journal is compacted into the snapshot when it has grown too large.
+     */
+    private <T> T update(MetadataUpdate<T> update) throws CacheStoreException {
         logger.entering();
-        synchronized (properties) {
-            try (FileOutputStream outputStream = new FileOutputStream(metadataPath)) {
-                properties.store(outputStream, "changed on:" + LocalDateTime.now());
-            } catch (IOException e) {
-                CacheStoreException error = new CacheStoreException("Could not persist cache file", e);
-                logger.throwing(error);
-                throw error;
+        try (CacheLock lock = CacheLock.acquire(metadataLockFile, Constants.DEFAULT_META_FILE)) {
+            journal.refresh(properties);
+            syncIndex();
+            T result = update.apply();
+            if (journal.needsCompaction(properties.size())) {
+                journal.compact(properties);
             }
+            logger.exiting(result);
+            return result;
+        } catch (IOException e) {
+            CacheStoreException error = new CacheStoreException("Could not persist cache file", e);
+            logger.throwing(error);
+            throw error;
         }
-        logger.exiting();
     }
 
-    private void loadProperties(File propsFile) {
-        logger.entering();
-        try (BufferedReader bufferedReader = new BufferedReader(new FileReader(propsFile))) {
-            if (properties.isEmpty()) {
-                properties.load(bufferedReader);
-            } else {
-                Properties tmpProperties = new Properties();
-                tmpProperties.load(bufferedReader);
-                // Do not let cache.dir to be modified outside setCacheDir
-                tmpProperties.remove(Constants.CACHE_DIR_KEY);
-                tmpProperties.forEach((key, value) -> properties.put(((String) key).toLowerCase(), value));
-            }
+    /**
+     * Read the cache metadata while holding the metadata lock, after reading the changes made by other processes.
+     * If the changes cannot be read, the last known metadata is used.
+     */
+    private <T> T read(Supplier<T> reader) {
+        try (CacheLock lock = CacheLock.acquire(metadataLockFile, Constants.DEFAULT_META_FILE)) {
+            journal.refresh(properties);
+            syncIndex();
+            return reader.get();
         } catch (IOException e) {
-            // it is okay to fail, the constructor will attempt to create a new one
-            logger.fine("Failed to load properties file", e);
+            logger.fine("Failed to refresh cache metadata", e);
+            syncIndex();
+            return reader.get();
+        }
+    }
+
+    /**
+     * Rebuild the indexes when the metadata was reloaded, or changed by another process.
+     */
+    private void syncIndex() {
+        if (journal.changes() != indexedChanges) {
+            index.rebuild(properties, journal.usage());
+            indexedChanges = journal.changes();
         }
-        logger.exiting();
+    }
+
+    @FunctionalInterface
+    private interface MetadataUpdate<T> {
+        T apply() throws IOException;
     }
 
     /**
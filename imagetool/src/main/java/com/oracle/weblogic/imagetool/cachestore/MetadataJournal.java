@@ -0,0 +1,386 @@
+// Copyright (c) 2021, Oracle and/or its affiliates.
+// Licensed under the Universal Permissive License v 1.0 as shown at https://oss.oracle.com/licenses/upl.
+
+package com.oracle.weblogic.imagetool.cachestore;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Properties;
+import java.util.UUID;
+
+import com.oracle.weblogic.imagetool.logging.LoggingFacade;
+import com.oracle.weblogic.imagetool.logging.LoggingFactory;
+
+/**
+ * Append-only journal for the cache metadata.
+ * The cache metadata is kept in two files: a snapshot (the original Properties file), and a journal of the
+ * changes made since the snapshot was written.  Each change is a single line appended to the journal, so that
+ * adding or removing an entry does not rewrite the whole metadata file.  When the journal grows larger than the
+ * snapshot, the journal is compacted into a new snapshot.
+ *
+ * <p>Several processes may share one cache directory.  The first line of the journal holds a generation that
+ * changes every time the journal is compacted, so that a process can tell whether to replay only the records
+ * appended by other processes, or to reload the new snapshot.  Callers are expected to hold the metadata
+ * {@link CacheLock} while using the journal.</p>
+ *
+ * <p>The journal also records when entries are used.  Usage is kept apart from the metadata, and is compacted
+ * into its own snapshot file, so that it does not show up as cache entries.</p>
+ */
+class MetadataJournal {
+
+    private static final LoggingFacade logger = LoggingFactory.getLogger(MetadataJournal.class);
+
+    static final String JOURNAL_SUFFIX = ".journal";
+    static final String USAGE_SUFFIX = ".usage";
+    private static final int MIN_COMPACTION_SIZE = 256;
+    private static final char PUT = '+';
+    private static final char REMOVE = '-';
+    private static final char ACCESS = '@';
+    private static final char GENERATION = '#';
+    private static final char SEPARATOR = '\t';
+
+    private final Path snapshotFile;
+    private final Path journalFile;
+    private final Path usageFile;
+    private final Map<String, CacheUsage> usage = new HashMap<>();
+    private int journalRecords = 0;
+    private long position = 0;
+    private String generation;
+    private long changes = 0;
+
+    /**
+     * Create a journal for the provided snapshot file.
+     * @param snapshotFile the metadata Properties file
+     */
+    MetadataJournal(Path snapshotFile) {
+        this.snapshotFile = snapshotFile;
+        this.journalFile = snapshotFile.resolveSibling(snapshotFile.getFileName() + JOURNAL_SUFFIX);
+        this.usageFile = snapshotFile.resolveSibling(snapshotFile.getFileName() + USAGE_SUFFIX);
+    }
+
+    Path journalFile() {
+        return journalFile;
+    }
+
+    /**
+     * The usage recorded for each cache entry, as of the last load or refresh.
+     * @return a live view of the usage, keyed by cache key
+     */
+    Map<String, CacheUsage> usage() {
+        return usage;
+    }
+
+    /**
+     * A counter that changes whenever metadata is loaded, or records written by another process are replayed.
+     * Changes made through this journal do not change the counter.
+     * @return the number of changes read from disk
+     */
+    long changes() {
+        return changes;
+    }
+
+    /**
+     * Load the snapshot, and replay the journal on top of it.
+     * @param properties the properties to load the metadata into
+     * @throws IOException if the snapshot or journal cannot be read
+     */
+    synchronized void load(Properties properties) throws IOException {
+        logger.entering(snapshotFile);
+        properties.clear();
+        if (Files.isRegularFile(snapshotFile)) {
+            try (InputStream input = Files.newInputStream(snapshotFile)) {
+                properties.load(input);
+            }
+        }
+        changes++;
+        usage.clear();
+        if (Files.isRegularFile(usageFile)) {
+            Properties usageSnapshot = new Properties();
+            try (InputStream input = Files.newInputStream(usageFile)) {
+                usageSnapshot.load(input);
+            }
+            usageSnapshot.forEach((key, value) -> {
+                CacheUsage parsed = CacheUsage.parse(String.valueOf(value));
+                if (parsed != null) {
+                    usage.put(String.valueOf(key), parsed);
+                }
+            });
+        }
+        journalRecords = 0;
+        position = 0;
+        generation = null;
+        replay(properties);
+        logger.exiting(journalRecords);
+    }
+
+    /**
+     * Apply the changes made by other processes since this journal was last read.
+     * If the journal was compacted by another process, the metadata is reloaded from the new snapshot.
+     * @param properties the properties previously loaded by this journal
+     * @throws IOException if the snapshot or journal cannot be read
+     */
+    synchronized void refresh(Properties properties) throws IOException {
+        if (!Objects.equals(generation, readGeneration())) {
+            logger.fine("Cache metadata was compacted by another process, reloading {0}", snapshotFile);
+            load(properties);
+        } else if (Files.isRegularFile(journalFile) && Files.size(journalFile) > position) {
+            replay(properties);
+        }
+    }
+
+    private String readGeneration() throws IOException {
+        if (!Files.isRegularFile(journalFile)) {
+            return null;
+        }
+        try (FileChannel channel = FileChannel.open(journalFile, StandardOpenOption.READ)) {
+            ByteBuffer buffer = ByteBuffer.allocate(128);
+            channel.read(buffer);
+            String head = new String(buffer.array(), 0, buffer.position(), StandardCharsets.UTF_8);
+            int end = head.indexOf('\n');
+            if (head.isEmpty() || head.charAt(0) != GENERATION || end < 0) {
+                return null;
+            }
+            return head.substring(1, end);
+        }
+    }
+
+    /**
+     * Apply the journal records, from the last position read, to the provided properties.
+     * A record that was only partially written (the process stopped mid-write) is discarded.
+     */
+    private void replay(Properties properties) throws IOException {
+        if (!Files.isRegularFile(journalFile)) {
+            return;
+        }
+        byte[] content;
+        try (FileChannel channel = FileChannel.open(journalFile, StandardOpenOption.READ)) {
+            ByteBuffer buffer = ByteBuffer.allocate((int) Math.max(0, channel.size() - position));
+            while (buffer.hasRemaining() && channel.read(buffer, position + buffer.position()) >= 0) {
+                // read the remainder of the journal
+            }
+            content = buffer.array();
+        }
+        int start = 0;
+        for (int i = 0; i < content.length; i++) {
+            if (content[i] == '\n') {
+                apply(properties, new String(content, start, i - start, StandardCharsets.UTF_8));
+                start = i + 1;
+            }
+        }
+        position += start;
+        if (start < content.length) {
+            logger.fine("Discarding incomplete cache journal record in {0}", journalFile);
+            try (FileChannel channel = FileChannel.open(journalFile, StandardOpenOption.WRITE)) {
+                channel.truncate(position);
+            }
+        }
+    }
+
+    private void apply(Properties properties, String record) {
+        if (record.isEmpty()) {
+            return;
+        }
+        if (record.charAt(0) == GENERATION) {
+            generation = record.substring(1);
+            return;
+        }
+        journalRecords++;
+        changes++;
+        int split = record.indexOf(SEPARATOR, 2);
+        switch (record.charAt(0)) {
+            case PUT:
+                if (split > 0) {
+                    properties.put(unescape(record.substring(2, split)), unescape(record.substring(split + 1)));
+                }
+                break;
+            case REMOVE:
+                String removed = unescape(record.substring(2));
+                properties.remove(removed);
+                usage.remove(removed);
+                break;
+            case ACCESS:
+                CacheUsage parsed = split > 0 ? CacheUsage.parse(record.substring(split + 1)) : null;
+                if (parsed != null) {
+                    usage.put(unescape(record.substring(2, split)), parsed);
+                }
+                break;
+            default:
+                logger.fine("Ignoring unknown cache journal record: {0}", record);
+                break;
+        }
+    }
+
+    /**
+     * Record that a value was added to the cache.
+     * @param key   cache key
+     * @param value cache value
+     * @throws IOException if the journal cannot be written
+     */
+    synchronized void put(String key, String value) throws IOException {
+        append(PUT + "" + SEPARATOR + escape(key) + SEPARATOR + escape(value));
+    }
+
+    /**
+     * Record that several values were added to the cache, with a single synced write.
+     * @param values cache keys and values
+     * @throws IOException if the journal cannot be written
+     */
+    synchronized void putAll(Map<String, String> values) throws IOException {
+        if (values.isEmpty()) {
+            return;
+        }
+        StringBuilder records = new StringBuilder();
+        for (Map.Entry<String, String> value : values.entrySet()) {
+            if (records.length() > 0) {
+                records.append('\n');
+            }
+            records.append(PUT).append(SEPARATOR).append(escape(value.getKey())).append(SEPARATOR)
+                .append(escape(value.getValue()));
+        }
+        append(records.toString(), true, values.size());
+    }
+
+    /**
+     * Record that a value was removed from the cache.
+     * @param key cache key
+     * @throws IOException if the journal cannot be written
+     */
+    synchronized void remove(String key) throws IOException {
+        usage.remove(key);
+        append(REMOVE + "" + SEPARATOR + escape(key));
+    }
+
+    /**
+     * Record that a cache entry was used.
+     * Usage records are not synced to disk, losing one in a crash only makes an entry look older.
+     * @param key         cache key
+     * @param accessUsage the time of use and the size of the file
+     * @throws IOException if the journal cannot be written
+     */
+    synchronized void access(String key, CacheUsage accessUsage) throws IOException {
+        usage.put(key, accessUsage);
+        append(ACCESS + "" + SEPARATOR + escape(key) + SEPARATOR + accessUsage, false);
+    }
+
+    private void append(String record) throws IOException {
+        append(record, true);
+    }
+
+    private void append(String record, boolean sync) throws IOException {
+        append(record, sync, 1);
+    }
+
+    private void append(String record, boolean sync, int count) throws IOException {
+        byte[] bytes = (record + '\n').getBytes(StandardCharsets.UTF_8);
+        // a single write per record
+        if (sync) {
+            Files.write(journalFile, bytes, StandardOpenOption.CREATE, StandardOpenOption.APPEND,
+                StandardOpenOption.DSYNC);
+        } else {
+            Files.write(journalFile, bytes, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        }
+        journalRecords += count;
+        position += bytes.length;
+    }
+
+    /**
+     * The journal should be compacted once it holds more records than the snapshot holds entries.
+     * This keeps the cost of compaction proportional to the number of changes made since the last compaction.
+     * @param entries the number of entries in the cache
+     * @return true if the journal should be compacted
+     */
+    synchronized boolean needsCompaction(int entries) {
+        return journalRecords > Math.max(MIN_COMPACTION_SIZE, entries);
+    }
+
+    /**
+     * Write a new snapshot with the provided properties, and start a new generation of the journal.
+     * @param properties the current cache metadata
+     * @throws IOException if the snapshot cannot be written
+     */
+    synchronized void compact(Properties properties) throws IOException {
+        logger.entering(journalRecords);
+        usage.keySet().retainAll(properties.stringPropertyNames());
+        Properties usageSnapshot = new Properties();
+        usage.forEach((key, value) -> usageSnapshot.put(key, value.toString()));
+        replaceFile(usageFile, output -> usageSnapshot.store(output, "changed on:" + LocalDateTime.now()));
+        replaceFile(snapshotFile, output -> properties.store(output, "changed on:" + LocalDateTime.now()));
+        // records already in the snapshot can be replayed safely if the process stops before the journal is replaced
+        String newGeneration = UUID.randomUUID().toString();
+        byte[] header = (GENERATION + newGeneration + '\n').getBytes(StandardCharsets.UTF_8);
+        replaceFile(journalFile, output -> output.write(header));
+        generation = newGeneration;
+        position = header.length;
+        journalRecords = 0;
+        logger.exiting();
+    }
+
+    /**
+     * Write a file to a temporary location, and rename it, so that the existing file is never truncated.
+     */
+    private static void replaceFile(Path target, FileWriter writer) throws IOException {
+        Path temp = Files.createTempFile(target.getParent(), target.getFileName().toString(), ".tmp");
+        try {
+            try (OutputStream output = Files.newOutputStream(temp)) {
+                writer.write(output);
+            }
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+                channel.force(true);
+            }
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    @FunctionalInterface
+    private interface FileWriter {
+        void write(OutputStream output) throws IOException;
+    }
+
+    private static String escape(String value) {
+        return value.replace("\\", "\\\\").replace("\t", "\\t").replace("\n", "\\n").replace("\r", "\\r");
+    }
+
+    private static String unescape(String value) {
+        if (value.indexOf('\\') < 0) {
+            return value;
+        }
+        StringBuilder result = new StringBuilder(value.length());
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '\\' && i + 1 < value.length()) {
+                char next = value.charAt(++i);
+                switch (next) {
+                    case 't':
+                        result.append('\t');
+                        break;
+                    case 'n':
+                        result.append('\n');
+                        break;
+                    case 'r':
+                        result.append('\r');
+                        break;
+                    default:
+                        result.append(next);
+                        break;
+                }
+            } else {
+                result.append(c);
+            }
+        }
+        return result.toString();
+    }
+}
@@ -7,7 +7,6 @@ import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.util.Comparator;
 import java.util.List;
-import java.util.Set;
 import java.util.stream.Collectors;
 import javax.xml.xpath.XPathExpressionException;
 
@@ -88,6 +87,18 @@ public class OPatchFile extends PatchFile {
         return new OPatchFile(selectedPatch, userid, password);
     }
 
+    /**
+     * Create an abstract OPatch file for an OPatch patch that was already selected, like from a patch lock file.
+     *
+     * @param patch    the OPatch ARU patch
+     * @param userid   the username to use for retrieving the patch
+     * @param password the password to use with the userId to retrieve the patch
+     * @return an abstract OPatch file
+     */
+    public static OPatchFile getInstance(AruPatch patch, String userid, String password) {
+        return new OPatchFile(patch, userid, password);
+    }
+
     private static boolean isOffline(String userid, String password) {
         return userid == null || password == null;
     }
@@ -105,23 +116,12 @@ public class OPatchFile extends PatchFile {
     }
 
     private static String getLatestCachedVersion(CacheStore cache, String patchId) {
-        String latestVersion = "0.0.0.0.0";
-        Set<String> keys = cache.getCacheItems().keySet();
-        for (String key : keys) {
-            if (key.startsWith(patchId)) {
-                logger.fine("found OPatch entry in cache {0}", key);
-                int split = key.indexOf('_');
-                if (split < 0) {
-                    continue;
-                }
-                String cacheVersion = key.substring(split + 1);
-                if (Utils.compareVersions(latestVersion, cacheVersion) < 0) {
-                    logger.fine("using cache {0} as newer OPatch version instead of {1}", key, latestVersion);
-                    latestVersion = cacheVersion;
-                }
-            }
+        CacheEntry latest = cache.getLatestVersion(patchId);
+        if (latest == null) {
+            return "0.0.0.0.0";
         }
-        return latestVersion;
+        logger.fine("using cache {0} as the newest OPatch version", latest.key());
+        return latest.version();
     }
 
     /**
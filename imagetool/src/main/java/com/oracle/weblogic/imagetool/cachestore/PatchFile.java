@@ -3,8 +3,10 @@
 
 package com.oracle.weblogic.imagetool.cachestore;
 
+import java.io.Closeable;
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.nio.file.Paths;
 
 import com.oracle.weblogic.imagetool.api.model.CachedFile;
 import com.oracle.weblogic.imagetool.aru.AruPatch;
@@ -44,6 +46,14 @@ public class PatchFile extends CachedFile {
         return aruPatch.version();
     }
 
+    /**
+     * The ARU metadata of the patch.
+     * @return the patch metadata
+     */
+    public AruPatch getAruPatch() {
+        return aruPatch;
+    }
+
     void setVersion(String value) {
         aruPatch.version(value);
     }
@@ -60,17 +70,13 @@ public class PatchFile extends CachedFile {
         String filePath;
         boolean fileExists;
 
-        filePath = cacheStore.getValueFromCache(cacheKey);
+        filePath = cacheStore.fetchValue(cacheKey);
         fileExists = isFileOnDisk(filePath);
 
         if (fileExists) {
             logger.info("IMG-0017", getKey(), filePath);
         } else {
             logger.info("IMG-0061", getKey(), aruPatch.patchId());
-
-            if (offlineMode()) {
-                throw new FileNotFoundException(Utils.getMessage("IMG-0056", getKey()));
-            }
             filePath = downloadPatch(cacheStore);
         }
 
@@ -79,12 +85,35 @@ public class PatchFile extends CachedFile {
     }
 
     private String downloadPatch(CacheStore cacheStore) throws IOException {
+        // another process, sharing the same cache, may be downloading the same patch
+        String lockName = aruPatch.fileName() == null ? getKey() : aruPatch.fileName();
+        try (Closeable lock = cacheStore.lock(lockName)) {
+            String filePath = cacheStore.getValueFromCache(getKey());
+            if (isFileOnDisk(filePath)) {
+                logger.info("IMG-0017", getKey(), filePath);
+                return filePath;
+            }
+            // the same patch file may already be in the cache under another key
+            String storedFile = cacheStore.getFileByDigest(aruPatch.sha256(), aruPatch.fileName());
+            if (storedFile != null) {
+                logger.info("IMG-0106", getKey(), storedFile);
+                cacheStore.addToCache(getKey(), storedFile);
+                return storedFile;
+            }
+            if (offlineMode()) {
+                throw new FileNotFoundException(Utils.getMessage("IMG-0056", getKey()));
+            }
+            return downloadAndCache(cacheStore);
+        }
+    }
+
+    private String downloadAndCache(CacheStore cacheStore) throws IOException {
         String filename = AruUtil.rest().downloadAruPatch(aruPatch, cacheStore.getCacheDir(), userId, password);
 
         // after downloading the file, update the cache metadata
         String patchKey = getKey();
         logger.info("IMG-0060", patchKey, filename);
-        cacheStore.addToCache(patchKey, filename);
+        cacheStore.addFileToCache(patchKey, Paths.get(filename));
         String filePath = cacheStore.getValueFromCache(patchKey);
 
         if (!isFileOnDisk(filePath)) {
@@ -0,0 +1,142 @@
+// Copyright (c) 2021, Oracle and/or its affiliates.
+// Licensed under the Universal Permissive License v 1.0 as shown at https://oss.oracle.com/licenses/upl.
+
+package com.oracle.weblogic.imagetool.cachestore;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import com.oracle.weblogic.imagetool.logging.LoggingFacade;
+import com.oracle.weblogic.imagetool.logging.LoggingFactory;
+import org.apache.http.HttpStatus;
+import org.apache.http.client.HttpResponseException;
+import org.apache.http.client.fluent.Request;
+
+/**
+ * A shared, read-only cache, like a directory on a network file system, or a plain HTTP file server.
+ * The shared cache has a {@link CacheManifest} at its root, and the files listed in the manifest.
+ */
+abstract class RemoteCacheTier {
+
+    private static final LoggingFacade logger = LoggingFactory.getLogger(RemoteCacheTier.class);
+
+    private final String location;
+    private CacheManifest manifest;
+
+    RemoteCacheTier(String location) {
+        this.location = location;
+    }
+
+    /**
+     * Create a shared cache tier for an HTTP(S) URL or a directory.
+     * @param location http:// or https:// URL, file: URL, or directory path
+     * @return the shared cache tier
+     */
+    static RemoteCacheTier of(String location) {
+        String lower = location.toLowerCase();
+        if (lower.startsWith("http://") || lower.startsWith("https://")) {
+            return new HttpTier(location);
+        } else if (lower.startsWith("file:")) {
+            return new DirectoryTier(Paths.get(URI.create(location)));
+        } else {
+            return new DirectoryTier(Paths.get(location));
+        }
+    }
+
+    String location() {
+        return location;
+    }
+
+    /**
+     * The manifest of the shared cache, read once.
+     * When the manifest cannot be read, the shared cache is not used for the rest of the run, so that every file
+     * that is not in the local cache does not wait for an unreachable shared cache again.
+     * @return the manifest, empty if the shared cache does not have one or cannot be read
+     */
+    synchronized CacheManifest manifest() {
+        if (manifest == null) {
+            try {
+                manifest = read(CacheManifest.FILE_NAME, CacheManifest::read);
+            } catch (FileNotFoundException | NoSuchFileException e) {
+                logger.fine("Shared cache {0} does not have a manifest", location);
+                manifest = new CacheManifest();
+            } catch (IOException e) {
+                logger.warning("IMG-0117", location, e.getMessage());
+                manifest = new CacheManifest();
+            }
+        }
+        return manifest;
+    }
+
+    /**
+     * Read a file from the shared cache.
+     * @param file   location of the file, relative to the root of the shared cache
+     * @param reader reads the file contents
+     * @return the result of the reader
+     * @throws IOException if the file cannot be read
+     */
+    abstract <T> T read(String file, StreamReader<T> reader) throws IOException;
+
+    @FunctionalInterface
+    interface StreamReader<T> {
+        T read(InputStream input) throws IOException;
+    }
+
+    static class DirectoryTier extends RemoteCacheTier {
+        private final Path root;
+
+        DirectoryTier(Path root) {
+            super(root.toString());
+            this.root = root;
+        }
+
+        @Override
+        <T> T read(String file, StreamReader<T> reader) throws IOException {
+            Path path = root.resolve(file).normalize();
+            if (!path.startsWith(root.normalize())) {
+                throw new IOException("Invalid shared cache file location: " + file);
+            }
+            try (InputStream input = Files.newInputStream(path)) {
+                return reader.read(input);
+            }
+        }
+    }
+
+    static class HttpTier extends RemoteCacheTier {
+        private final URI base;
+
+        HttpTier(String url) {
+            super(url);
+            base = URI.create(url.endsWith("/") ? url : url + "/");
+        }
+
+        @Override
+        <T> T read(String file, StreamReader<T> reader) throws IOException {
+            URI uri;
+            try {
+                uri = base.resolve(new URI(null, null, file, null));
+            } catch (URISyntaxException e) {
+                throw new IOException("Invalid shared cache file location: " + file, e);
+            }
+            logger.fine("Reading {0}", uri);
+            return Request.Get(uri).connectTimeout(30000).socketTimeout(30000).execute().handleResponse(response -> {
+                int status = response.getStatusLine().getStatusCode();
+                if (status == HttpStatus.SC_NOT_FOUND) {
+                    throw new FileNotFoundException(uri.toString());
+                } else if (status != HttpStatus.SC_OK) {
+                    throw new HttpResponseException(status, uri + ": " + response.getStatusLine().getReasonPhrase());
+                }
+                try (InputStream input = response.getEntity().getContent()) {
+                    return reader.read(input);
+                }
+            });
+        }
+    }
+}
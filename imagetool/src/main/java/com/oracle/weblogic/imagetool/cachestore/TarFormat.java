@@ -0,0 +1,353 @@
+// Copyright (c) 2021, Oracle and/or its affiliates.
+// Licensed under the Universal Permissive License v 1.0 as shown at https://oss.oracle.com/licenses/upl.
+
+package com.oracle.weblogic.imagetool.cachestore;
+
+import java.io.EOFException;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Minimal streaming reader and writer for the POSIX ustar format, limited to regular files.
+ * Cache bundles only need regular files, and a tar file can be unpacked with standard tools
+ * when the Image Tool is not available.
+ */
+class TarFormat {
+
+    static final int BLOCK_SIZE = 512;
+    private static final int NAME_LENGTH = 100;
+    private static final int PREFIX_LENGTH = 155;
+    // largest size that fits in 11 octal digits, larger sizes use the base-256 extension
+    private static final long MAX_OCTAL_SIZE = 077777777777L;
+
+    private TarFormat() {
+        // utility class
+    }
+
+    /**
+     * Writes regular files to a tar stream.  Nothing is buffered other than the current header block.
+     */
+    static class Writer {
+        private final OutputStream output;
+
+        Writer(OutputStream output) {
+            this.output = output;
+        }
+
+        /**
+         * Write one file to the tar stream.
+         * @param name    path of the file in the tar, using / as the separator
+         * @param size    exact number of bytes that the content stream provides
+         * @param content the file content, which is read but not closed
+         * @throws IOException if the content is not the expected size, or the stream cannot be written
+         */
+        void putFile(String name, long size, InputStream content) throws IOException {
+            output.write(header(name, size));
+            byte[] buffer = new byte[64 * 1024];
+            long remaining = size;
+            while (remaining > 0) {
+                int read = content.read(buffer, 0, (int) Math.min(buffer.length, remaining));
+                if (read < 0) {
+                    throw new EOFException("File " + name + " is shorter than " + size + " bytes");
+                }
+                output.write(buffer, 0, read);
+                remaining -= read;
+            }
+            if (content.read() >= 0) {
+                throw new IOException("File " + name + " is longer than " + size + " bytes");
+            }
+            output.write(new byte[padding(size)]);
+        }
+
+        /**
+         * Write the end-of-archive marker, two empty blocks.
+         * @throws IOException if the stream cannot be written
+         */
+        void finish() throws IOException {
+            output.write(new byte[2 * BLOCK_SIZE]);
+            output.flush();
+        }
+    }
+
+    /**
+     * Reads regular files from a tar stream, in the order they were written.
+     */
+    static class Reader {
+        private final InputStream input;
+        private EntryStream current;
+
+        Reader(InputStream input) {
+            this.input = input;
+        }
+
+        /**
+         * Move to the next file in the tar stream.  Any unread content of the previous file is skipped.
+         * @return the next file, or null at the end of the archive
+         * @throws IOException if the stream is not a valid tar stream
+         */
+        Entry next() throws IOException {
+            if (current != null) {
+                current.skipRemaining();
+                skipFully(padding(current.size));
+                current = null;
+            }
+            byte[] header = new byte[BLOCK_SIZE];
+            while (true) {
+                if (!readBlock(header)) {
+                    return null;
+                }
+                if (isZero(header)) {
+                    return null;
+                }
+                verifyChecksum(header);
+                String name = string(header, 0, NAME_LENGTH);
+                String prefix = string(header, 345, PREFIX_LENGTH);
+                if (!prefix.isEmpty()) {
+                    name = prefix + "/" + name;
+                }
+                long size = number(header, 124, 12);
+                char type = (char) header[156];
+                if (type == '0' || type == 0) {
+                    current = new EntryStream(input, size);
+                    return new Entry(name, size, current);
+                }
+                // directories, links, and extended headers are not used by cache bundles
+                skipFully(size + padding(size));
+            }
+        }
+
+        private boolean readBlock(byte[] block) throws IOException {
+            int total = 0;
+            while (total < block.length) {
+                int read = input.read(block, total, block.length - total);
+                if (read < 0) {
+                    if (total == 0) {
+                        return false;
+                    }
+                    throw new EOFException("Truncated tar header");
+                }
+                total += read;
+            }
+            return true;
+        }
+
+        private void skipFully(long count) throws IOException {
+            byte[] buffer = new byte[BLOCK_SIZE];
+            long remaining = count;
+            while (remaining > 0) {
+                int read = input.read(buffer, 0, (int) Math.min(buffer.length, remaining));
+                if (read < 0) {
+                    throw new EOFException("Truncated tar file");
+                }
+                remaining -= read;
+            }
+        }
+    }
+
+    static class Entry {
+        private final String name;
+        private final long size;
+        private final InputStream content;
+
+        Entry(String name, long size, InputStream content) {
+            this.name = name;
+            this.size = size;
+            this.content = content;
+        }
+
+        String name() {
+            return name;
+        }
+
+        long size() {
+            return size;
+        }
+
+        /**
+         * The content of this file.  Closing the stream does not close the tar stream.
+         * @return stream of exactly size() bytes
+         */
+        InputStream content() {
+            return content;
+        }
+    }
+
+    private static class EntryStream extends FilterInputStream {
+        private final long size;
+        private long remaining;
+
+        EntryStream(InputStream input, long size) {
+            super(input);
+            this.size = size;
+            this.remaining = size;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] one = new byte[1];
+            return read(one, 0, 1) < 0 ? -1 : one[0] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            if (remaining <= 0) {
+                return -1;
+            }
+            int read = in.read(buffer, offset, (int) Math.min(length, remaining));
+            if (read < 0) {
+                throw new EOFException("Truncated tar file");
+            }
+            remaining -= read;
+            return read;
+        }
+
+        @Override
+        public long skip(long count) throws IOException {
+            byte[] buffer = new byte[BLOCK_SIZE];
+            long skipped = 0;
+            while (skipped < count) {
+                int read = read(buffer, 0, (int) Math.min(buffer.length, count - skipped));
+                if (read < 0) {
+                    break;
+                }
+                skipped += read;
+            }
+            return skipped;
+        }
+
+        @Override
+        public int available() throws IOException {
+            return (int) Math.min(in.available(), remaining);
+        }
+
+        @Override
+        public void close() {
+            // the tar stream stays open for the next entry
+        }
+
+        @Override
+        public boolean markSupported() {
+            return false;
+        }
+
+        void skipRemaining() throws IOException {
+            skip(remaining);
+        }
+    }
+
+    static int padding(long size) {
+        int partial = (int) (size % BLOCK_SIZE);
+        return partial == 0 ? 0 : BLOCK_SIZE - partial;
+    }
+
+    static byte[] header(String name, long size) throws IOException {
+        byte[] header = new byte[BLOCK_SIZE];
+        String prefix = "";
+        String shortName = name;
+        if (name.getBytes(StandardCharsets.UTF_8).length > NAME_LENGTH) {
+            int split = name.lastIndexOf('/');
+            if (split <= 0) {
+                throw new IOException("File name is too long for a tar file: " + name);
+            }
+            prefix = name.substring(0, split);
+            shortName = name.substring(split + 1);
+        }
+        putString(header, 0, NAME_LENGTH, shortName, name);
+        putOctal(header, 100, 8, 0644);
+        putOctal(header, 108, 8, 0);
+        putOctal(header, 116, 8, 0);
+        if (size <= MAX_OCTAL_SIZE) {
+            putOctal(header, 124, 12, size);
+        } else {
+            // GNU base-256 extension: the high bit of the first byte is set, followed by a big-endian number
+            long value = size;
+            for (int i = 135; i > 124; i--) {
+                header[i] = (byte) value;
+                value >>>= 8;
+            }
+            header[124] = (byte) 0x80;
+        }
+        putOctal(header, 136, 12, System.currentTimeMillis() / 1000);
+        header[156] = '0';
+        System.arraycopy("ustar\u000000".getBytes(StandardCharsets.US_ASCII), 0, header, 257, 8);
+        putString(header, 345, PREFIX_LENGTH, prefix, name);
+        // the checksum is calculated with the checksum field set to spaces
+        Arrays.fill(header, 148, 156, (byte) ' ');
+        long checksum = 0;
+        for (byte b : header) {
+            checksum += b & 0xFF;
+        }
+        putOctal(header, 148, 7, checksum);
+        return header;
+    }
+
+    private static void putString(byte[] header, int offset, int length, String value, String name)
+        throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length > length) {
+            throw new IOException("File name is too long for a tar file: " + name);
+        }
+        System.arraycopy(bytes, 0, header, offset, bytes.length);
+    }
+
+    private static void putOctal(byte[] header, int offset, int length, long value) {
+        // zero padded octal digits followed by a NUL
+        String octal = Long.toOctalString(value);
+        StringBuilder digits = new StringBuilder();
+        for (int i = octal.length(); i < length - 1; i++) {
+            digits.append('0');
+        }
+        digits.append(octal);
+        byte[] bytes = digits.toString().getBytes(StandardCharsets.US_ASCII);
+        System.arraycopy(bytes, 0, header, offset, length - 1);
+        header[offset + length - 1] = 0;
+    }
+
+    private static String string(byte[] header, int offset, int length) {
+        int end = offset;
+        while (end < offset + length && header[end] != 0) {
+            end++;
+        }
+        return new String(header, offset, end - offset, StandardCharsets.UTF_8);
+    }
+
+    private static long number(byte[] header, int offset, int length) throws IOException {
+        if ((header[offset] & 0x80) != 0) {
+            long value = 0;
+            for (int i = offset + 1; i < offset + length; i++) {
+                value = (value << 8) | (header[i] & 0xFF);
+            }
+            return value;
+        }
+        String value = string(header, offset, length).trim();
+        try {
+            return value.isEmpty() ? 0 : Long.parseLong(value, 8);
+        } catch (NumberFormatException e) {
+            throw new IOException("Invalid number in tar header: " + value, e);
+        }
+    }
+
+    private static void verifyChecksum(byte[] header) throws IOException {
+        long expected = number(header, 148, 8);
+        long actual = 0;
+        for (int i = 0; i < header.length; i++) {
+            actual += (i >= 148 && i < 156) ? ' ' : header[i] & 0xFF;
+        }
+        if (expected != actual) {
+            throw new IOException("Invalid tar header checksum, the file is not a tar file or is corrupted");
+        }
+    }
+
+    private static boolean isZero(byte[] block) {
+        for (byte b : block) {
+            if (b != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
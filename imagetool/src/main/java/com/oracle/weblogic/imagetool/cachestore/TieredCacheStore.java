@@ -0,0 +1,175 @@
+// Copyright (c) 2021, Oracle and/or its affiliates.
+// Licensed under the Universal Permissive License v 1.0 as shown at https://oss.oracle.com/licenses/upl.
+
+package com.oracle.weblogic.imagetool.cachestore;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.util.Map;
+import java.util.NavigableMap;
+
+import com.oracle.weblogic.imagetool.api.model.CachedFile;
+import com.oracle.weblogic.imagetool.logging.LoggingFacade;
+import com.oracle.weblogic.imagetool.logging.LoggingFactory;
+import com.oracle.weblogic.imagetool.util.Utils;
+
+/**
+ * A local cache backed by a shared, read-only cache.
+ * When a build needs a file that is not in the local cache, the file is copied from the shared cache, verified
+ * against the SHA-256 digest and size in the shared cache manifest, and added to the local cache.
+ * Every other operation, including getValueFromCache, uses only the local cache.
+ */
+public class TieredCacheStore implements CacheStore {
+
+    public static final String REMOTE_CACHE = "WLSIMG_REMOTE_CACHE";
+    private static final LoggingFacade logger = LoggingFactory.getLogger(TieredCacheStore.class);
+
+    private final CacheStore local;
+    private final RemoteCacheTier remote;
+
+    TieredCacheStore(CacheStore local, RemoteCacheTier remote) {
+        this.local = local;
+        this.remote = remote;
+    }
+
+    @Override
+    public String getCacheDir() {
+        return local.getCacheDir();
+    }
+
+    @Override
+    public String getValueFromCache(String key) {
+        return local.getValueFromCache(key);
+    }
+
+    @Override
+    public String fetchValue(String key) {
+        String value = local.getValueFromCache(key);
+        if (CachedFile.isFileOnDisk(value)) {
+            return value;
+        }
+        try {
+            CacheManifest.Entry entry = remote.manifest().get(key);
+            return entry == null ? value : fetch(key, entry);
+        } catch (IOException e) {
+            logger.warning("IMG-0117", remote.location(), e.getMessage());
+            return value;
+        }
+    }
+
+    @Override
+    public String getFileByDigest(String digest, String fileName) throws CacheStoreException {
+        String result = local.getFileByDigest(digest, fileName);
+        if (result != null) {
+            return result;
+        }
+        try {
+            CacheManifest.Entry entry = remote.manifest().findByDigest(digest);
+            return entry == null ? null : fetch(entry.key(), entry);
+        } catch (IOException e) {
+            logger.warning("IMG-0117", remote.location(), e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Copy a file from the shared cache into the local cache.
+     * Only one process copies the file, other processes wait for the copy and use the result.
+     */
+    private String fetch(String key, CacheManifest.Entry entry) throws IOException {
+        logger.entering(key, entry);
+        try (Closeable lock = local.lock(entry.fileName())) {
+            String value = local.getValueFromCache(key);
+            if (CachedFile.isFileOnDisk(value)) {
+                return value;
+            }
+            logger.info("IMG-0115", key, remote.location());
+            Path target = Paths.get(local.getCacheDir(), entry.fileName());
+            Path partFile = Paths.get(target + ".part");
+            try {
+                String digest = remote.read(entry.file(), input -> {
+                    MessageDigest sha256 = Utils.sha256Digest();
+                    Files.copy(new DigestInputStream(input, sha256), partFile, StandardCopyOption.REPLACE_EXISTING);
+                    return Utils.toHex(sha256.digest());
+                });
+                long size = Files.size(partFile);
+                if (!entry.sha256().equals(digest) || entry.size() != size) {
+                    throw new IOException(Utils.getMessage("IMG-0116", entry.file(), entry.sha256(), entry.size(),
+                        digest, size));
+                }
+                Files.move(partFile, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } finally {
+                Files.deleteIfExists(partFile);
+            }
+            String result = local.addFileToCache(key, target);
+            logger.exiting(result);
+            return result;
+        }
+    }
+
+    @Override
+    public boolean hasMatchingKeyValue(String key, String value) {
+        return local.hasMatchingKeyValue(key, value);
+    }
+
+    @Override
+    public void addToCache(String key, String value) throws CacheStoreException {
+        local.addToCache(key, value);
+    }
+
+    @Override
+    public String addFileToCache(String key, Path file) throws CacheStoreException {
+        return local.addFileToCache(key, file);
+    }
+
+    @Override
+    public Map<String, String> addFilesToCache(Map<String, Path> files) throws CacheStoreException {
+        return local.addFilesToCache(files);
+    }
+
+    @Override
+    public Closeable lock(String name) throws CacheStoreException {
+        return local.lock(name);
+    }
+
+    @Override
+    public String deleteFromCache(String key) throws CacheStoreException {
+        return local.deleteFromCache(key);
+    }
+
+    @Override
+    public void clearCache() throws CacheStoreException {
+        local.clearCache();
+    }
+
+    @Override
+    public Map<String, String> getCacheItems() {
+        return local.getCacheItems();
+    }
+
+    @Override
+    public CacheEntry getEntry(String key) {
+        return local.getEntry(key);
+    }
+
+    @Override
+    public NavigableMap<String, CacheEntry> getVersions(String id) {
+        return local.getVersions(id);
+    }
+
+    @Override
+    public CacheEntry getLatestVersion(String id) {
+        return local.getLatestVersion(id);
+    }
+
+    @Override
+    public Map<String, CacheUsage> getUsage() {
+        return local.getUsage();
+    }
+}
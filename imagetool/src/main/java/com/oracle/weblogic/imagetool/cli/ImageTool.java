@@ -11,6 +11,7 @@ import com.oracle.weblogic.imagetool.cli.menu.CreateAuxImage;
 import com.oracle.weblogic.imagetool.cli.menu.CreateImage;
 import com.oracle.weblogic.imagetool.cli.menu.InspectImage;
 import com.oracle.weblogic.imagetool.cli.menu.RebaseImage;
+import com.oracle.weblogic.imagetool.cli.menu.ResolvePatches;
 import com.oracle.weblogic.imagetool.cli.menu.UpdateImage;
 import com.oracle.weblogic.imagetool.logging.LoggingFacade;
 import com.oracle.weblogic.imagetool.logging.LoggingFactory;
@@ -32,7 +33,8 @@ import static picocli.CommandLine.ExitCode;
             CreateAuxImage.class,
             UpdateImage.class,
             RebaseImage.class,
-            InspectImage.class
+            InspectImage.class,
+            ResolvePatches.class
         },
         requiredOptionMarker = '*',
         abbreviateSynopsis = true,
@@ -0,0 +1,84 @@
+// Copyright (c) 2021, Oracle and/or its affiliates.
+// Licensed under the Universal Permissive License v 1.0 as shown at https://oss.oracle.com/licenses/upl.
+
+package com.oracle.weblogic.imagetool.cli.cache;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.TreeMap;
+
+import com.oracle.weblogic.imagetool.api.model.CommandResponse;
+import com.oracle.weblogic.imagetool.cachestore.CacheScanner;
+import com.oracle.weblogic.imagetool.cachestore.CacheStore;
+import picocli.CommandLine.Command;
+import picocli.CommandLine.Option;
+
+import static com.oracle.weblogic.imagetool.cachestore.CacheStoreFactory.cache;
+
+@Command(
+        name = "addDirectory",
+        description = "Add cache entries for every installer and patch in a directory, using the file names to find"
+            + " the installer type, version, and patch ID",
+        sortOptions = false
+)
+public class AddDirectory extends CacheOperation {
+
+    @Override
+    public CommandResponse call() throws IOException {
+        if (!Files.isDirectory(directory)) {
+            return CommandResponse.error("IMG-0049", directory);
+        }
+        CacheScanner scanner = new CacheScanner();
+        if (threads != null) {
+            scanner.threads(threads);
+        }
+        CacheScanner.Result found = scanner.scan(directory);
+
+        CacheStore cache = cache();
+        Map<String, Path> added = new TreeMap<>();
+        int existing = 0;
+        for (Map.Entry<String, Path> file : found.files().entrySet()) {
+            String oldValue = cache.getValueFromCache(file.getKey());
+            if (oldValue != null && (!force || oldValue.equals(file.getValue().toString()))) {
+                existing++;
+            } else {
+                added.put(file.getKey(), file.getValue());
+            }
+        }
+
+        if (dryRun) {
+            added.forEach((key, file) -> System.out.println(key + "=" + file));
+            return CommandResponse.success("IMG-0136", added.size(), directory, existing, found.unknown().size());
+        }
+        // all entries are added to the cache metadata at once
+        cache.addFilesToCache(added);
+        return CommandResponse.success("IMG-0133", added.size(), directory, existing, found.unknown().size());
+    }
+
+    @Option(
+        names = {"--path"},
+        description = "Directory with installers and patches. Subdirectories are included.",
+        required = true
+    )
+    private Path directory;
+
+    @Option(
+        names = {"--force"},
+        description = "Overwrite existing entries"
+    )
+    private boolean force = false;
+
+    @Option(
+        names = {"--dryRun"},
+        description = "List the cache entries that would be added, without adding them."
+    )
+    private boolean dryRun;
+
+    @Option(
+        names = {"--threads"},
+        description = "Number of files to examine at the same time. Default: the number of processors."
+    )
+    private Integer threads;
+}
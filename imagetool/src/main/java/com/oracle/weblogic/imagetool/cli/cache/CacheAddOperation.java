@@ -3,11 +3,15 @@
 
 package com.oracle.weblogic.imagetool.cli.cache;
 
+import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.Paths;
 
 import com.oracle.weblogic.imagetool.api.model.CommandResponse;
 import com.oracle.weblogic.imagetool.cachestore.CacheStoreException;
+import com.oracle.weblogic.imagetool.cachestore.ContentStore;
+import com.oracle.weblogic.imagetool.util.Utils;
 import picocli.CommandLine.Option;
 
 import static com.oracle.weblogic.imagetool.cachestore.CacheStoreFactory.cache;
@@ -22,7 +26,7 @@ public abstract class CacheAddOperation extends CacheOperation {
 
         // if the new value is the same as the existing cache value, do nothing
         String existingValue = cache().getValueFromCache(key);
-        if (absolutePath().toString().equals(existingValue)) {
+        if (absolutePath().toString().equals(existingValue) || sameContent(existingValue)) {
             return CommandResponse.success("IMG-0075");
         }
 
@@ -32,10 +36,25 @@ public abstract class CacheAddOperation extends CacheOperation {
         }
 
         // input appears valid, add the entry to the cache and exit
-        cache().addToCache(key, absolutePath().toString());
+        cache().addFileToCache(key, absolutePath());
         return CommandResponse.success("IMG-0050", key, cache().getValueFromCache(key));
     }
 
+    /**
+     * Returns true if the existing cache value is a content-addressed copy of the file being added.
+     */
+    private boolean sameContent(String existingValue) throws CacheStoreException {
+        String existingDigest = ContentStore.digestOf(existingValue);
+        if (existingDigest == null || !Files.isRegularFile(Paths.get(existingValue))) {
+            return false;
+        }
+        try {
+            return existingDigest.equals(Utils.sha256(absolutePath()));
+        } catch (IOException e) {
+            throw new CacheStoreException("Unable to read " + absolutePath(), e);
+        }
+    }
+
     Path absolutePath() {
         if (absolutePath == null) {
             absolutePath = filePath.toAbsolutePath();
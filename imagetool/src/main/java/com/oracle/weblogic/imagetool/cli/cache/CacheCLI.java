@@ -19,7 +19,13 @@ import picocli.CommandLine.Unmatched;
                 AddInstallerEntry.class,
                 AddPatchEntry.class,
                 AddEntry.class,
-                DeleteEntry.class
+                AddDirectory.class,
+                DeleteEntry.class,
+                PruneCache.class,
+                ExportCache.class,
+                ImportCache.class,
+                VerifyCache.class,
+                PrefetchPatches.class
         },
         sortOptions = false
 )
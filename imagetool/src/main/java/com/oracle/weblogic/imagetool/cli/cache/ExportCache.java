@@ -0,0 +1,80 @@
+// Copyright (c) 2021, Oracle and/or its affiliates.
+// Licensed under the Universal Permissive License v 1.0 as shown at https://oss.oracle.com/licenses/upl.
+
+package com.oracle.weblogic.imagetool.cli.cache;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import com.oracle.weblogic.imagetool.api.model.CommandResponse;
+import com.oracle.weblogic.imagetool.cachestore.CacheBundle;
+import com.oracle.weblogic.imagetool.cachestore.CacheManifest;
+import com.oracle.weblogic.imagetool.util.Utils;
+import picocli.CommandLine.Command;
+import picocli.CommandLine.Option;
+
+import static com.oracle.weblogic.imagetool.cachestore.CacheStoreFactory.cache;
+
+@Command(
+        name = "export",
+        description = "Write cache entries, and their files, to a tar file that can be imported into another cache"
+)
+public class ExportCache extends CacheOperation {
+
+    @Override
+    public CommandResponse call() throws IOException {
+        CacheBundle bundle = new CacheBundle(cache());
+        if (manifestOnly) {
+            CacheManifest manifest = bundle.manifest(keys);
+            try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(output))) {
+                manifest.write(out);
+            }
+            return CommandResponse.success("IMG-0123", manifest.entries().size(), 0, Utils.formatSize(0), output);
+        }
+
+        CacheManifest target = null;
+        if (exclude != null) {
+            try (InputStream in = Files.newInputStream(exclude)) {
+                target = CacheManifest.read(in);
+            }
+        }
+        CacheBundle.Result result;
+        try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(output), 256 * 1024)) {
+            result = bundle.export(out, keys, target);
+        }
+        return CommandResponse.success("IMG-0123", result.entries().size(), result.files(),
+            Utils.formatSize(result.bytes()), output);
+    }
+
+    @Option(
+            names = {"--output"},
+            description = "Name of the tar file to create",
+            required = true
+    )
+    private Path output;
+
+    @Option(
+            names = {"--key"},
+            description = "Cache key to export. Use the option once for each key. Default: every entry."
+    )
+    private List<String> keys;
+
+    @Option(
+            names = {"--exclude"},
+            description = "Manifest of the target cache, created with --manifestOnly. Entries that the target cache"
+                + " already has are not exported."
+    )
+    private Path exclude;
+
+    @Option(
+            names = {"--manifestOnly"},
+            description = "Write only the manifest (JSON) of the cache entries. Use it as --exclude to export the"
+                + " entries that this cache does not have."
+    )
+    private boolean manifestOnly;
+}
@@ -0,0 +1,42 @@
+// Copyright (c) 2021, Oracle and/or its affiliates.
+// Licensed under the Universal Permissive License v 1.0 as shown at https://oss.oracle.com/licenses/upl.
+
+package com.oracle.weblogic.imagetool.cli.cache;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import com.oracle.weblogic.imagetool.api.model.CommandResponse;
+import com.oracle.weblogic.imagetool.cachestore.CacheBundle;
+import com.oracle.weblogic.imagetool.util.Utils;
+import picocli.CommandLine.Command;
+import picocli.CommandLine.Option;
+
+import static com.oracle.weblogic.imagetool.cachestore.CacheStoreFactory.cache;
+
+@Command(
+        name = "import",
+        description = "Add the cache entries, and their files, from a tar file created with the cache export command"
+)
+public class ImportCache extends CacheOperation {
+
+    @Override
+    public CommandResponse call() throws IOException {
+        CacheBundle.Result result;
+        try (InputStream in = new BufferedInputStream(Files.newInputStream(input), 256 * 1024)) {
+            result = new CacheBundle(cache()).importBundle(in);
+        }
+        return CommandResponse.success("IMG-0124", result.entries().size(), result.files(),
+            Utils.formatSize(result.bytes()), result.skipped().size());
+    }
+
+    @Option(
+            names = {"--input"},
+            description = "Name of the tar file to import",
+            required = true
+    )
+    private Path input;
+}
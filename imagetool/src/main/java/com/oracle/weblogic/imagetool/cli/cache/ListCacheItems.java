@@ -3,6 +3,7 @@
 
 package com.oracle.weblogic.imagetool.cli.cache;
 
+import java.util.HashMap;
 import java.util.Map;
 import java.util.regex.Pattern;
 
@@ -23,7 +24,7 @@ public class ListCacheItems extends CacheOperation {
 
     @Override
     public CommandResponse call() throws CacheStoreException {
-        Map<String, String> resultMap = cache().getCacheItems();
+        Map<String, String> resultMap = new HashMap<>(cache().getCacheItems());
         if (resultMap == null || resultMap.isEmpty()) {
             return CommandResponse.success("IMG-0047");
         } else {
@@ -0,0 +1,65 @@
+// Copyright (c) 2021, Oracle and/or its affiliates.
+// Licensed under the Universal Permissive License v 1.0 as shown at https://oss.oracle.com/licenses/upl.
+
+package com.oracle.weblogic.imagetool.cli.cache;
+
+import java.io.IOException;
+
+import com.oracle.weblogic.imagetool.api.model.CommandResponse;
+import com.oracle.weblogic.imagetool.cachestore.CachePruner;
+import com.oracle.weblogic.imagetool.util.Utils;
+import picocli.CommandLine.Command;
+import picocli.CommandLine.Option;
+
+import static com.oracle.weblogic.imagetool.cachestore.CacheStoreFactory.cache;
+
+@Command(
+        name = "prune",
+        description = "Remove least recently used entries, and files that are not used by any entry, from the cache"
+)
+public class PruneCache extends CacheOperation {
+
+    @Override
+    public CommandResponse call() throws IOException {
+        CachePruner pruner = new CachePruner(cache()).dryRun(dryRun);
+        try {
+            if (maxSize != null) {
+                pruner.maxSize(Utils.parseSize(maxSize));
+            }
+            if (olderThan != null) {
+                pruner.olderThan(Utils.parseDuration(olderThan));
+            }
+        } catch (IllegalArgumentException e) {
+            return CommandResponse.error(e.getMessage());
+        }
+
+        CachePruner.Result result = pruner.prune();
+        if (result.dryRun()) {
+            result.removedEntries().forEach(key -> System.out.println("entry: " + key));
+            result.removedFiles().forEach(file -> System.out.println("file: " + file));
+            return CommandResponse.success("IMG-0111", result.removedEntries().size(), result.removedFiles().size(),
+                Utils.formatSize(result.freed()));
+        }
+        return CommandResponse.success("IMG-0110", result.removedEntries().size(), result.removedFiles().size(),
+            Utils.formatSize(result.freed()), Utils.formatSize(result.size()));
+    }
+
+    @Option(
+            names = {"--maxSize"},
+            description = "Remove least recently used entries until the cache directory is smaller than this size."
+                + " Use a suffix of k, m, g, or t, like 20g."
+    )
+    private String maxSize;
+
+    @Option(
+            names = {"--olderThan"},
+            description = "Remove entries that were not used for this long. Use a suffix of d, h, m, or s, like 30d."
+    )
+    private String olderThan;
+
+    @Option(
+            names = {"--dryRun"},
+            description = "List the entries and files that would be removed, without removing them."
+    )
+    private boolean dryRun;
+}
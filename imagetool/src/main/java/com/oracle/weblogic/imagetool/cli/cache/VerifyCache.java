@@ -0,0 +1,48 @@
+// Copyright (c) 2021, Oracle and/or its affiliates.
+// Licensed under the Universal Permissive License v 1.0 as shown at https://oss.oracle.com/licenses/upl.
+
+package com.oracle.weblogic.imagetool.cli.cache;
+
+import java.io.IOException;
+
+import com.oracle.weblogic.imagetool.api.model.CommandResponse;
+import com.oracle.weblogic.imagetool.cachestore.CacheVerifier;
+import com.oracle.weblogic.imagetool.util.Utils;
+import picocli.CommandLine.Command;
+import picocli.CommandLine.Option;
+
+import static com.oracle.weblogic.imagetool.cachestore.CacheStoreFactory.cache;
+
+@Command(
+        name = "verify",
+        description = "Check that the installers and patches in the cache are intact, and quarantine corrupt files"
+)
+public class VerifyCache extends CacheOperation {
+
+    @Override
+    public CommandResponse call() throws IOException {
+        CacheVerifier verifier = new CacheVerifier(cache()).dryRun(dryRun);
+        if (threads != null) {
+            verifier.threads(threads);
+        }
+        CacheVerifier.Result result = verifier.verify();
+        if (!result.corrupt().isEmpty() || !result.missing().isEmpty()) {
+            return CommandResponse.error("IMG-0132", result.corrupt().size(), result.missing().size(),
+                result.entries());
+        }
+        return CommandResponse.success("IMG-0125", result.entries(), result.files(), result.hashed(),
+            Utils.formatSize(result.hashedBytes()));
+    }
+
+    @Option(
+            names = {"--threads"},
+            description = "Number of files to read at the same time. Default: the number of processors."
+    )
+    private Integer threads;
+
+    @Option(
+            names = {"--dryRun"},
+            description = "Report corrupt files, without moving them or removing their cache entries."
+    )
+    private boolean dryRun;
+}
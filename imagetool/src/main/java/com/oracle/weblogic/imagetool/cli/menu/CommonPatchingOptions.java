@@ -11,24 +11,25 @@ import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.Map;
 import javax.xml.xpath.XPathExpressionException;
 
 import com.oracle.weblogic.imagetool.aru.AruException;
 import com.oracle.weblogic.imagetool.aru.AruPatch;
-import com.oracle.weblogic.imagetool.aru.AruProduct;
 import com.oracle.weblogic.imagetool.aru.AruUtil;
 import com.oracle.weblogic.imagetool.aru.InstalledPatch;
 import com.oracle.weblogic.imagetool.aru.InvalidCredentialException;
-import com.oracle.weblogic.imagetool.aru.InvalidPatchNumberException;
-import com.oracle.weblogic.imagetool.aru.MultiplePatchVersionsException;
+import com.oracle.weblogic.imagetool.aru.PatchLock;
+import com.oracle.weblogic.imagetool.cachestore.ContentStore;
 import com.oracle.weblogic.imagetool.cachestore.OPatchFile;
 import com.oracle.weblogic.imagetool.cachestore.PatchFile;
 import com.oracle.weblogic.imagetool.installer.FmwInstallerType;
 import com.oracle.weblogic.imagetool.logging.LoggingFacade;
 import com.oracle.weblogic.imagetool.logging.LoggingFactory;
 import com.oracle.weblogic.imagetool.util.InvalidPatchIdFormatException;
+import com.oracle.weblogic.imagetool.util.ParallelTasks;
 import com.oracle.weblogic.imagetool.util.Utils;
 import picocli.CommandLine.Option;
 
@@ -43,6 +44,7 @@ public abstract class CommonPatchingOptions extends CommonOptions {
     void initializeOptions() throws IOException, InvalidCredentialException, InvalidPatchIdFormatException {
         super.initializeOptions();
         password = Utils.getPasswordFromInputs(passwordStr, passwordFile, passwordEnv);
+        AruUtil.rest().refreshMetadata(refreshAruMetadata);
 
         // if userid or password is provided, validate the pair of provided values
         if ((userId != null || password != null) && !AruUtil.checkCredentials(userId, password)) {
@@ -50,6 +52,15 @@ public abstract class CommonPatchingOptions extends CommonOptions {
         }
 
         Utils.validatePatchIds(patches, false);
+
+        if (patchLockFile != null) {
+            if (latestPsu || recommendedPatches || !patches.isEmpty() || opatchBugNumber != null) {
+                throw new IllegalArgumentException(Utils.getMessage("IMG-0151"));
+            }
+            patchLock = PatchLock.read(patchLockFile);
+            logger.info("IMG-0153", patchLock.patches().size(), patchLockFile, patchLock.installerType(),
+                patchLock.installerVersion());
+        }
     }
 
     /**
@@ -59,7 +70,8 @@ public abstract class CommonPatchingOptions extends CommonOptions {
      * @return true if applying patches
      */
     boolean applyingPatches() {
-        return (latestPsu || recommendedPatches) || !patches.isEmpty();
+        return (latestPsu || recommendedPatches) || !patches.isEmpty()
+            || (patchLock != null && !patchLock.patches().isEmpty());
     }
 
     /**
@@ -71,6 +83,9 @@ public abstract class CommonPatchingOptions extends CommonOptions {
     boolean shouldUpdateOpatch() {
         if (skipOpatchUpdate) {
             logger.fine("IMG-0065");
+        } else if (patchLock != null && patchLock.opatch() == null) {
+            logger.fine("The patch lock file {0} does not have an OPatch patch", patchLockFile);
+            return false;
         }
         return !skipOpatchUpdate;
     }
@@ -101,111 +116,63 @@ public abstract class CommonPatchingOptions extends CommonOptions {
     void handlePatchFiles(FmwInstallerType installerType, List<InstalledPatch> installedPatches)
         throws AruException, IOException, XPathExpressionException {
         logger.entering(installerType, installedPatches);
-        String psuVersion = InstalledPatch.getPsuVersion(installedPatches);
         if (!applyingPatches()) {
             logger.exiting("not applying patches");
             return;
         }
 
-        List<AruPatch> aruPatches = new ArrayList<>();
-        if (recommendedPatches || latestPsu) {
-            if (userId == null || password == null) {
-                throw new IllegalArgumentException(Utils.getMessage("IMG-0031"));
+        List<AruPatch> aruPatches;
+        if (patchLock != null) {
+            // apply the patches that the resolve command selected, without getting patch metadata from ARU
+            if (!patchLock.installerType().equals(installerType.name())
+                || !patchLock.installerVersion().equals(getInstallerVersion())) {
+                throw new IllegalArgumentException(Utils.getMessage("IMG-0152", patchLockFile,
+                    patchLock.installerType(), patchLock.installerVersion(), installerType, getInstallerVersion()));
             }
-
-            if (recommendedPatches) {
-                // Get the latest PSU and its recommended patches
-                aruPatches = AruUtil.rest()
-                    .getRecommendedPatches(installerType, getInstallerVersion(), userId, password);
-
-                if (aruPatches.isEmpty()) {
-                    recommendedPatches = false;
-                    logger.info("IMG-0084", getInstallerVersion());
-                } else if (FmwInstallerType.isBaseWeblogicServer(installerType)) {
-                    // find and remove all ADR patches in the recommended patches list for base WLS installers
-                    List<AruPatch> discard = aruPatches.stream()
-                        .filter(p -> p.description().startsWith("ADR FOR WEBLOGIC SERVER"))
-                        .collect(Collectors.toList());
-                    // let the user know that the ADR patches will be discarded
-                    discard.forEach(p -> logger.info("IMG-0085", p.patchId()));
-                    aruPatches.removeAll(discard);
-                }
-            } else {
-                // PSUs for WLS and JRF installers are considered WLS patches
-                aruPatches = AruUtil.rest().getLatestPsu(installerType, getInstallerVersion(), userId, password);
-
-                if (aruPatches.isEmpty()) {
-                    latestPsu = false;
-                    logger.fine("Latest PSU NOT FOUND, ignoring latestPSU flag");
-                }
+            aruPatches = new ArrayList<>(patchLock.patches());
+        } else {
+            aruPatches = new PatchResolver(installerType, getInstallerVersion())
+                .credentials(userId, password)
+                .latestPsu(latestPsu)
+                .recommendedPatches(recommendedPatches)
+                .patches(patches)
+                .parallelism(parallelDownloads)
+                .resolve(installedPatches);
+            if (aruPatches.isEmpty()) {
+                // ARU did not have a PSU or recommended patches for the installer version
+                latestPsu = false;
+                recommendedPatches = false;
             }
         }
 
-        if (!aruPatches.isEmpty()) {
-            // when applying a new PSU, use that PSU version to find patches where user did not qualify the patch number
-            for (AruPatch patch : aruPatches) {
-                if (patch.isPsu() && AruProduct.fromProductId(patch.product()) == AruProduct.WLS) {
-                    String psuName = patch.psuBundle();
-                    String psu = psuName.substring(psuName.lastIndexOf(' ') + 1);
-                    logger.fine("Using PSU {0} to set preferred patch version to {1}", patch.patchId(), psu);
-                    psuVersion = psu;
-                }
-            }
+        String patchesFolderName = createPatchesTempDirectory().toAbsolutePath().toString();
+        // copy the patch JARs to the Docker build context directory from the local cache, downloading them if needed.
+        // Start the largest downloads first, so that a large patch does not finish long after the others.
+        List<AruPatch> downloadOrder = new ArrayList<>(aruPatches);
+        downloadOrder.sort(Comparator.comparingLong((AruPatch patch) -> patch.size()).reversed());
+        Map<AruPatch, Exception> failures;
+        try {
+            failures = ParallelTasks.forEach(downloadOrder, parallelDownloads, "patch-download",
+                patch -> stagePatch(patch, patchesFolderName));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while downloading patches", e);
         }
-
-        // add user-provided patch list to any patches that were found for latestPsu or recommendedPatches
-        for (String patchId : patches) {
-            // if user mistakenly added the OPatch patch to the WLS patch list, skip it. WIT updates OPatch anyway
-            if (OPatchFile.isOPatchPatch(patchId)) {
-                continue;
+        if (!failures.isEmpty()) {
+            failures.forEach((patch, error) -> logger.severe("IMG-0137", patch.patchId(), error.getMessage()));
+            Exception first = failures.values().iterator().next();
+            failures.values().stream().skip(1).forEach(first::addSuppressed);
+            if (failures.size() > 1) {
+                logger.severe("IMG-0138", failures.size(), aruPatches.size());
             }
-            // if patch ID was provided as bugnumber_version, split the bugnumber and version strings
-            String providedVersion = null;
-            int split = patchId.indexOf('_');
-            if (split > 0) {
-                providedVersion = patchId.substring(split + 1);
-                patchId = patchId.substring(0, split);
-            }
-            List<AruPatch> patchVersions = AruUtil.rest().getPatches(patchId, userId, password);
-
-            // Stack Patch Bundle (SPB) is not a traditional patch.  Patches in SPB are duplicates of recommended.
-            if (patchVersions.stream().anyMatch(AruPatch::isStackPatchBundle)) {
-                // Do not continue if the user specified a patch number that cannot be applied.
-                throw logger.throwing(new InvalidPatchNumberException(Utils.getMessage("IMG-0098", patchId)));
-            }
-
-            if (!patchVersions.isEmpty()) {
-                AruPatch selectedVersion = AruPatch.selectPatch(patchVersions, providedVersion, psuVersion,
-                    getInstallerVersion());
-
-                if (selectedVersion != null) {
-                    aruPatches.add(selectedVersion);
-                } else {
-                    throw logger.throwing(new MultiplePatchVersionsException(patchId, aruPatches));
-                }
-            }
-        }
-
-        AruUtil.validatePatches(installedPatches, aruPatches, userId, password);
-
-        String patchesFolderName = createPatchesTempDirectory().toAbsolutePath().toString();
-        // copy the patch JARs to the Docker build context directory from the local cache, downloading them if needed
-        for (AruPatch patch : aruPatches) {
-            PatchFile patchFile = new PatchFile(patch, userId, password);
-            String patchLocation = patchFile.resolve(cache());
-            if (patchLocation != null && !Utils.isEmptyString(patchLocation)) {
-                File cacheFile = new File(patchLocation);
-                try {
-                    if (patch.fileName() == null) {
-                        patch.fileName(cacheFile.getName());
-                    }
-                    Files.copy(Paths.get(patchLocation), Paths.get(patchesFolderName, cacheFile.getName()));
-                } catch (FileAlreadyExistsException ee) {
-                    logger.warning("IMG-0077", patchFile.getKey());
-                }
-            } else {
-                logger.severe("IMG-0024", patchFile.getKey());
+            if (first instanceof AruException) {
+                throw (AruException) first;
+            } else if (first instanceof IOException) {
+                throw (IOException) first;
+            } else if (first instanceof XPathExpressionException) {
+                throw (XPathExpressionException) first;
             }
+            throw new IOException(first);
         }
         if (!aruPatches.isEmpty()) {
             dockerfileOptions
@@ -216,6 +183,35 @@ public abstract class CommonPatchingOptions extends CommonOptions {
         logger.exiting();
     }
 
+    /**
+     * Copy one patch to the build context directory, downloading it to the cache first if needed.
+     * Called from several threads at the same time, for different patches.
+     */
+    private void stagePatch(AruPatch patch, String patchesFolderName)
+        throws AruException, IOException, XPathExpressionException {
+
+        PatchFile patchFile = new PatchFile(patch, userId, password);
+        String patchLocation = patchFile.resolve(cache());
+        if (patchLocation != null && !Utils.isEmptyString(patchLocation)) {
+            File cacheFile = new File(patchLocation);
+            try {
+                if (patch.fileName() == null) {
+                    patch.fileName(cacheFile.getName());
+                }
+                Path target = Paths.get(patchesFolderName, cacheFile.getName());
+                if (ContentStore.isContentAddressed(patchLocation)) {
+                    ContentStore.linkOrCopy(Paths.get(patchLocation), target);
+                } else {
+                    Files.copy(Paths.get(patchLocation), target);
+                }
+            } catch (FileAlreadyExistsException ee) {
+                logger.warning("IMG-0077", patchFile.getKey());
+            }
+        } else {
+            logger.severe("IMG-0024", patchFile.getKey());
+        }
+    }
+
     private Path createPatchesTempDirectory() throws IOException {
         Path tmpPatchesDir = Files.createDirectory(Paths.get(buildDir(), "patches"));
         Files.createFile(Paths.get(tmpPatchesDir.toAbsolutePath().toString(), "dummy.txt"));
@@ -225,7 +221,7 @@ public abstract class CommonPatchingOptions extends CommonOptions {
     void prepareOpatchInstaller(String tmpDir, String opatchBugNumber)
         throws IOException, XPathExpressionException, AruException {
         logger.entering(opatchBugNumber);
-        String filePath = OPatchFile.getInstance(opatchBugNumber, userId, password, cache()).resolve(cache());
+        String filePath = getOpatchFile(opatchBugNumber).resolve(cache());
         String filename = new File(filePath).getName();
         Files.copy(Paths.get(filePath), Paths.get(tmpDir, filename));
         dockerfileOptions.setOPatchPatchingEnabled();
@@ -233,6 +229,18 @@ public abstract class CommonPatchingOptions extends CommonOptions {
         logger.exiting(filename);
     }
 
+    /**
+     * The OPatch patch to install, from the patch lock file if there is one, or else selected with ARU.
+     * @param opatchBugNumber the OPatch bug number and optional version, or null for the default
+     * @return an abstract OPatch file
+     */
+    OPatchFile getOpatchFile(String opatchBugNumber) throws AruException, XPathExpressionException, IOException {
+        if (patchLock != null && patchLock.opatch() != null) {
+            return OPatchFile.getInstance(patchLock.opatch(), userId, password);
+        }
+        return OPatchFile.getInstance(opatchBugNumber, userId, password, cache());
+    }
+
     String getUserId() {
         return userId;
     }
@@ -311,4 +319,29 @@ public abstract class CommonPatchingOptions extends CommonOptions {
         description = "Do not update OPatch version, even if a newer version is available."
     )
     private boolean skipOpatchUpdate = false;
+
+    @Option(
+        names = {"--parallelDownloads"},
+        description = "The maximum number of patches to search for in ARU, and to download, at the same time."
+            + " Default: ${DEFAULT-VALUE}.",
+        defaultValue = "4"
+    )
+    int parallelDownloads = 4;
+
+    @Option(
+        names = {"--patchLock"},
+        paramLabel = "<patch lock file>",
+        description = "Apply the patches in a patch lock file written by the resolve command, without getting patch"
+            + " metadata from ARU."
+    )
+    private Path patchLockFile;
+
+    private PatchLock patchLock;
+
+    @Option(
+        names = {"--refreshAruMetadata"},
+        description = "Get patch and release metadata from ARU, even if the metadata saved by an earlier build has not"
+            + " expired."
+    )
+    boolean refreshAruMetadata = false;
 }
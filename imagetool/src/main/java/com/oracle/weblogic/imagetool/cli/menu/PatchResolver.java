@@ -0,0 +1,221 @@
+// Copyright (c) 2021, Oracle and/or its affiliates.
+// Licensed under the Universal Permissive License v 1.0 as shown at https://oss.oracle.com/licenses/upl.
+
+package com.oracle.weblogic.imagetool.cli.menu;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import com.oracle.weblogic.imagetool.aru.AruException;
+import com.oracle.weblogic.imagetool.aru.AruPatch;
+import com.oracle.weblogic.imagetool.aru.AruProduct;
+import com.oracle.weblogic.imagetool.aru.AruUtil;
+import com.oracle.weblogic.imagetool.aru.InstalledPatch;
+import com.oracle.weblogic.imagetool.aru.InvalidPatchNumberException;
+import com.oracle.weblogic.imagetool.aru.MultiplePatchVersionsException;
+import com.oracle.weblogic.imagetool.cachestore.OPatchFile;
+import com.oracle.weblogic.imagetool.installer.FmwInstallerType;
+import com.oracle.weblogic.imagetool.logging.LoggingFacade;
+import com.oracle.weblogic.imagetool.logging.LoggingFactory;
+import com.oracle.weblogic.imagetool.util.Utils;
+
+/**
+ * Select the patches to apply with ARU: the latest PSU or the recommended patches, and a version of each patch
+ * number that the user provided, and check the selected patches for conflicts.
+ * Used by the commands that build images, by the resolve command that writes the patches to a patch lock file, and
+ * by the cache prefetch command.
+ */
+public class PatchResolver {
+    private static final LoggingFacade logger = LoggingFactory.getLogger(PatchResolver.class);
+
+    private final FmwInstallerType installerType;
+    private final String installerVersion;
+    private String userId;
+    private String password;
+    private boolean latestPsu = false;
+    private boolean recommendedPatches = false;
+    private List<String> patches = Collections.emptyList();
+    private int parallelism = 1;
+
+    public PatchResolver(FmwInstallerType installerType, String installerVersion) {
+        this.installerType = installerType;
+        this.installerVersion = installerVersion;
+    }
+
+    /**
+     * The Oracle Support credentials for ARU.
+     * @param userId   Oracle Support credential user
+     * @param password Oracle Support credential password
+     * @return this
+     */
+    public PatchResolver credentials(String userId, String password) {
+        this.userId = userId;
+        this.password = password;
+        return this;
+    }
+
+    public PatchResolver latestPsu(boolean value) {
+        latestPsu = value;
+        return this;
+    }
+
+    public PatchResolver recommendedPatches(boolean value) {
+        recommendedPatches = value;
+        return this;
+    }
+
+    public PatchResolver patches(List<String> value) {
+        patches = value;
+        return this;
+    }
+
+    public PatchResolver parallelism(int value) {
+        parallelism = value;
+        return this;
+    }
+
+    /**
+     * Select the patches with ARU, and check them for conflicts with each other and with the installed patches.
+     *
+     * @param installedPatches the patches already installed in the Oracle Home
+     * @return the patches to apply
+     * @throws AruException if an error occurs trying to read patch metadata from ARU
+     * @throws IOException  if a transport error occurs trying to access the Oracle REST services
+     */
+    public List<AruPatch> resolve(List<InstalledPatch> installedPatches) throws AruException, IOException {
+        logger.entering(installerType, installedPatches);
+        String psuVersion = InstalledPatch.getPsuVersion(installedPatches);
+
+        List<AruPatch> aruPatches = new ArrayList<>();
+        if (recommendedPatches || latestPsu) {
+            if (userId == null || password == null) {
+                throw new IllegalArgumentException(Utils.getMessage("IMG-0031"));
+            }
+
+            if (recommendedPatches) {
+                // Get the latest PSU and its recommended patches
+                aruPatches = AruUtil.rest()
+                    .getRecommendedPatches(installerType, installerVersion, userId, password);
+
+                if (aruPatches.isEmpty()) {
+                    logger.info("IMG-0084", installerVersion);
+                } else if (FmwInstallerType.isBaseWeblogicServer(installerType)) {
+                    // find and remove all ADR patches in the recommended patches list for base WLS installers
+                    List<AruPatch> discard = aruPatches.stream()
+                        .filter(p -> p.description().startsWith("ADR FOR WEBLOGIC SERVER"))
+                        .collect(Collectors.toList());
+                    // let the user know that the ADR patches will be discarded
+                    discard.forEach(p -> logger.info("IMG-0085", p.patchId()));
+                    aruPatches.removeAll(discard);
+                }
+            } else {
+                // PSUs for WLS and JRF installers are considered WLS patches
+                aruPatches = AruUtil.rest().getLatestPsu(installerType, installerVersion, userId, password);
+
+                if (aruPatches.isEmpty()) {
+                    logger.fine("Latest PSU NOT FOUND, ignoring latestPSU flag");
+                }
+            }
+        }
+
+        if (!aruPatches.isEmpty()) {
+            // when applying a new PSU, use that PSU version to find patches where user did not qualify the patch number
+            for (AruPatch patch : aruPatches) {
+                if (patch.isPsu() && AruProduct.fromProductId(patch.product()) == AruProduct.WLS) {
+                    String psuName = patch.psuBundle();
+                    String psu = psuName.substring(psuName.lastIndexOf(' ') + 1);
+                    logger.fine("Using PSU {0} to set preferred patch version to {1}", patch.patchId(), psu);
+                    psuVersion = psu;
+                }
+            }
+        }
+
+        // add user-provided patch list to any patches that were found for latestPsu or recommendedPatches
+        List<ProvidedPatch> providedPatches = providedPatches(patches);
+        Set<String> bugNumbers = new LinkedHashSet<>();
+        providedPatches.forEach(p -> bugNumbers.add(p.bugNumber));
+        // search ARU for all of the bug numbers at the same time, instead of one after the other
+        Map<String, List<AruPatch>> searchResults =
+            AruUtil.rest().getPatches(bugNumbers, parallelism, userId, password);
+
+        for (ProvidedPatch provided : providedPatches) {
+            String patchId = provided.bugNumber;
+            List<AruPatch> patchVersions = searchResults.get(patchId);
+
+            // Stack Patch Bundle (SPB) is not a traditional patch.  Patches in SPB are duplicates of recommended.
+            if (patchVersions.stream().anyMatch(AruPatch::isStackPatchBundle)) {
+                // Do not continue if the user specified a patch number that cannot be applied.
+                throw logger.throwing(new InvalidPatchNumberException(Utils.getMessage("IMG-0098", patchId)));
+            }
+
+            if (!patchVersions.isEmpty()) {
+                AruPatch selectedVersion = AruPatch.selectPatch(patchVersions, provided.version, psuVersion,
+                    installerVersion);
+
+                if (selectedVersion != null) {
+                    aruPatches.add(selectedVersion);
+                } else {
+                    throw logger.throwing(new MultiplePatchVersionsException(patchId, aruPatches));
+                }
+            }
+        }
+
+        AruUtil.validatePatches(installedPatches, aruPatches, userId, password);
+        logger.exiting(aruPatches);
+        return aruPatches;
+    }
+
+    /**
+     * Split the user-provided patch list into bug numbers and versions, in the order provided.
+     * A patch that is listed more than once with the same version is used once.
+     *
+     * @param patches the patch list, like 12345678 or 12345678_12.2.1.4.0
+     * @return the bug number and version of each patch
+     * @throws IllegalArgumentException if the same bug number is listed with different versions
+     */
+    static List<ProvidedPatch> providedPatches(List<String> patches) {
+        Map<String, ProvidedPatch> result = new LinkedHashMap<>();
+        for (String patchId : patches) {
+            // if user mistakenly added the OPatch patch to the WLS patch list, skip it. WIT updates OPatch anyway
+            if (OPatchFile.isOPatchPatch(patchId)) {
+                continue;
+            }
+            // if patch ID was provided as bugnumber_version, split the bugnumber and version strings
+            String providedVersion = null;
+            int split = patchId.indexOf('_');
+            if (split > 0) {
+                providedVersion = patchId.substring(split + 1);
+                patchId = patchId.substring(0, split);
+            }
+            ProvidedPatch provided = new ProvidedPatch(patchId, providedVersion);
+            ProvidedPatch previous = result.putIfAbsent(patchId, provided);
+            if (previous != null && !Objects.equals(previous.version, providedVersion)) {
+                throw new IllegalArgumentException(Utils.getMessage("IMG-0159", patchId, previous, provided));
+            }
+        }
+        return new ArrayList<>(result.values());
+    }
+
+    static class ProvidedPatch {
+        final String bugNumber;
+        final String version;
+
+        ProvidedPatch(String bugNumber, String version) {
+            this.bugNumber = bugNumber;
+            this.version = version;
+        }
+
+        @Override
+        public String toString() {
+            return version == null ? bugNumber : bugNumber + "_" + version;
+        }
+    }
+}
@@ -89,7 +89,7 @@ public class UpdateImage extends CommonPatchingOptions implements Callable<Comma
                 String password = getPassword();
 
                 if (shouldUpdateOpatch()) {
-                    OPatchFile opatchFile = OPatchFile.getInstance(opatchBugNumber, userId, password, cache());
+                    OPatchFile opatchFile = getOpatchFile(opatchBugNumber);
                     String opatchFilePath = opatchFile.resolve(cache());
 
                     // if there is a newer version of OPatch than contained in the image, update OPatch
@@ -0,0 +1,350 @@
+// Copyright (c) 2021, Oracle and/or its affiliates.
+// Licensed under the Universal Permissive License v 1.0 as shown at https://oss.oracle.com/licenses/upl.
+
+package com.oracle.weblogic.imagetool.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import com.oracle.weblogic.imagetool.logging.LoggingFacade;
+import com.oracle.weblogic.imagetool.logging.LoggingFactory;
+import org.apache.http.Header;
+import org.apache.http.HttpHeaders;
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpStatus;
+import org.apache.http.client.fluent.Executor;
+import org.apache.http.client.fluent.Request;
+
+/**
+ * Download a file to a {@code .part} file next to the target, and rename it to the target only after it is complete
+ * and matches the expected size and SHA-256 digest.  When the connection fails, the download resumes where it
+ * stopped with an HTTP Range request, and a partial file left by an earlier process is resumed the same way.
+ * A large file is split into segments that are fetched on separate connections at the same time, because a single
+ * connection on a high latency link does not use all of the bandwidth.
+ */
+public class HttpDownloader {
+
+    private static final LoggingFacade logger = LoggingFactory.getLogger(HttpDownloader.class);
+    private static final Pattern CONTENT_RANGE = Pattern.compile("bytes (\\d+)-\\d+/(\\d+|\\*)");
+    private static final int TIMEOUT = 30000;
+    private static final int BUFFER_SIZE = 64 * 1024;
+    public static final String SEGMENTS = "WLSIMG_DOWNLOAD_SEGMENTS";
+    private static final int DEFAULT_SEGMENTS = 4;
+    private static final long MIN_SEGMENT_SIZE = 64L * 1024 * 1024;
+
+    private final Executor executor;
+    private RetryPolicy retryPolicy = RetryPolicy.shared();
+    private int segments;
+    private long minSegmentSize = MIN_SEGMENT_SIZE;
+
+    /**
+     * Create a downloader that sends its requests with the provided executor.
+     * The number of segments is read from the environment variable WLSIMG_DOWNLOAD_SEGMENTS, 1 disables segmented
+     * downloads.
+     * @param executor HTTP executor with the credentials for the server
+     */
+    public HttpDownloader(Executor executor) {
+        this.executor = executor;
+        String value = Utils.getEnvironmentProperty(SEGMENTS, String.valueOf(DEFAULT_SEGMENTS));
+        try {
+            segments = Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            logger.warning("IMG-0143", SEGMENTS, value);
+            segments = DEFAULT_SEGMENTS;
+        }
+    }
+
+    /**
+     * Use a retry policy other than the shared policy for requests to Oracle.
+     * @param policy when and how long to wait before the next attempt
+     * @return this
+     */
+    public HttpDownloader retryPolicy(RetryPolicy policy) {
+        retryPolicy = policy;
+        return this;
+    }
+
+    /**
+     * Download files of at least two segments in several parts at the same time.
+     * @param count   maximum number of segments, and connections, for one file
+     * @param minSize minimum size of a segment in bytes
+     * @return this
+     */
+    public HttpDownloader segments(int count, long minSize) {
+        segments = count;
+        minSegmentSize = minSize;
+        return this;
+    }
+
+    /**
+     * Download a file.
+     *
+     * @param url          location of the file
+     * @param target       where to save the file
+     * @param expectedSize expected size in bytes, or 0 if not known
+     * @param expectedHash expected SHA-256 digest as a hex string, or null if not known
+     * @return the target file
+     * @throws IOException if the file cannot be downloaded, or does not match the expected size and digest
+     */
+    public Path download(String url, Path target, long expectedSize, String expectedHash) throws IOException {
+        logger.entering(url, target, expectedSize, expectedHash);
+        Path partFile = Paths.get(target + ".part");
+        // a partial file is resumed with one connection, the segments of an earlier attempt are not known
+        if (!Files.exists(partFile) && downloadSegments(url, partFile, expectedSize)) {
+            MessageDigest digest = Utils.sha256Digest();
+            Utils.updateDigest(digest, partFile);
+            String hash = Utils.toHex(digest.digest());
+            long size = Files.size(partFile);
+            if (!matches(expectedSize, expectedHash, size, hash)) {
+                Files.delete(partFile);
+                throw new IOException(Utils.getMessage("IMG-0141", url, expectedHash, expectedSize, hash, size));
+            }
+            Files.move(partFile, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            logger.exiting(target);
+            return target;
+        }
+
+        for (int attempt = 1; ; attempt++) {
+            retryPolicy.checkCircuit(url);
+            try {
+                long offset = Files.exists(partFile) ? Files.size(partFile) : 0;
+                if (expectedSize > 0 && offset > expectedSize) {
+                    Files.delete(partFile);
+                    offset = 0;
+                }
+                MessageDigest digest = Utils.sha256Digest();
+                if (offset > 0) {
+                    logger.info("IMG-0139", target.getFileName(), Utils.formatSize(offset));
+                    // the bytes already downloaded are part of the digest, reading them is much faster than the WAN
+                    Utils.updateDigest(digest, partFile);
+                }
+                long size = transfer(url, partFile, offset, expectedSize, digest);
+                String hash = Utils.toHex(digest.digest());
+                if (!matches(expectedSize, expectedHash, size, hash)) {
+                    Files.deleteIfExists(partFile);
+                    IOException error = new IOException(Utils.getMessage("IMG-0141", url, expectedHash, expectedSize,
+                        hash, size));
+                    if (offset == 0) {
+                        // the server sent the whole file, and it is not the expected file
+                        throw new DownloadFailedException(error);
+                    }
+                    // the partial file may have been from another version of the file, start over
+                    throw error;
+                }
+                retryPolicy.succeeded();
+                Files.move(partFile, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                logger.exiting(target);
+                return target;
+            } catch (DownloadFailedException e) {
+                throw (IOException) e.getCause();
+            } catch (IOException e) {
+                if (!retryPolicy.retry(url, attempt, e)) {
+                    // keep the partial file, the next build resumes from it
+                    throw e;
+                }
+            }
+        }
+    }
+
+    private static boolean matches(long expectedSize, String expectedHash, long size, String hash) {
+        return (expectedSize <= 0 || size == expectedSize)
+            && (expectedHash == null || expectedHash.equalsIgnoreCase(hash));
+    }
+
+    /**
+     * Download the file in segments, when the file is large enough and the server supports Range requests.
+     * When a segment cannot be downloaded, the partial file is truncated after the last complete segment of the
+     * beginning of the file, so that the next attempt can resume it.
+     * @return false if the file was not downloaded in segments, and the partial file does not exist
+     */
+    private boolean downloadSegments(String url, Path partFile, long expectedSize) throws IOException {
+        int count = (int) Math.min(segments, expectedSize / Math.max(1, minSegmentSize));
+        if (count < 2) {
+            return false;
+        }
+        List<Segment> parts = new ArrayList<>();
+        long segmentSize = (expectedSize + count - 1) / count;
+        for (long start = 0; start < expectedSize; start += segmentSize) {
+            parts.add(new Segment(start, Math.min(start + segmentSize, expectedSize)));
+        }
+        logger.info("IMG-0142", partFile.getFileName(), Utils.formatSize(expectedSize), parts.size());
+
+        Map<Segment, Exception> failures;
+        try (FileChannel channel = FileChannel.open(partFile, StandardOpenOption.CREATE_NEW,
+            StandardOpenOption.WRITE)) {
+            failures = ParallelTasks.forEach(parts, parts.size(), "download", part -> fetch(url, channel, part));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            Files.deleteIfExists(partFile);
+            throw new IOException("Interrupted while downloading " + url, e);
+        }
+        if (failures.values().stream().anyMatch(RangesNotSupportedException.class::isInstance)) {
+            logger.fine("{0} does not support Range requests, downloading with one connection", url);
+            Files.delete(partFile);
+            return false;
+        }
+        if (!failures.isEmpty()) {
+            // keep the complete beginning of the file, the rest may have holes
+            long complete = 0;
+            for (Segment part : parts) {
+                complete = part.position;
+                if (part.position < part.end) {
+                    break;
+                }
+            }
+            try (FileChannel channel = FileChannel.open(partFile, StandardOpenOption.WRITE)) {
+                channel.truncate(complete);
+            }
+            Exception error = failures.values().iterator().next();
+            throw error instanceof IOException ? (IOException) error : new IOException(error);
+        }
+        return true;
+    }
+
+    /**
+     * Download one segment, and write it at its offset in the partial file.
+     */
+    private void fetch(String url, FileChannel channel, Segment part) throws IOException {
+        for (int attempt = 1; ; attempt++) {
+            retryPolicy.checkCircuit(url);
+            Request request = Request.Get(url).connectTimeout(TIMEOUT).socketTimeout(TIMEOUT)
+                .addHeader(HttpHeaders.RANGE, "bytes=" + part.position + "-" + (part.end - 1));
+            try {
+                executor.execute(request).handleResponse(response -> {
+                    int status = response.getStatusLine().getStatusCode();
+                    if (status == HttpStatus.SC_OK) {
+                        throw new RangesNotSupportedException();
+                    } else if (status != HttpStatus.SC_PARTIAL_CONTENT) {
+                        throw RetryPolicy.statusError(response, url);
+                    }
+                    checkContentRange(response, part.position, url);
+                    byte[] buffer = new byte[BUFFER_SIZE];
+                    try (InputStream input = response.getEntity().getContent()) {
+                        int read;
+                        while ((read = input.read(buffer)) != -1) {
+                            if (part.position + read > part.end) {
+                                throw new IOException("Received more than the requested range of " + url);
+                            }
+                            ByteBuffer data = ByteBuffer.wrap(buffer, 0, read);
+                            while (data.hasRemaining()) {
+                                part.position += channel.write(data, part.position);
+                            }
+                        }
+                    }
+                    if (part.position != part.end) {
+                        throw new IOException("Incomplete response for " + request + ", received up to "
+                            + part.position);
+                    }
+                    return null;
+                });
+                retryPolicy.succeeded();
+                return;
+            } catch (RangesNotSupportedException e) {
+                throw e;
+            } catch (IOException e) {
+                if (!retryPolicy.retry(url, attempt, e)) {
+                    throw e;
+                }
+            }
+        }
+    }
+
+    private static void checkContentRange(HttpResponse response, long offset, String url) throws IOException {
+        Header range = response.getFirstHeader(HttpHeaders.CONTENT_RANGE);
+        Matcher matcher = range == null ? null : CONTENT_RANGE.matcher(range.getValue());
+        if (matcher == null || !matcher.matches() || Long.parseLong(matcher.group(1)) != offset) {
+            throw new IOException("Unexpected Content-Range " + range + " for " + url);
+        }
+    }
+
+    /**
+     * Request the file, from the offset, and append the response to the partial file.
+     * @return the size of the partial file after the transfer
+     */
+    private long transfer(String url, Path partFile, long offset, long expectedSize, MessageDigest digest)
+        throws IOException {
+
+        Request request = Request.Get(url).connectTimeout(TIMEOUT).socketTimeout(TIMEOUT);
+        if (offset > 0) {
+            request.addHeader(HttpHeaders.RANGE, "bytes=" + offset + "-");
+        }
+        return executor.execute(request).handleResponse(response -> {
+            int status = response.getStatusLine().getStatusCode();
+            boolean append = false;
+            if (status == HttpStatus.SC_PARTIAL_CONTENT && offset > 0) {
+                checkContentRange(response, offset, url);
+                append = true;
+            } else if (status == HttpStatus.SC_REQUESTED_RANGE_NOT_SATISFIABLE && offset > 0
+                && offset == expectedSize) {
+                // the partial file is already complete
+                return offset;
+            } else if (status != HttpStatus.SC_OK) {
+                if (status == HttpStatus.SC_REQUESTED_RANGE_NOT_SATISFIABLE) {
+                    // the partial file is not part of the file on the server, the next attempt starts over
+                    Files.deleteIfExists(partFile);
+                    throw new IOException("Discarding the partial download of " + url + ", the server rejected "
+                        + request);
+                }
+                throw RetryPolicy.statusError(response, url);
+            }
+            if (!append) {
+                // the server sent the whole file
+                digest.reset();
+            }
+            StandardOpenOption mode = append ? StandardOpenOption.APPEND : StandardOpenOption.TRUNCATE_EXISTING;
+            byte[] buffer = new byte[BUFFER_SIZE];
+            try (InputStream input = response.getEntity().getContent();
+                 OutputStream output = Files.newOutputStream(partFile, StandardOpenOption.CREATE,
+                     StandardOpenOption.WRITE, mode)) {
+                int read;
+                while ((read = input.read(buffer)) != -1) {
+                    output.write(buffer, 0, read);
+                    digest.update(buffer, 0, read);
+                }
+            }
+            return Files.size(partFile);
+        });
+    }
+
+    /**
+     * A failure that retrying would not fix.
+     */
+    private static class DownloadFailedException extends IOException {
+        DownloadFailedException(IOException cause) {
+            super(cause);
+        }
+    }
+
+    /**
+     * The server sent the whole file for a Range request.
+     */
+    private static class RangesNotSupportedException extends IOException {
+    }
+
+    /**
+     * A range of bytes of the file, from start to end, exclusive.  The position is the next byte to download.
+     */
+    private static class Segment {
+        private final long end;
+        private volatile long position;
+
+        Segment(long start, long end) {
+            this.position = start;
+            this.end = end;
+        }
+    }
+}
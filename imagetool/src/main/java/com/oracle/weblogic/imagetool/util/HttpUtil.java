@@ -4,10 +4,11 @@
 package com.oracle.weblogic.imagetool.util;
 
 import java.io.IOException;
-import java.io.InterruptedIOException;
 import java.io.StringReader;
-import java.net.UnknownHostException;
-import javax.net.ssl.SSLException;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 import javax.xml.XMLConstants;
 import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
@@ -16,26 +17,30 @@ import javax.xml.parsers.ParserConfigurationException;
 import com.oracle.weblogic.imagetool.logging.LoggingFacade;
 import com.oracle.weblogic.imagetool.logging.LoggingFactory;
 import org.apache.http.HttpEntity;
-import org.apache.http.HttpEntityEnclosingRequest;
 import org.apache.http.HttpHost;
-import org.apache.http.HttpRequest;
+import org.apache.http.HttpResponse;
 import org.apache.http.auth.AuthScope;
 import org.apache.http.auth.UsernamePasswordCredentials;
 import org.apache.http.client.ClientProtocolException;
 import org.apache.http.client.CookieStore;
 import org.apache.http.client.CredentialsProvider;
 import org.apache.http.client.HttpClient;
-import org.apache.http.client.HttpRequestRetryHandler;
 import org.apache.http.client.config.CookieSpecs;
 import org.apache.http.client.config.RequestConfig;
 import org.apache.http.client.fluent.Executor;
 import org.apache.http.client.fluent.Request;
-import org.apache.http.client.protocol.HttpClientContext;
+import org.apache.http.config.RegistryBuilder;
+import org.apache.http.conn.socket.ConnectionSocketFactory;
+import org.apache.http.conn.socket.PlainConnectionSocketFactory;
+import org.apache.http.conn.ssl.SSLConnectionSocketFactory;
 import org.apache.http.entity.mime.HttpMultipartMode;
 import org.apache.http.entity.mime.MultipartEntityBuilder;
 import org.apache.http.impl.client.BasicCookieStore;
 import org.apache.http.impl.client.BasicCredentialsProvider;
+import org.apache.http.impl.client.DefaultHttpRequestRetryHandler;
 import org.apache.http.impl.client.HttpClientBuilder;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.util.EntityUtils;
 import org.w3c.dom.Document;
 import org.xml.sax.InputSource;
 import org.xml.sax.SAXException;
@@ -44,29 +49,51 @@ public class HttpUtil {
 
     private static final LoggingFacade logger = LoggingFactory.getLogger(HttpUtil.class);
 
+    private static final int MAX_CONNECTIONS_PER_ROUTE = 20;
+    private static final int MAX_CONNECTIONS = 50;
+    private static final int IDLE_CONNECTION_SECONDS = 30;
+
+    private static final Map<String, HttpClient> clients = new ConcurrentHashMap<>();
+    private static final Map<String, Executor> executors = new ConcurrentHashMap<>();
+    private static final Map<String, CookieStore> cookieStores = new ConcurrentHashMap<>();
+
     private HttpUtil() {
         // utility class with static methods
     }
 
     private static DocumentBuilderFactory builderFactory = null;
+    private static final ThreadLocal<DocumentBuilder> builders = new ThreadLocal<>();
+
+    private static synchronized DocumentBuilder newDocumentBuilder() throws ParserConfigurationException {
+        if (builderFactory == null) {
+            DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+            // Prevent XXE attacks
+            factory.setXIncludeAware(false);
+            factory.setExpandEntityReferences(false);
+            factory.setFeature("http://apache.org/xml/features/disallow-doctype-decl", true);
+            factory.setAttribute(XMLConstants.ACCESS_EXTERNAL_DTD, "");
+            factory.setAttribute(XMLConstants.ACCESS_EXTERNAL_SCHEMA, "");
+            factory.setFeature(XMLConstants.FEATURE_SECURE_PROCESSING, true);
+            builderFactory = factory;
+        }
+        return builderFactory.newDocumentBuilder();
+    }
 
     /**
-     * Using cached DocumentBuilderFactor, create a new instance of a DocumentBuilder for parsing XML.
-     * @return a new instance of a DocumentBuilder
+     * Get the DocumentBuilder of this thread for parsing XML, which is reset each time it is returned.
+     * DocumentBuilder is not thread safe, the builder must not be passed to another thread.
+     * @return the DocumentBuilder of this thread
      * @throws ParserConfigurationException if the underlying JVM XML parser configuration throws an error
      */
     public static DocumentBuilder documentBuilder() throws ParserConfigurationException {
-        if (builderFactory == null) {
-            builderFactory = DocumentBuilderFactory.newInstance();
-            // Prevent XXE attacks
-            builderFactory.setXIncludeAware(false);
-            builderFactory.setExpandEntityReferences(false);
-            builderFactory.setFeature("http://apache.org/xml/features/disallow-doctype-decl", true);
-            builderFactory.setAttribute(XMLConstants.ACCESS_EXTERNAL_DTD, "");
-            builderFactory.setAttribute(XMLConstants.ACCESS_EXTERNAL_SCHEMA, "");
-            builderFactory.setFeature(XMLConstants.FEATURE_SECURE_PROCESSING, true);
+        DocumentBuilder builder = builders.get();
+        if (builder == null) {
+            builder = newDocumentBuilder();
+            builders.set(builder);
+        } else {
+            builder.reset();
         }
-        return builderFactory.newDocumentBuilder();
+        return builder;
     }
 
     /**
@@ -99,30 +126,49 @@ public class HttpUtil {
      */
     public static Document getXMLContent(String url, String username, String password) throws IOException {
         logger.entering(url);
-        String xmlString = getHttpExecutor(username,password).execute(Request.Get(url).connectTimeout(30000)
-                .socketTimeout(30000))
-                .returnContent().asString();
+        Executor httpExecutor = getHttpExecutor(username, password);
+        String xmlString = RetryPolicy.shared().execute(url, () -> httpExecutor
+            .execute(Request.Get(url).connectTimeout(30000).socketTimeout(30000))
+            .handleResponse(response -> contentAsString(response, url)));
         logger.exiting(xmlString);
         return parseXmlString(xmlString);
     }
 
     /**
-     * Create an HTTP client with cookie and credentials for Oracle eDelivery.
+     * Get the HTTP client with cookie and credentials for Oracle eDelivery.
+     * There is one client for each set of credentials, and it is reused for the rest of the run, so that ARU requests
+     * reuse its pooled connections and the session cookies from the first login.
      * @param userId Oracle credential
      * @param password Oracle credential
-     * @return new HTTP Client ready to access eDelivery
+     * @return HTTP Client ready to access eDelivery
      */
     public static HttpClient getOraClient(String userId, String password) {
+        return clients.computeIfAbsent(credentialKey(userId, password), k -> createOraClient(userId, password));
+    }
+
+    private static HttpClient createOraClient(String userId, String password) {
         logger.entering(userId);
         RequestConfig.Builder config = RequestConfig.custom();
         config.setCircularRedirectsAllowed(true);
         config.setCookieSpec(CookieSpecs.STANDARD);
 
-        CookieStore cookieStore = new BasicCookieStore();
+        CookieStore cookieStore = getCookieStore(userId, password);
+
+        // the connection manager replaces the one from useSystemProperties, so use the system SSL settings here
+        PoolingHttpClientConnectionManager connectionManager = new PoolingHttpClientConnectionManager(
+            RegistryBuilder.<ConnectionSocketFactory>create()
+                .register("http", PlainConnectionSocketFactory.getSocketFactory())
+                .register("https", SSLConnectionSocketFactory.getSystemSocketFactory())
+                .build());
+        connectionManager.setDefaultMaxPerRoute(MAX_CONNECTIONS_PER_ROUTE);
+        connectionManager.setMaxTotal(MAX_CONNECTIONS);
 
         HttpClientBuilder builder = HttpClientBuilder.create()
+            .setConnectionManager(connectionManager)
+            .evictIdleConnections(IDLE_CONNECTION_SECONDS, TimeUnit.SECONDS)
             .setDefaultRequestConfig(config.build())
-            .setRetryHandler(retryHandler())
+            // a stale pooled connection is retried at once, other failures are retried with the RetryPolicy
+            .setRetryHandler(new DefaultHttpRequestRetryHandler(1, false))
             .setUserAgent("Wget/1.10")
             .setDefaultCookieStore(cookieStore).useSystemProperties();
 
@@ -138,15 +184,30 @@ public class HttpUtil {
         return result;
     }
 
+    /**
+     * Get the cookie store of the HTTP client for the credentials, with the session cookies of Oracle login.
+     * @param userId Oracle credential
+     * @param password Oracle credential
+     * @return the cookie store shared by all requests with the credentials
+     */
+    public static CookieStore getCookieStore(String userId, String password) {
+        return cookieStores.computeIfAbsent(credentialKey(userId, password), k -> new BasicCookieStore());
+    }
+
     /**
      * Return a Executor for http access.
+     * The executor is shared by all callers with the same credentials, and must not be modified.
      * @param supportUserName  oracle support username
      * @param supportPassword oracle support password
      * @return Executor
      */
 
     public static Executor getHttpExecutor(String supportUserName, String supportPassword) {
+        return executors.computeIfAbsent(credentialKey(supportUserName, supportPassword),
+            k -> createHttpExecutor(supportUserName, supportPassword));
+    }
 
+    private static Executor createHttpExecutor(String supportUserName, String supportPassword) {
         String proxyUser = System.getProperty("https.proxyUser");
         String proxyPassword = System.getProperty("https.proxyPassword");
         String proxyHost = System.getProperty("https.proxyHost");
@@ -167,42 +228,22 @@ public class HttpUtil {
         return executor;
     }
 
-    private static HttpRequestRetryHandler retryHandler() {
-        return (exception, executionCount, context) -> {
+    /**
+     * A key for a set of credentials, so that the password is not kept as a map key.
+     */
+    private static String credentialKey(String userId, String password) {
+        return Utils.toHex(Utils.sha256Digest().digest((userId + "\n" + password).getBytes(StandardCharsets.UTF_8)));
+    }
 
-            if (executionCount > 10) {
-                // Do not retry if over max retries
-                return false;
-            }
-            if (exception instanceof InterruptedIOException) {
-                // Timeout
-                return false;
-            }
-            if (exception instanceof UnknownHostException) {
-                // Unknown host
-                return false;
-            }
-            if (exception instanceof SSLException) {
-                // SSL handshake failed
-                return false;
-            }
-            HttpClientContext clientContext = HttpClientContext.adapt(context);
-            HttpRequest request = clientContext.getRequest();
-            // return true if it is okay to retry this request type
-            boolean retriable = !(request instanceof HttpEntityEnclosingRequest);
-            if (retriable) {
-                try {
-                    long waitTime = executionCount < 5 ? 2 : 10;
-                    logger.warning("Connect failed, retrying in {0} seconds, attempts={1} ", waitTime, executionCount);
-                    Thread.sleep(waitTime * 1000);
-                } catch (InterruptedException e) {
-                    Thread.currentThread().interrupt();
-                }
-                return true;
-            } else {
-                return false;
-            }
-        };
+    /**
+     * The body of a successful response, or an error with the Retry-After time of the response.
+     */
+    private static String contentAsString(HttpResponse response, String url) throws IOException {
+        if (response.getStatusLine().getStatusCode() >= 300) {
+            EntityUtils.consume(response.getEntity());
+            throw RetryPolicy.statusError(response, url);
+        }
+        return response.getEntity() == null ? null : EntityUtils.toString(response.getEntity(), StandardCharsets.UTF_8);
     }
 
     /**
@@ -224,50 +265,24 @@ public class HttpUtil {
         config.setCircularRedirectsAllowed(true);
         config.setRedirectsEnabled(true);
 
-        CookieStore cookieStore = new BasicCookieStore();
-
+        // Has to do search first, otherwise results in 302
+        // MUST use the same httpExecutor to maintain session, the session cookies are kept by the shared client
         Executor httpExecutor = HttpUtil.getHttpExecutor(username, password);
-        httpExecutor.use(cookieStore);
 
+        String xmlString = RetryPolicy.shared().execute(url, () -> {
+            httpExecutor
+                .execute(Request.Get(Constants.REL_URL).connectTimeout(30000).socketTimeout(30000))
+                .handleResponse(response -> contentAsString(response, Constants.REL_URL));
 
-        // Has to do search first, otherwise results in 302
-        // MUST use the same httpExecutor to maintain session
-
-
-        boolean complete = false;
-        int count = 0;
-        String xmlString = null;
-
-        while (!complete) {
-            try {
-                httpExecutor
-                    .execute(Request.Get(Constants.REL_URL).connectTimeout(30000).socketTimeout(30000))
-                    .returnContent().asString();
-
-                HttpEntity entity = MultipartEntityBuilder.create().setMode(HttpMultipartMode.BROWSER_COMPATIBLE)
-                    .addTextBody("request_xml", payload)
-                    .build();
-
-                xmlString =
-                    httpExecutor.execute(Request.Post(url).connectTimeout(30000)
-                        .socketTimeout(30000)
-                        .body(entity))
-                        .returnContent().asString();
-                complete = true;
-            } catch (IOException ioe) {
-                if (++count > 10) {
-                    complete = true;
-                } else {
-                    logger.warning("Network connection failed, retrying in 10 seconds, attempts={0} ", count);
-                    try {
-                        Thread.sleep(10000);
-                    } catch (InterruptedException e) {
-                        Thread.currentThread().interrupt();
-                    }
-                }
+            HttpEntity entity = MultipartEntityBuilder.create().setMode(HttpMultipartMode.BROWSER_COMPATIBLE)
+                .addTextBody("request_xml", payload)
+                .build();
 
-            }
-        }
+            return httpExecutor.execute(Request.Post(url).connectTimeout(30000)
+                .socketTimeout(30000)
+                .body(entity))
+                .handleResponse(response -> contentAsString(response, url));
+        });
         logger.exiting();
         return parseXmlString(xmlString);
 
@@ -0,0 +1,95 @@
+// Copyright (c) 2021, Oracle and/or its affiliates.
+// Licensed under the Universal Permissive License v 1.0 as shown at https://oss.oracle.com/licenses/upl.
+
+package com.oracle.weblogic.imagetool.util;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Run a task for each item of a list, with a limited number of threads.
+ * Every item is processed even when some tasks fail, and the failures are returned together, so that the caller
+ * can report all of them at once.
+ */
+public class ParallelTasks {
+
+    private ParallelTasks() {
+        // utility class with static methods
+    }
+
+    @FunctionalInterface
+    public interface Task<T> {
+        void run(T item) throws Exception;
+    }
+
+    /**
+     * Run a task for each item.  Items are started in the order provided.
+     *
+     * @param items       the items to process
+     * @param parallelism the maximum number of tasks to run at the same time, 1 runs the tasks in this thread
+     * @param name        prefix for the names of the threads
+     * @param task        the task to run for each item
+     * @return the items that failed, and the exception for each one, in the order of the items
+     * @throws InterruptedException if this thread was interrupted while waiting for the tasks
+     */
+    public static <T> Map<T, Exception> forEach(Collection<T> items, int parallelism, String name, Task<T> task)
+        throws InterruptedException {
+
+        Map<T, Exception> failures = new LinkedHashMap<>();
+        if (parallelism <= 1 || items.size() <= 1) {
+            for (T item : items) {
+                try {
+                    task.run(item);
+                } catch (Exception e) {
+                    failures.put(item, e);
+                }
+            }
+            return failures;
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(parallelism, items.size()),
+            threadFactory(name));
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (T item : items) {
+                futures.add(executor.submit(() -> {
+                    task.run(item);
+                    return null;
+                }));
+            }
+            int i = 0;
+            for (T item : items) {
+                try {
+                    futures.get(i++).get();
+                } catch (ExecutionException e) {
+                    Throwable cause = e.getCause();
+                    if (cause instanceof Error) {
+                        throw (Error) cause;
+                    }
+                    failures.put(item, (Exception) cause);
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        return failures;
+    }
+
+    private static ThreadFactory threadFactory(String name) {
+        AtomicInteger count = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, name + "-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
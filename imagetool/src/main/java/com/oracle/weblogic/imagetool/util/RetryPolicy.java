@@ -0,0 +1,270 @@
+// Copyright (c) 2021, Oracle and/or its affiliates.
+// Licensed under the Universal Permissive License v 1.0 as shown at https://oss.oracle.com/licenses/upl.
+
+package com.oracle.weblogic.imagetool.util;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.SocketTimeoutException;
+import java.net.UnknownHostException;
+import java.time.Duration;
+import java.util.Date;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.net.ssl.SSLException;
+
+import com.oracle.weblogic.imagetool.logging.LoggingFacade;
+import com.oracle.weblogic.imagetool.logging.LoggingFactory;
+import org.apache.http.Header;
+import org.apache.http.HttpHeaders;
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpStatus;
+import org.apache.http.client.HttpResponseException;
+import org.apache.http.client.utils.DateUtils;
+import org.apache.http.conn.ConnectTimeoutException;
+
+/**
+ * When and how long to wait before a failed request to Oracle is sent again.
+ * The wait doubles with each attempt, up to a maximum, and a random part of the wait keeps builds that failed at the
+ * same time from retrying at the same time.  A Retry-After header from the server is used instead when it is longer.
+ * All requests in a run share a retry budget, and after several failures in a row the circuit opens: requests fail
+ * immediately for a while instead of waiting for a server that is down.
+ */
+public class RetryPolicy {
+
+    private static final LoggingFacade logger = LoggingFactory.getLogger(RetryPolicy.class);
+
+    public static final String BUDGET = "WLSIMG_RETRY_BUDGET";
+    private static final int DEFAULT_BUDGET = 30;
+    private static final int MAX_ATTEMPTS = 6;
+    private static final long BASE_DELAY = TimeUnit.SECONDS.toMillis(2);
+    private static final long MAX_DELAY = TimeUnit.SECONDS.toMillis(60);
+    private static final long MAX_RETRY_AFTER = TimeUnit.MINUTES.toMillis(5);
+    private static final int BREAKER_THRESHOLD = 8;
+    private static final long BREAKER_COOLDOWN = TimeUnit.SECONDS.toMillis(60);
+
+    private static RetryPolicy shared;
+
+    private final int maxAttempts;
+    private final long baseDelay;
+    private final long maxDelay;
+    private final AtomicInteger budget;
+    private final int budgetSize;
+    private final int breakerThreshold;
+    private final long breakerCooldown;
+
+    private final AtomicInteger consecutiveFailures = new AtomicInteger();
+    private volatile long openUntil = 0;
+
+    /**
+     * Create a retry policy with its own budget and circuit breaker.
+     * @param maxAttempts      number of attempts for one request, at least 1
+     * @param baseDelay        wait in milliseconds before the first retry, doubled for each retry after that
+     * @param maxDelay         maximum wait in milliseconds between attempts
+     * @param budget           number of retries for all requests of the run
+     * @param breakerThreshold number of failures in a row that open the circuit
+     * @param breakerCooldown  time in milliseconds that requests fail immediately after the circuit opens
+     */
+    public RetryPolicy(int maxAttempts, long baseDelay, long maxDelay, int budget, int breakerThreshold,
+                       long breakerCooldown) {
+        this.maxAttempts = Math.max(1, maxAttempts);
+        this.baseDelay = Math.max(0, baseDelay);
+        this.maxDelay = Math.max(this.baseDelay, maxDelay);
+        this.budgetSize = budget;
+        this.budget = new AtomicInteger(budget);
+        this.breakerThreshold = breakerThreshold;
+        this.breakerCooldown = breakerCooldown;
+    }
+
+    /**
+     * The retry policy for all requests to Oracle in this run.
+     * The retry budget is read from the environment variable WLSIMG_RETRY_BUDGET.
+     * @return the shared retry policy
+     */
+    public static synchronized RetryPolicy shared() {
+        if (shared == null) {
+            String value = Utils.getEnvironmentProperty(BUDGET, String.valueOf(DEFAULT_BUDGET));
+            int budget = DEFAULT_BUDGET;
+            try {
+                budget = Integer.parseInt(value.trim());
+            } catch (NumberFormatException e) {
+                logger.warning("IMG-0143", BUDGET, value);
+            }
+            shared = new RetryPolicy(MAX_ATTEMPTS, BASE_DELAY, MAX_DELAY, budget, BREAKER_THRESHOLD,
+                BREAKER_COOLDOWN);
+        }
+        return shared;
+    }
+
+    @FunctionalInterface
+    public interface Call<T> {
+        T call() throws IOException;
+    }
+
+    /**
+     * Run the call, and run it again after a wait when it fails with an error that a retry may fix.
+     * @param description what the call requests, like the URL, for the log
+     * @param call        the request
+     * @return the result of the call
+     * @throws IOException the error of the last attempt, or when the circuit is open
+     */
+    public <T> T execute(String description, Call<T> call) throws IOException {
+        long start = System.currentTimeMillis();
+        for (int attempt = 1; ; attempt++) {
+            checkCircuit(description);
+            try {
+                T result = call.call();
+                succeeded();
+                if (attempt > 1) {
+                    logger.info("IMG-0146", description, attempt,
+                        Utils.formatDuration(Duration.ofMillis(System.currentTimeMillis() - start)));
+                }
+                return result;
+            } catch (IOException e) {
+                if (!retry(description, attempt, e)) {
+                    throw e;
+                }
+            }
+        }
+    }
+
+    /**
+     * Fail immediately while the circuit is open.
+     * @param description what is requested, for the error message
+     * @throws IOException if the circuit is open
+     */
+    public void checkCircuit(String description) throws IOException {
+        long until = openUntil;
+        if (until > System.currentTimeMillis()) {
+            throw new IOException(Utils.getMessage("IMG-0147", description, consecutiveFailures.get(),
+                new Date(until)));
+        }
+    }
+
+    /**
+     * Record a successful request, which closes the circuit.
+     */
+    public void succeeded() {
+        consecutiveFailures.set(0);
+        openUntil = 0;
+    }
+
+    /**
+     * Record a failed attempt, and wait before the next attempt if the request should be sent again.
+     * @param description what was requested, like the URL, for the log
+     * @param attempt     the number of the attempt that failed, starting at 1
+     * @param error       the reason the attempt failed
+     * @return true to send the request again, false to give up
+     */
+    public boolean retry(String description, int attempt, Exception error) {
+        if (!isRetryable(error)) {
+            return false;
+        }
+        int failures = consecutiveFailures.incrementAndGet();
+        if (failures >= breakerThreshold) {
+            if (openUntil <= System.currentTimeMillis()) {
+                openUntil = System.currentTimeMillis() + breakerCooldown;
+                logger.warning("IMG-0148", failures, Utils.formatDuration(Duration.ofMillis(breakerCooldown)));
+            }
+            return false;
+        }
+        if (attempt >= maxAttempts) {
+            return false;
+        }
+        if (budget.getAndUpdate(value -> Math.max(0, value - 1)) <= 0) {
+            logger.warning("IMG-0149", description, budgetSize, BUDGET);
+            return false;
+        }
+
+        long delay = delay(attempt, error);
+        logger.warning("IMG-0140", description, attempt, maxAttempts,
+            Utils.formatDuration(Duration.ofMillis(delay)), error.getMessage());
+        try {
+            Thread.sleep(delay);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * The wait before the next attempt: half of the exponential delay, plus a random part of the other half,
+     * or the Retry-After time of the server plus a random part of the base delay.
+     */
+    long delay(int attempt, Exception error) {
+        long exponential = Math.min(maxDelay, baseDelay << Math.min(attempt - 1, 20));
+        long delay = exponential / 2 + random(exponential / 2);
+        if (error instanceof RetryAfterException) {
+            long retryAfter = Math.min(MAX_RETRY_AFTER, ((RetryAfterException) error).retryAfter());
+            delay = Math.max(delay, retryAfter + random(baseDelay));
+        }
+        return delay;
+    }
+
+    private static long random(long bound) {
+        return bound <= 0 ? 0 : ThreadLocalRandom.current().nextLong(bound + 1);
+    }
+
+    /**
+     * Errors that another attempt may not get: unknown hosts, TLS failures, an interrupted thread, and HTTP errors
+     * other than timeouts, throttling, and server errors.
+     * @param error the error of a request
+     * @return true if the request may succeed when it is sent again
+     */
+    public static boolean isRetryable(Exception error) {
+        if (error instanceof HttpResponseException) {
+            int status = ((HttpResponseException) error).getStatusCode();
+            return status == HttpStatus.SC_REQUEST_TIMEOUT || status == 429 || status >= 500;
+        }
+        if (error instanceof SocketTimeoutException || error instanceof ConnectTimeoutException) {
+            return true;
+        }
+        return error instanceof IOException
+            && !(error instanceof InterruptedIOException)
+            && !(error instanceof UnknownHostException)
+            && !(error instanceof SSLException);
+    }
+
+    /**
+     * The error for an HTTP response with an unexpected status, with the Retry-After time of the response if any.
+     * @param response the HTTP response
+     * @param message  error message, like the URL
+     * @return the error to throw
+     */
+    public static HttpResponseException statusError(HttpResponse response, String message) {
+        int status = response.getStatusLine().getStatusCode();
+        String reason = message + ": " + response.getStatusLine().getReasonPhrase();
+        Header header = response.getFirstHeader(HttpHeaders.RETRY_AFTER);
+        if (header != null) {
+            String value = header.getValue().trim();
+            try {
+                return new RetryAfterException(status, reason, TimeUnit.SECONDS.toMillis(Long.parseLong(value)));
+            } catch (NumberFormatException e) {
+                Date date = DateUtils.parseDate(value);
+                if (date != null) {
+                    return new RetryAfterException(status, reason,
+                        Math.max(0, date.getTime() - System.currentTimeMillis()));
+                }
+            }
+        }
+        return new HttpResponseException(status, reason);
+    }
+
+    /**
+     * An HTTP error with the time that the server asked the client to wait before the next request.
+     */
+    public static class RetryAfterException extends HttpResponseException {
+        private final long retryAfter;
+
+        RetryAfterException(int status, String reason, long retryAfter) {
+            super(status, reason);
+            this.retryAfter = retryAfter;
+        }
+
+        long retryAfter() {
+            return retryAfter;
+        }
+    }
+}
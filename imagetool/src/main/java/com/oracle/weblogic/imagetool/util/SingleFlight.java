@@ -0,0 +1,81 @@
+// Copyright (c) 2021, Oracle and/or its affiliates.
+// Licensed under the Universal Permissive License v 1.0 as shown at https://oss.oracle.com/licenses/upl.
+
+package com.oracle.weblogic.imagetool.util;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Coalesce concurrent calls for the same key into one call.  While a call for a key is in flight, other threads that
+ * ask for the same key wait for that call and share its result, or its failure, instead of making their own call.
+ * Results are not kept after the call completes, the next call for the key runs again.
+ */
+public class SingleFlight<K, V> {
+
+    private final ConcurrentMap<K, CompletableFuture<V>> calls = new ConcurrentHashMap<>();
+
+    @FunctionalInterface
+    public interface Call<V> {
+        V call() throws IOException;
+    }
+
+    /**
+     * Run the call for the key, or wait for the call for the same key that another thread is running.
+     *
+     * @param key  identifies calls with the same result, like a URL
+     * @param call the call to run if no call for the key is in flight
+     * @return the result of the call
+     * @throws IOException if the call failed, in this thread or in the thread that ran it
+     */
+    public V execute(K key, Call<V> call) throws IOException {
+        CompletableFuture<V> future = new CompletableFuture<>();
+        CompletableFuture<V> inFlight = calls.putIfAbsent(key, future);
+        if (inFlight != null) {
+            return await(inFlight);
+        }
+
+        try {
+            V result = call.call();
+            future.complete(result);
+            return result;
+        } catch (IOException | RuntimeException | Error e) {
+            future.completeExceptionally(e);
+            throw e;
+        } finally {
+            calls.remove(key, future);
+        }
+    }
+
+    private static <V> V await(CompletableFuture<V> inFlight) throws IOException {
+        try {
+            return inFlight.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            InterruptedIOException interrupted = new InterruptedIOException("Interrupted while waiting for a request");
+            interrupted.initCause(e);
+            throw interrupted;
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            // a new exception, so that each thread has a stack trace of its own
+            throw new IOException(cause.getMessage(), cause);
+        }
+    }
+
+    /**
+     * The number of calls in flight.
+     * @return number of keys with a call in flight
+     */
+    int inFlight() {
+        return calls.size();
+    }
+}
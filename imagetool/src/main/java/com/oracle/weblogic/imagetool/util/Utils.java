@@ -12,13 +12,19 @@ import java.io.IOException;
 import java.io.InputStreamReader;
 import java.io.StringWriter;
 import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.file.DirectoryStream;
 import java.nio.file.Files;
 import java.nio.file.LinkOption;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.text.MessageFormat;
+import java.time.Duration;
 import java.util.Arrays;
 import java.util.Base64;
 import java.util.Collection;
@@ -26,6 +32,7 @@ import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Locale;
 import java.util.Objects;
 import java.util.Properties;
 import java.util.ResourceBundle;
@@ -49,6 +56,8 @@ public class Utils {
 
     @NonNls
     private static final ResourceBundle bundle = ResourceBundle.getBundle("ImageTool");
+    private static final Pattern SIZE_PATTERN = Pattern.compile("(\\d+)\\s*([kmgt]?)b?");
+    private static final Pattern DURATION_PATTERN = Pattern.compile("(\\d+)\\s*([dhms])");
 
     private Utils() {
         // hide constructor, usage of this class is only static utilities
@@ -732,4 +741,132 @@ public class Utils {
     public static <T> Set<T> toSet(T... array) {
         return toSet(Arrays.asList(array));
     }
+
+    /**
+     * Create a new SHA-256 message digest.
+     * @return a new MessageDigest for SHA-256
+     */
+    public static MessageDigest sha256Digest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            // every Java platform is required to support SHA-256
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Calculate the SHA-256 digest of a file.
+     * @param file the file to read
+     * @return the digest as a lowercase hex string
+     * @throws IOException if the file cannot be read
+     */
+    public static String sha256(Path file) throws IOException {
+        MessageDigest digest = sha256Digest();
+        updateDigest(digest, file);
+        return toHex(digest.digest());
+    }
+
+    /**
+     * Add the contents of a file to a message digest.
+     * @param digest the digest to update
+     * @param file   the file to read
+     * @throws IOException if the file cannot be read
+     */
+    public static void updateDigest(MessageDigest digest, Path file) throws IOException {
+        // a large direct buffer avoids copying multi-gigabyte installers through the Java heap
+        ByteBuffer buffer = ByteBuffer.allocateDirect(1024 * 1024);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            while (channel.read(buffer) != -1) {
+                buffer.flip();
+                digest.update(buffer);
+                buffer.clear();
+            }
+        }
+    }
+
+    /**
+     * Convert an array of bytes to a lowercase hex string.
+     * @param bytes the bytes to convert
+     * @return hex string, two characters per byte
+     */
+    public static String toHex(byte[] bytes) {
+        StringBuilder result = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            result.append(Character.forDigit((b >> 4) & 0xF, 16));
+            result.append(Character.forDigit(b & 0xF, 16));
+        }
+        return result.toString();
+    }
+
+    /**
+     * Parse a size like 500m or 20g.
+     * The suffixes k, m, g, and t are binary multiples (1024) of bytes.  A value without a suffix is in bytes.
+     * @param value the size to parse
+     * @return the size in bytes
+     * @throws IllegalArgumentException if the value is not a valid size
+     */
+    public static long parseSize(String value) {
+        Matcher matcher = SIZE_PATTERN.matcher(value == null ? "" : value.trim().toLowerCase());
+        if (!matcher.matches()) {
+            throw new IllegalArgumentException(getMessage("IMG-0108", value));
+        }
+        long size = Long.parseLong(matcher.group(1));
+        String unit = matcher.group(2);
+        if (!isEmptyString(unit)) {
+            size = size << (10 * ("kmgt".indexOf(unit.charAt(0)) + 1));
+        }
+        return size;
+    }
+
+    /**
+     * Format a size in bytes for display, like 1.5G.
+     * @param size the size in bytes
+     * @return the size with a binary suffix
+     */
+    public static String formatSize(long size) {
+        if (size < 1024) {
+            return size + "B";
+        }
+        int unit = (63 - Long.numberOfLeadingZeros(size)) / 10;
+        return String.format(Locale.ROOT, "%.1f%c", (double) size / (1L << (10 * unit)), "KMGTPE".charAt(unit - 1));
+    }
+
+    /**
+     * Format a duration for display, like 2.5s or 1m30s.
+     * @param duration the duration
+     * @return the duration in minutes and seconds, or in seconds with tenths below a minute
+     */
+    public static String formatDuration(Duration duration) {
+        long millis = duration.toMillis();
+        if (millis < 60000) {
+            return String.format(Locale.ROOT, "%.1fs", millis / 1000.0);
+        }
+        long seconds = millis / 1000;
+        return (seconds / 60) + "m" + (seconds % 60) + "s";
+    }
+
+    /**
+     * Parse a duration like 30d, 12h, or 45m.
+     * @param value the duration to parse, a number followed by d (days), h (hours), m (minutes), or s (seconds)
+     * @return the duration
+     * @throws IllegalArgumentException if the value is not a valid duration
+     */
+    public static Duration parseDuration(String value) {
+        Matcher matcher = DURATION_PATTERN.matcher(value == null ? "" : value.trim().toLowerCase());
+        if (!matcher.matches()) {
+            throw new IllegalArgumentException(getMessage("IMG-0109", value));
+        }
+        long amount = Long.parseLong(matcher.group(1));
+        switch (matcher.group(2)) {
+            case "d":
+                return Duration.ofDays(amount);
+            case "h":
+                return Duration.ofHours(amount);
+            case "m":
+                return Duration.ofMinutes(amount);
+            default:
+                return Duration.ofSeconds(amount);
+        }
+    }
 }
@@ -5,6 +5,8 @@ package com.oracle.weblogic.imagetool.util;
 
 import java.io.StringWriter;
 import java.io.Writer;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import javax.xml.XMLConstants;
 import javax.xml.transform.OutputKeys;
 import javax.xml.transform.Transformer;
@@ -14,6 +16,7 @@ import javax.xml.transform.dom.DOMSource;
 import javax.xml.transform.stream.StreamResult;
 import javax.xml.xpath.XPath;
 import javax.xml.xpath.XPathConstants;
+import javax.xml.xpath.XPathExpression;
 import javax.xml.xpath.XPathExpressionException;
 import javax.xml.xpath.XPathFactory;
 
@@ -27,17 +30,37 @@ public class XPathUtil {
 
     private static final LoggingFacade logger = LoggingFactory.getLogger(XPathUtil.class);
 
-    private static XPathFactory factory = null;
+    private static final int MAX_EXPRESSIONS = 256;
+
+    // XPath and XPathExpression are not thread safe, so each thread compiles and keeps its own expressions
+    private static final ThreadLocal<XPath> xpath =
+        ThreadLocal.withInitial(() -> XPathFactory.newInstance().newXPath());
+    private static final ThreadLocal<Map<String, XPathExpression>> expressions =
+        ThreadLocal.withInitial(() -> new LinkedHashMap<String, XPathExpression>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, XPathExpression> eldest) {
+                return size() > MAX_EXPRESSIONS;
+            }
+        });
 
     private XPathUtil() {
         // static utility class.
     }
 
-    private static synchronized XPathFactory factory() {
-        if (factory == null) {
-            factory = XPathFactory.newInstance();
+    /**
+     * Get the compiled expression, compiling it only the first time it is used by this thread.
+     * @param expression xpath expression
+     * @return the compiled expression, which must only be used by this thread
+     * @throws XPathExpressionException if the expression is not valid
+     */
+    static XPathExpression compile(String expression) throws XPathExpressionException {
+        Map<String, XPathExpression> compiled = expressions.get();
+        XPathExpression result = compiled.get(expression);
+        if (result == null) {
+            result = xpath.get().compile(expression);
+            compiled.put(expression, result);
         }
-        return factory;
+        return result;
     }
 
     /**
@@ -49,8 +72,7 @@ public class XPathUtil {
      * @throws XPathExpressionException when xpath failed
      */
     public static NodeList nodelist(Node node, String expression) throws XPathExpressionException {
-        XPath xpath = factory().newXPath();
-        return (NodeList) xpath.evaluate(expression, node, XPathConstants.NODESET);
+        return (NodeList) compile(expression).evaluate(node, XPathConstants.NODESET);
     }
 
     /**
@@ -62,8 +84,7 @@ public class XPathUtil {
      * @throws XPathExpressionException when xpath failed
      */
     public static String string(Document doc, String expression) throws XPathExpressionException {
-        XPath xpath = factory().newXPath();
-        return (String) xpath.evaluate(expression, doc, XPathConstants.STRING);
+        return (String) compile(expression).evaluate(doc, XPathConstants.STRING);
     }
 
     /**
@@ -75,8 +96,7 @@ public class XPathUtil {
      * @throws XPathExpressionException when xpath failed
      */
     public static String string(Node doc, String expression) throws XPathExpressionException {
-        XPath xpath = factory().newXPath();
-        return (String) xpath.evaluate(expression, doc, XPathConstants.STRING);
+        return (String) compile(expression).evaluate(doc, XPathConstants.STRING);
     }
 
     /**
@@ -0,0 +1,130 @@
+// Copyright (c) 2021, Oracle and/or its affiliates.
+// Licensed under the Universal Permissive License v 1.0 as shown at https://oss.oracle.com/licenses/upl.
+
+package com.oracle.weblogic.imagetool.aru;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import com.oracle.weblogic.imagetool.util.RetryPolicy;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.apache.http.client.fluent.Executor;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@Tag("unit")
+class AruMetadataCacheTest {
+
+    private final List<String> requests = Collections.synchronizedList(new ArrayList<>());
+    private HttpServer server;
+    private String url;
+    private String release = "600000000073715";
+
+    @BeforeEach
+    void startServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/releases", this::serve);
+        server.start();
+        url = "http://127.0.0.1:" + server.getAddress().getPort() + "/releases";
+    }
+
+    @AfterEach
+    void stopServer() {
+        server.stop(0);
+    }
+
+    private void serve(HttpExchange exchange) throws IOException {
+        String etag = "\"" + release + "\"";
+        String ifNoneMatch = exchange.getRequestHeaders().getFirst("If-None-Match");
+        requests.add(String.valueOf(ifNoneMatch));
+        exchange.getResponseHeaders().add("ETag", etag);
+        if (etag.equals(ifNoneMatch)) {
+            exchange.sendResponseHeaders(304, -1);
+            exchange.close();
+            return;
+        }
+        byte[] body = ("<results><release id=\"" + release + "\">Oracle WebLogic Server 12.2.1.4.0</release></results>")
+            .getBytes(StandardCharsets.UTF_8);
+        exchange.sendResponseHeaders(200, body.length);
+        try (OutputStream output = exchange.getResponseBody()) {
+            output.write(body);
+        }
+    }
+
+    private static String releaseId(AruResponse response) {
+        return response.releases().get(0).id();
+    }
+
+    @Test
+    void useSavedResponse(@TempDir Path dir) throws Exception {
+        AruMetadataCache cache = new AruMetadataCache(dir, null);
+        Executor executor = Executor.newInstance();
+        assertEquals(release, releaseId(cache.get(AruMetadataCache.Endpoint.RELEASES, url, "user", executor)));
+        assertEquals(release, releaseId(cache.get(AruMetadataCache.Endpoint.RELEASES, url, "user", executor)));
+        // another process, with the same cache directory
+        AruMetadataCache other = new AruMetadataCache(dir, null);
+        assertEquals(release, releaseId(other.get(AruMetadataCache.Endpoint.RELEASES, url, "user", executor)));
+        assertEquals(Collections.singletonList("null"), requests);
+
+        // another user may have different entitlements
+        new AruMetadataCache(dir, null).get(AruMetadataCache.Endpoint.RELEASES, url, "other", executor);
+        assertEquals(2, requests.size());
+    }
+
+    @Test
+    void revalidateExpiredResponse(@TempDir Path dir) throws Exception {
+        AruMetadataCache cache = new AruMetadataCache(dir, "releases=0s");
+        Executor executor = Executor.newInstance();
+        cache.get(AruMetadataCache.Endpoint.RELEASES, url, "user", executor);
+        assertEquals(release, releaseId(cache.get(AruMetadataCache.Endpoint.RELEASES, url, "user", executor)));
+        assertEquals(2, requests.size());
+        assertEquals("\"" + release + "\"", requests.get(1));
+
+        release = "600000000099999";
+        assertEquals(release, releaseId(cache.get(AruMetadataCache.Endpoint.RELEASES, url, "user", executor)));
+    }
+
+    @Test
+    void useExpiredResponseDuringOutage(@TempDir Path dir) throws Exception {
+        AruMetadataCache cache = new AruMetadataCache(dir, "0s").retryPolicy(new RetryPolicy(1, 0, 0, 0, 100, 0));
+        Executor executor = Executor.newInstance();
+        cache.get(AruMetadataCache.Endpoint.SEARCH, url, "user", executor);
+        server.stop(0);
+        assertEquals(release, releaseId(cache.get(AruMetadataCache.Endpoint.SEARCH, url, "user", executor)));
+
+        // unless the saved response is explicitly ignored
+        cache.refresh(true);
+        assertThrows(IOException.class, () -> cache.get(AruMetadataCache.Endpoint.SEARCH, url, "user", executor));
+    }
+
+    @Test
+    void rememberPatchesWithoutConflicts(@TempDir Path dir) {
+        AruMetadataCache cache = new AruMetadataCache(dir, null);
+        assertFalse(cache.hasNoConflicts("user", "installed=;candidates=600000000073715:31544340"));
+        cache.saveNoConflicts("user", "installed=;candidates=600000000073715:31544340");
+        assertTrue(new AruMetadataCache(dir, null)
+            .hasNoConflicts("user", "installed=;candidates=600000000073715:31544340"));
+        assertFalse(cache.hasNoConflicts("other", "installed=;candidates=600000000073715:31544340"));
+        assertFalse(cache.hasNoConflicts("user", "installed=;candidates=600000000073715:31535411"));
+
+        assertFalse(new AruMetadataCache(dir, "conflicts=0s")
+            .hasNoConflicts("user", "installed=;candidates=600000000073715:31544340"));
+        cache.refresh(true);
+        assertFalse(cache.hasNoConflicts("user", "installed=;candidates=600000000073715:31544340"));
+    }
+}
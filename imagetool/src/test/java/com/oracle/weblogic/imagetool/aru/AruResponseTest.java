@@ -0,0 +1,64 @@
+// Copyright (c) 2021, Oracle and/or its affiliates.
+// Licensed under the Universal Permissive License v 1.0 as shown at https://oss.oracle.com/licenses/upl.
+
+package com.oracle.weblogic.imagetool.aru;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@Tag("unit")
+class AruResponseTest {
+
+    private AruResponse getResource(String path) throws IOException {
+        try (InputStream input = this.getClass().getResourceAsStream(path)) {
+            return AruResponse.parse(input);
+        }
+    }
+
+    @Test
+    void linuxPatches() throws IOException {
+        AruResponse response = getResource("/recommended-patches.xml");
+        assertFalse(response.hasError());
+        AruPatch psu = response.patches().get(0);
+        assertEquals("32755791", psu.patchId());
+        assertEquals("12.2.1.3.0", psu.version());
+        assertEquals("600000000073715", psu.release());
+        assertEquals("Oracle WebLogic Server 12.2.1.3.0", psu.releaseName());
+        assertEquals("WLS STACK PATCH BUNDLE 12.2.1.3.200624", psu.description());
+        assertEquals("Oracle WebLogic Server 12.2.1.3.200624", psu.psuBundle());
+        assertEquals("1111", psu.sha256());
+        assertEquals(417431395, psu.size());
+        assertEquals("p1234_122130_Generic.zip", psu.fileName());
+        assertTrue(psu.isOpenAccess());
+        assertTrue(psu.isRecommended());
+
+        // only the Linux x86-64 patch of the patches for each platform
+        AruPatch patch = response.patches().get(1);
+        assertEquals("31544340", patch.patchId());
+        assertEquals("77307c0814a2c56619addd710829fd46938887b2040ebd87323954f04bc9a936", patch.sha256());
+        assertEquals(26463960, patch.size());
+        assertEquals("", patch.psuBundle());
+    }
+
+    @Test
+    void releasesAndErrors() throws IOException {
+        AruResponse releases = getResource("/releases.xml");
+        AruResponse.Release release = releases.releases().get(0);
+        assertEquals("100", release.id());
+        assertEquals("1.8.0.181", release.name());
+        assertEquals("Oracle JDK 1.8.0_181", release.description());
+        assertTrue(releases.patches().isEmpty());
+
+        AruResponse error = getResource("/no-patches.xml");
+        assertTrue(error.hasError());
+        assertEquals("10-016", error.errorId());
+        assertEquals("No patches found. Clear your search and try again.", error.errorMessage());
+    }
+}
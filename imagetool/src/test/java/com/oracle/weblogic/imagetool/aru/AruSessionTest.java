@@ -0,0 +1,83 @@
+// Copyright (c) 2021, Oracle and/or its affiliates.
+// Licensed under the Universal Permissive License v 1.0 as shown at https://oss.oracle.com/licenses/upl.
+
+package com.oracle.weblogic.imagetool.aru;
+
+import java.io.IOException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.Date;
+import java.util.List;
+
+import org.apache.http.client.CookieStore;
+import org.apache.http.cookie.ClientCookie;
+import org.apache.http.cookie.Cookie;
+import org.apache.http.impl.client.BasicCookieStore;
+import org.apache.http.impl.cookie.BasicClientCookie;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@Tag("unit")
+class AruSessionTest {
+
+    private static CookieStore loggedIn() {
+        CookieStore cookies = new BasicCookieStore();
+        BasicClientCookie session = new BasicClientCookie("ORA_UCM_INFO", "abc");
+        session.setDomain(".oracle.com");
+        session.setAttribute(ClientCookie.DOMAIN_ATTR, ".oracle.com");
+        session.setPath("/");
+        session.setSecure(true);
+        cookies.addCookie(session);
+        BasicClientCookie expired = new BasicClientCookie("OLD", "xyz");
+        expired.setDomain("updates.oracle.com");
+        expired.setPath("/");
+        expired.setExpiryDate(new Date(System.currentTimeMillis() - 1000));
+        cookies.addCookie(expired);
+        return cookies;
+    }
+
+    @Test
+    void reuseSession(@TempDir Path dir) throws IOException {
+        new AruSession(dir, null).save("user@example.com", "password", loggedIn());
+
+        CookieStore cookies = new BasicCookieStore();
+        assertTrue(new AruSession(dir, null).restore("user@example.com", "password", cookies));
+        List<Cookie> restored = cookies.getCookies();
+        assertEquals(1, restored.size());
+        Cookie cookie = restored.get(0);
+        assertEquals("ORA_UCM_INFO", cookie.getName());
+        assertEquals("abc", cookie.getValue());
+        assertEquals("oracle.com", cookie.getDomain().replaceFirst("^\\.", ""));
+        assertTrue(cookie.isSecure());
+        assertTrue(((ClientCookie) cookie).containsAttribute(ClientCookie.DOMAIN_ATTR));
+
+        // the file is only readable by its owner, and does not contain the password
+        Path file = Files.list(dir).findFirst().orElseThrow(IllegalStateException::new);
+        if (FileSystems.getDefault().supportedFileAttributeViews().contains("posix")) {
+            assertEquals("rw-------", PosixFilePermissions.toString(Files.getPosixFilePermissions(file)));
+        }
+        assertFalse(new String(Files.readAllBytes(file)).contains("password"));
+    }
+
+    @Test
+    void checkCredentialsAgain(@TempDir Path dir) {
+        AruSession session = new AruSession(dir, null);
+        session.save("user@example.com", "password", loggedIn());
+        assertFalse(session.restore("user@example.com", "changed", new BasicCookieStore()));
+        assertFalse(session.restore("other@example.com", "password", new BasicCookieStore()));
+        assertFalse(new AruSession(dir, "0s").restore("user@example.com", "password", new BasicCookieStore()));
+
+        session.refresh(true);
+        assertFalse(session.restore("user@example.com", "password", new BasicCookieStore()));
+        session.refresh(false);
+        session.discard("user@example.com");
+        assertFalse(session.restore("user@example.com", "password", new BasicCookieStore()));
+    }
+}
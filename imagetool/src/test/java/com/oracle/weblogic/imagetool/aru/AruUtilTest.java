@@ -3,26 +3,29 @@
 
 package com.oracle.weblogic.imagetool.aru;
 
-import java.io.BufferedReader;
 import java.io.IOException;
-import java.io.InputStreamReader;
+import java.io.InputStream;
 import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.logging.Level;
 import java.util.stream.Collectors;
-import javax.xml.xpath.XPathExpressionException;
 
 import com.oracle.weblogic.imagetool.installer.FmwInstallerType;
 import com.oracle.weblogic.imagetool.logging.LoggingFacade;
 import com.oracle.weblogic.imagetool.logging.LoggingFactory;
-import com.oracle.weblogic.imagetool.util.HttpUtil;
 import org.junit.jupiter.api.AfterAll;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.Tag;
 import org.junit.jupiter.api.Test;
-import org.w3c.dom.Document;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 @Tag("unit")
@@ -53,7 +56,7 @@ class AruUtilTest {
         }
 
         @Override
-        Document getAllReleases(String userId, String password) {
+        AruResponse getAllReleases(String userId, String password) {
             try {
                 return getResource("/releases.xml");
             } catch (IOException e) {
@@ -63,9 +66,9 @@ class AruUtilTest {
         }
 
         @Override
-        Document getRecommendedPatchesMetadata(AruProduct product, String releaseNumber, String userId,
-                                               String password) throws XPathExpressionException, AruException {
-            Document result;
+        AruResponse getRecommendedPatchesMetadata(AruProduct product, String releaseNumber, String userId,
+                                                  String password) throws AruException {
+            AruResponse result;
             try {
                 // these release numbers are fake test data from the fake releases.xml found in test/resources
                 if (releaseNumber.equals("336") || releaseNumber.equals("304")) {
@@ -81,11 +84,9 @@ class AruUtilTest {
             return result;
         }
 
-        private Document getResource(String path) throws IOException {
-            try (BufferedReader buffer = new BufferedReader(new InputStreamReader(
-                this.getClass().getResourceAsStream(path)))) {
-                String doc = buffer.lines().collect(Collectors.joining("\n"));
-                return HttpUtil.parseXmlString(doc);
+        private AruResponse getResource(String path) throws IOException {
+            try (InputStream input = this.getClass().getResourceAsStream(path)) {
+                return AruResponse.parse(input);
             }
         }
     }
@@ -135,4 +136,80 @@ class AruUtilTest {
             AruUtil.rest().getRecommendedPatches(AruProduct.WLS, "3.0.0.0.0", "x", "x");
         assertEquals(0, recommendedPatches.size());
     }
-}
\ No newline at end of file
+
+    @Test
+    void testInstallerTypeLookups() throws Exception {
+        // only WLS has 12.2.1.3.0 patches in the test data, the other WLS installer products have none
+        List<AruPatch> recommendedPatches =
+            AruUtil.rest().getRecommendedPatches(FmwInstallerType.WLS, "12.2.1.3.0", "x", "x");
+        assertEquals(AruUtil.rest().getRecommendedPatches(AruProduct.WLS, "12.2.1.3.0", "x", "x").stream()
+                .map(AruPatch::patchId).collect(Collectors.toList()),
+            recommendedPatches.stream().map(AruPatch::patchId).collect(Collectors.toList()));
+
+        List<AruPatch> latestPsu =
+            AruUtil.rest().getLatestPsu(FmwInstallerType.WLS, "12.2.1.3.0", "x", "x");
+        assertEquals(1, latestPsu.size());
+        assertEquals("31535411", latestPsu.get(0).patchId());
+    }
+
+    @Test
+    void testInstallerTypeLookupFailures() {
+        AruUtil failing = new TestAruUtil() {
+            @Override
+            AruResponse getRecommendedPatchesMetadata(AruProduct product, String releaseNumber, String userId,
+                                                      String password) throws AruException {
+                throw new AruException("ARU is not available");
+            }
+        };
+        // WLS, COH, and FMWPLAT have 12.2.1.3.0 releases in the test data, FIT and JDBC do not
+        AruException e = assertThrows(AruException.class,
+            () -> failing.getRecommendedPatches(FmwInstallerType.WLS, "12.2.1.3.0", "x", "x"));
+        assertEquals(2, e.getSuppressed().length);
+    }
+
+    @Test
+    void testSearchBugNumbers() throws Exception {
+        Set<String> searched = ConcurrentHashMap.newKeySet();
+        AruUtil searching = new TestAruUtil() {
+            @Override
+            public List<AruPatch> getPatches(String bugNumber, String userId, String password)
+                throws AruException {
+                if (!searched.add(bugNumber)) {
+                    throw new AruException("searched twice for " + bugNumber);
+                }
+                if (bugNumber.startsWith("9")) {
+                    throw new NoPatchesFoundException("no patches for " + bugNumber);
+                }
+                return Collections.singletonList(new AruPatch().patchId(bugNumber));
+            }
+        };
+        List<String> bugNumbers = Arrays.asList("30000005", "30000001", "30000004", "30000001", "30000002");
+        Map<String, List<AruPatch>> result = searching.getPatches(bugNumbers, 4, "x", "x");
+        assertEquals(Arrays.asList("30000005", "30000001", "30000004", "30000002"), new ArrayList<>(result.keySet()));
+        assertEquals("30000004", result.get("30000004").get(0).patchId());
+
+        // the error for the first bug number is thrown, with the other errors suppressed
+        NoPatchesFoundException e = assertThrows(NoPatchesFoundException.class,
+            () -> searching.getPatches(Arrays.asList("30000003", "90000001", "90000002"), 4, "x", "x"));
+        assertEquals("no patches for 90000001", e.getMessage());
+        assertEquals(1, e.getSuppressed().length);
+    }
+
+    @Test
+    void testConflictCheckFingerprint() {
+        List<InstalledPatch> installed = InstalledPatch.getPatchList(
+            "30965714;23384603;\"One-off\";30675853;23384602;\"WLS PATCH SET UPDATE 12.2.1.3.200227\"");
+        List<InstalledPatch> reordered = InstalledPatch.getPatchList(
+            "30675853;23384602;\"WLS PATCH SET UPDATE 12.2.1.3.200227\";30965714;23384603;\"One-off\"");
+        AruPatch first = new AruPatch().patchId("31544340").release("600000000073715");
+        AruPatch second = new AruPatch().patchId("31535411").release("600000000073715");
+
+        String fingerprint = AruUtil.conflictCheckFingerprint(installed, Arrays.asList(first, second));
+        assertEquals("installed=23384602,23384603;candidates=600000000073715:31535411,600000000073715:31544340",
+            fingerprint);
+        assertEquals(fingerprint,
+            AruUtil.conflictCheckFingerprint(reordered, Arrays.asList(second, null, first)));
+        assertEquals("installed=;candidates=600000000073715:31544340",
+            AruUtil.conflictCheckFingerprint(null, Collections.singletonList(first)));
+    }
+}
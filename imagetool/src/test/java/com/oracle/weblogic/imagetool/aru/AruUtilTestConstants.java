@@ -3,9 +3,8 @@
 
 package com.oracle.weblogic.imagetool.aru;
 
-import com.oracle.weblogic.imagetool.util.HttpUtil;
-import org.apache.http.client.ClientProtocolException;
-import org.w3c.dom.Document;
+import java.io.IOException;
+import java.io.StringReader;
 
 class AruUtilTestConstants {
 
@@ -361,12 +360,12 @@ class AruUtilTestConstants {
         + "  </messages>\n"
         + "</conflict_check>";
 
-    static Document getReleasesResponse() throws ClientProtocolException {
-        return HttpUtil.parseXmlString(ReleasesResponse);
+    static AruResponse getReleasesResponse() throws IOException {
+        return AruResponse.parse(new StringReader(ReleasesResponse));
     }
 
-    static Document getPatchesResponse() throws ClientProtocolException {
-        return HttpUtil.parseXmlString(PatchesResponse);
+    static AruResponse getPatchesResponse() throws IOException {
+        return AruResponse.parse(new StringReader(PatchesResponse));
     }
 
 }
\ No newline at end of file
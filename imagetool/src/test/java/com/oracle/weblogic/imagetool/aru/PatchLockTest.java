@@ -0,0 +1,74 @@
+// Copyright (c) 2021, Oracle and/or its affiliates.
+// Licensed under the Universal Permissive License v 1.0 as shown at https://oss.oracle.com/licenses/upl.
+
+package com.oracle.weblogic.imagetool.aru;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+@Tag("unit")
+class PatchLockTest {
+
+    private static AruPatch patch(String patchId, String version, String fileName) {
+        return new AruPatch().patchId(patchId).version(version).description("patch " + patchId)
+            .product("15991").release("600000000073715").releaseName(version)
+            .fileName(fileName).downloadHost("https://updates.oracle.com")
+            .downloadPath("/Orion/Services/download/" + fileName + "?aru=1234&patch_file=" + fileName)
+            .sha256("ABCDEF0123").size(1024);
+    }
+
+    private static PatchLock roundTrip(PatchLock lock) throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        lock.write(output);
+        return PatchLock.read(new ByteArrayInputStream(output.toByteArray()));
+    }
+
+    @Test
+    void writeAndRead() throws IOException {
+        AruPatch psu = patch("32698246", "12.2.1.4.210330", "p32698246_122140_Generic.zip").psuBundle("WLS PSU");
+        AruPatch oneOff = patch("31544340", "12.2.1.4.0", "p31544340_122140_Generic.zip");
+        AruPatch opatch = patch("28186730", "13.9.4.2.5", "p28186730_139425_Generic.zip");
+        PatchLock lock = roundTrip(new PatchLock("WLS", "12.2.1.4.0", Arrays.asList(psu, oneOff), opatch));
+
+        assertEquals("WLS", lock.installerType());
+        assertEquals("12.2.1.4.0", lock.installerVersion());
+        assertEquals(2, lock.patches().size());
+        AruPatch first = lock.patches().get(0);
+        assertEquals("32698246", first.patchId());
+        assertEquals("12.2.1.4.210330", first.version());
+        assertEquals("600000000073715", first.release());
+        assertEquals("WLS PSU", first.psuBundle());
+        assertEquals("p32698246_122140_Generic.zip", first.fileName());
+        assertEquals(psu.downloadUrl(), first.downloadUrl());
+        assertEquals("abcdef0123", first.sha256());
+        assertEquals(1024, first.size());
+        assertNull(lock.patches().get(1).psuBundle());
+        assertEquals("13.9.4.2.5", lock.opatch().version());
+    }
+
+    @Test
+    void withoutOpatch() throws IOException {
+        PatchLock lock = roundTrip(new PatchLock("FMW", "12.2.1.4.0", Collections.emptyList(), null));
+        assertEquals(0, lock.patches().size());
+        assertNull(lock.opatch());
+    }
+
+    @Test
+    void invalidLockFile() {
+        String json = "{\"version\": 1, \"installerType\": \"WLS\", \"installerVersion\": \"12.2.1.4.0\", "
+            + "\"patches\": [{\"patchId\": \"31544340\", \"version\": \"12.2.1.4.0\"}]}";
+        assertThrows(IOException.class,
+            () -> PatchLock.read(new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8))));
+    }
+}
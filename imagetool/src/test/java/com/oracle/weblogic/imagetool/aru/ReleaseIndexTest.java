@@ -0,0 +1,43 @@
+// Copyright (c) 2021, Oracle and/or its affiliates.
+// Licensed under the Universal Permissive License v 1.0 as shown at https://oss.oracle.com/licenses/upl.
+
+package com.oracle.weblogic.imagetool.aru;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+@Tag("unit")
+class ReleaseIndexTest {
+
+    private static ReleaseIndex index;
+
+    @BeforeAll
+    static void readReleases() throws IOException {
+        try (InputStream input = ReleaseIndexTest.class.getResourceAsStream("/releases.xml")) {
+            index = new ReleaseIndex(AruResponse.parse(input).releases());
+        }
+    }
+
+    @Test
+    void findRelease() {
+        assertEquals("336", index.find(AruProduct.WLS, "12.2.1.3.0"));
+        assertEquals("304", index.find(AruProduct.WLS, "12.2.1.3.200624"));
+        assertEquals("702", index.find(AruProduct.COH, "12.2.1.3.0"));
+        assertNull(index.find(AruProduct.WLS, "3.0.0.0.0"));
+        assertNull(index.find(AruProduct.JDBC, "12.2.1.3.0"));
+    }
+
+    @Test
+    void firstMatchingRelease() {
+        // a partial version matches several releases, the first one in the ARU response is used
+        assertEquals("304", index.find(AruProduct.WLS, "12.2.1.3"));
+        assertEquals("300", index.find(AruProduct.WLS, "14.1.1.0"));
+    }
+}
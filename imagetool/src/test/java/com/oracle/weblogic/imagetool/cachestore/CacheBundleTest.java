@@ -0,0 +1,166 @@
+// Copyright (c) 2021, Oracle and/or its affiliates.
+// Licensed under the Universal Permissive License v 1.0 as shown at https://oss.oracle.com/licenses/upl.
+
+package com.oracle.weblogic.imagetool.cachestore;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertLinesMatch;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@Tag("unit")
+class CacheBundleTest {
+
+    private static CacheStore sourceCache(Path dir) throws IOException {
+        CacheStore cache = new CacheStoreTestImpl(dir);
+        cache.addToCache("wls_12.2.1.4.0_generic", Files.write(dir.resolve("fmw_wls.jar"), Arrays.asList("A", "B"))
+            .toString());
+        Path patch = Files.write(dir.resolve("p1110001_122140_Generic.zip"), Collections.singletonList("C"));
+        cache.addToCache("1110001_12.2.1.4.0", patch.toString());
+        // two keys for the same file
+        cache.addToCache("1110001_12.2.1.4.0_generic", patch.toString());
+        cache.addToCache("missing_1.0", dir.resolve("missing.zip").toString());
+        return cache;
+    }
+
+    @Test
+    void exportAndImport(@TempDir Path sourceDir, @TempDir Path targetDir) throws IOException {
+        CacheStore source = sourceCache(sourceDir);
+        ByteArrayOutputStream tar = new ByteArrayOutputStream();
+        CacheBundle.Result exported = new CacheBundle(source).export(tar, null, null);
+        assertEquals(3, exported.entries().size());
+        assertEquals(2, exported.files(), "each file is exported once");
+
+        CacheStore target = new CacheStoreTestImpl(targetDir);
+        CacheBundle.Result imported = new CacheBundle(target)
+            .importBundle(new ByteArrayInputStream(tar.toByteArray()));
+        assertEquals(3, imported.entries().size());
+        assertEquals(2, imported.files());
+        assertEquals(targetDir.resolve("fmw_wls.jar").toString(), target.getValueFromCache("wls_12.2.1.4.0_generic"));
+        assertLinesMatch(Arrays.asList("A", "B"), Files.readAllLines(targetDir.resolve("fmw_wls.jar")));
+        assertEquals(target.getValueFromCache("1110001_12.2.1.4.0"),
+            target.getValueFromCache("1110001_12.2.1.4.0_generic"));
+        assertNull(target.getValueFromCache("missing_1.0"));
+
+        // importing again skips everything
+        imported = new CacheBundle(target).importBundle(new ByteArrayInputStream(tar.toByteArray()));
+        assertEquals(0, imported.entries().size());
+        assertEquals(3, imported.skipped().size());
+    }
+
+    @Test
+    void exportDelta(@TempDir Path sourceDir, @TempDir Path targetDir) throws IOException {
+        CacheStore source = sourceCache(sourceDir);
+        CacheStore target = new CacheStoreTestImpl(targetDir);
+        ByteArrayOutputStream tar = new ByteArrayOutputStream();
+        new CacheBundle(source).export(tar, Collections.singletonList("1110001_12.2.1.4.0"), null);
+        new CacheBundle(target).importBundle(new ByteArrayInputStream(tar.toByteArray()));
+
+        // the target manifest is used to export only what the target does not have
+        CacheManifest targetManifest = new CacheBundle(target).manifest(null);
+        tar.reset();
+        CacheBundle.Result delta = new CacheBundle(source).export(tar, null, targetManifest);
+        assertEquals(Arrays.asList("1110001_12.2.1.4.0_generic", "wls_12.2.1.4.0_generic"), delta.entries());
+
+        CacheBundle.Result imported = new CacheBundle(target)
+            .importBundle(new ByteArrayInputStream(tar.toByteArray()));
+        assertEquals(2, imported.entries().size());
+        assertEquals(3, new CacheBundle(target).manifest(null).entries().size());
+    }
+
+    @Test
+    void rejectCorruptBundle(@TempDir Path sourceDir, @TempDir Path targetDir) throws IOException {
+        CacheStore source = sourceCache(sourceDir);
+        ByteArrayOutputStream tar = new ByteArrayOutputStream();
+        new CacheBundle(source).export(tar, Collections.singletonList("wls_12.2.1.4.0_generic"), null);
+        byte[] bytes = tar.toByteArray();
+        // change the first byte of the installer contents, "A"
+        String contents = new String(bytes, StandardCharsets.ISO_8859_1);
+        bytes[contents.indexOf("A\nB\n")] = 'X';
+
+        CacheStore target = new CacheStoreTestImpl(targetDir);
+        CacheBundle bundle = new CacheBundle(target);
+        assertThrows(IOException.class, () -> bundle.importBundle(new ByteArrayInputStream(bytes)));
+        assertNull(target.getValueFromCache("wls_12.2.1.4.0_generic"));
+        assertFalse(Files.exists(targetDir.resolve("fmw_wls.jar.part")));
+
+        assertThrows(IOException.class, () -> bundle.importBundle(new ByteArrayInputStream(new byte[1024])));
+    }
+
+    /**
+     * A bundle with one file, and a manifest entry for the file with the provided name and digest.
+     */
+    private static byte[] bundle(String file, String sha256) throws IOException {
+        byte[] content = "C".getBytes(StandardCharsets.UTF_8);
+        String manifest = "{\"version\": 1, \"entries\": [{\"key\": \"1110001_12.2.1.4.0\", \"file\": \"" + file
+            + "\", \"sha256\": \"" + sha256 + "\", \"size\": " + content.length + "}]}";
+        byte[] manifestBytes = manifest.getBytes(StandardCharsets.UTF_8);
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        TarFormat.Writer writer = new TarFormat.Writer(output);
+        writer.putFile(CacheManifest.FILE_NAME, manifestBytes.length, new ByteArrayInputStream(manifestBytes));
+        writer.putFile(file, content.length, new ByteArrayInputStream(content));
+        writer.finish();
+        return output.toByteArray();
+    }
+
+    @Test
+    void rejectMaliciousManifest(@TempDir Path targetDir) throws IOException {
+        String digest = String.join("", Collections.nCopies(64, "a"));
+        CacheBundle bundle = new CacheBundle(new CacheStoreTestImpl(targetDir));
+        for (byte[] bytes : Arrays.asList(bundle("files/..", digest), bundle("files/", digest),
+            bundle("files/.", digest), bundle("files/.metadata", digest), bundle("files/p1.zip", "../../p1"),
+            bundle("files/p1.zip", digest.toUpperCase()), bundle("files/p1.zip", digest.substring(1)))) {
+            assertThrows(IOException.class, () -> bundle.importBundle(new ByteArrayInputStream(bytes)));
+        }
+        try (Stream<Path> files = Files.list(targetDir)) {
+            assertEquals(0, files.count(), "nothing should be written to the cache directory");
+        }
+    }
+
+    @Test
+    void tarFormat() throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        TarFormat.Writer writer = new TarFormat.Writer(output);
+        String longName = "files/" + String.join("", Collections.nCopies(64, "a")) + "/"
+            + String.join("", Collections.nCopies(90, "b")) + ".zip";
+        byte[] first = "first".getBytes(StandardCharsets.UTF_8);
+        byte[] second = new byte[TarFormat.BLOCK_SIZE + 1];
+        second[TarFormat.BLOCK_SIZE] = 7;
+        writer.putFile("first.txt", first.length, new ByteArrayInputStream(first));
+        writer.putFile(longName, second.length, new ByteArrayInputStream(second));
+        writer.finish();
+        assertEquals(0, output.size() % TarFormat.BLOCK_SIZE);
+
+        TarFormat.Reader reader = new TarFormat.Reader(new ByteArrayInputStream(output.toByteArray()));
+        TarFormat.Entry entry = reader.next();
+        assertEquals("first.txt", entry.name());
+        // the content of the first file is not read, and is skipped
+        entry = reader.next();
+        assertEquals(longName, entry.name());
+        byte[] content = new byte[second.length];
+        assertEquals(second.length, entry.content().read(content));
+        assertArrayEquals(second, content);
+        assertNull(reader.next());
+
+        assertThrows(IOException.class,
+            () -> writer.putFile("short.txt", 10, new ByteArrayInputStream(first)));
+        assertTrue(TarFormat.padding(1) > 0);
+    }
+}
@@ -0,0 +1,76 @@
+// Copyright (c) 2021, Oracle and/or its affiliates.
+// Licensed under the Universal Permissive License v 1.0 as shown at https://oss.oracle.com/licenses/upl.
+
+package com.oracle.weblogic.imagetool.cachestore;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Properties;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@Tag("unit")
+class CacheIndexTest {
+
+    @Test
+    void typedEntries() {
+        CacheEntry patch = CacheEntry.of("29135930_12.2.1.3.190416",
+            "/cache/p29135930_12213190416_Linux-x86-64.zip", new CacheUsage(1000, 42));
+        assertEquals(CacheEntry.Type.PATCH, patch.type());
+        assertEquals("29135930", patch.id());
+        assertEquals("12.2.1.3.190416", patch.version());
+        assertEquals("Linux-x86-64", patch.architecture());
+        assertEquals(42, patch.size());
+        assertNull(patch.digest());
+
+        CacheEntry opatch = CacheEntry.of("28186730_13.9.4.2.5", "/cache/p28186730_139425_Generic.zip", null);
+        assertEquals(CacheEntry.Type.OPATCH, opatch.type());
+        assertEquals("Generic", opatch.architecture());
+        assertEquals(-1, opatch.size());
+
+        CacheEntry installer = CacheEntry.of("WLS_12.2.1.4.0", "/installers/fmw_12.2.1.4.0_wls_Disk1_1of1.zip", null);
+        assertEquals(CacheEntry.Type.INSTALLER, installer.type());
+        assertEquals("wls", installer.id());
+        assertNull(installer.architecture());
+    }
+
+    @Test
+    void versionOrder() {
+        ArrayList<String> versions = new ArrayList<>(
+            Arrays.asList("13.9.4.2.10", "opatch", "13.9.4.2.5", "13.9.4.2.5-beta", "8u202", "13.9.4"));
+        versions.sort(CacheEntry.VERSION_ORDER);
+        assertEquals(Arrays.asList("8u202", "opatch", "13.9.4", "13.9.4.2.5-beta", "13.9.4.2.5", "13.9.4.2.10"),
+            versions);
+    }
+
+    @Test
+    void versionIndex() {
+        Properties properties = new Properties();
+        properties.put("28186730_13.9.4.2.10", "/cache/p28186730_1394210_Generic.zip");
+        properties.put("28186730_13.9.4.2.5", "/cache/p28186730_139425_Generic.zip");
+        properties.put("28186730_opatch", "/cache/p28186730_139400_Generic.zip");
+        properties.put("wls_12.2.1.4.0", "/installers/fmw_12.2.1.4.0_wls_Disk1_1of1.zip");
+        properties.put("cache.dir", "/cache");
+        CacheIndex index = new CacheIndex();
+        index.rebuild(properties, Collections.emptyMap());
+
+        assertEquals("13.9.4.2.10", index.latest("28186730").version());
+        assertEquals(Arrays.asList("opatch", "13.9.4.2.5", "13.9.4.2.10"),
+            new ArrayList<>(index.versions("28186730").keySet()));
+        assertTrue(index.versions("29135930").isEmpty());
+        assertNull(index.latest("29135930"));
+        assertEquals(5, index.items().size());
+
+        index.remove("28186730_13.9.4.2.10");
+        index.put("28186730_13.9.4.2.7", "/cache/p28186730_139427_Generic.zip", null);
+        assertEquals("13.9.4.2.7", index.latest("28186730").version());
+        assertEquals("/cache/p28186730_139427_Generic.zip", index.items().get("28186730_13.9.4.2.7"));
+        assertNull(index.items().get("28186730_13.9.4.2.10"));
+    }
+}
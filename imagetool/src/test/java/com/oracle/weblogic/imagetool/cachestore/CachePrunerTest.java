@@ -0,0 +1,110 @@
+// Copyright (c) 2021, Oracle and/or its affiliates.
+// Licensed under the Universal Permissive License v 1.0 as shown at https://oss.oracle.com/licenses/upl.
+
+package com.oracle.weblogic.imagetool.cachestore;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Collections;
+
+import com.oracle.weblogic.imagetool.aru.AruUtil;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@Tag("unit")
+class CachePrunerTest {
+
+    private static Path addFile(CacheStore cacheStore, Path dir, String key, String name, int size, int daysOld)
+        throws IOException {
+        Path file = Files.write(dir.resolve(name), new byte[size]);
+        Files.setLastModifiedTime(file, FileTime.from(Instant.now().minus(Duration.ofDays(daysOld))));
+        if (key != null) {
+            cacheStore.addToCache(key, file.toString());
+        }
+        return file;
+    }
+
+    @Test
+    void pruneToMaxSize(@TempDir Path cacheDir, @TempDir Path installers) throws IOException {
+        CacheStore cacheStore = new CacheStoreTestImpl(cacheDir);
+        addFile(cacheStore, cacheDir, "wls_12.2.1.4.0", "fmw_wls.zip", 4000, 10);
+        addFile(cacheStore, cacheDir, "1110001_12.2.1.4.0", "p1110001.zip", 1000, 2);
+        addFile(cacheStore, cacheDir, "1110002_12.2.1.4.0", "p1110002.zip", 1000, 5);
+        addFile(cacheStore, cacheDir, "1110003_12.2.1.4.0", "p1110003.zip", 1000, 1);
+        Path outside = addFile(cacheStore, installers, "wls_14.1.1.0.0", "fmw_wls_14.zip", 5000, 30);
+
+        CachePruner.Result result = new CachePruner(cacheStore).maxSize(5500).prune();
+        // patches are removed first, least recently used first
+        assertEquals(Arrays.asList("1110002_12.2.1.4.0", "1110001_12.2.1.4.0"), result.removedEntries());
+        assertEquals(2000, result.freed());
+        assertEquals(5000, result.size());
+        assertNull(cacheStore.getValueFromCache("1110002_12.2.1.4.0"));
+        assertFalse(Files.exists(cacheDir.resolve("p1110002.zip")));
+        assertNotNull(cacheStore.getValueFromCache("1110003_12.2.1.4.0"));
+        // files outside the cache directory are never removed
+        assertTrue(Files.exists(outside));
+        assertNotNull(cacheStore.getValueFromCache("wls_14.1.1.0.0"));
+    }
+
+    @Test
+    void pruneOlderThan(@TempDir Path cacheDir) throws IOException {
+        CacheStore cacheStore = new CacheStoreTestImpl(cacheDir);
+        addFile(cacheStore, cacheDir, "wls_12.2.1.4.0", "fmw_wls.zip", 100, 40);
+        addFile(cacheStore, cacheDir, "1110001_12.2.1.4.0", "p1110001.zip", 100, 20);
+        Path orphan = addFile(cacheStore, cacheDir, null, "leftover.zip", 100, 2);
+        Path recent = addFile(cacheStore, cacheDir, null, "p1110002.zip.part", 100, 0);
+
+        CachePruner.Result dryRun = new CachePruner(cacheStore).olderThan(Duration.ofDays(30)).dryRun(true).prune();
+        assertEquals(Collections.singletonList("wls_12.2.1.4.0"), dryRun.removedEntries());
+        assertEquals(2, dryRun.removedFiles().size());
+        assertTrue(Files.exists(orphan), "dry run should not delete files");
+        assertNotNull(cacheStore.getValueFromCache("wls_12.2.1.4.0"), "dry run should not delete entries");
+
+        CachePruner.Result result = new CachePruner(cacheStore).olderThan(Duration.ofDays(30)).prune();
+        assertEquals(200, result.freed());
+        assertFalse(Files.exists(orphan));
+        assertNull(cacheStore.getValueFromCache("wls_12.2.1.4.0"));
+        // files that might be in use by another process are not orphans yet
+        assertTrue(Files.exists(recent));
+    }
+
+    @Test
+    void keepNewEntry(@TempDir Path cacheDir) throws IOException {
+        CacheStore cacheStore = new CacheStoreTestImpl(cacheDir);
+        addFile(cacheStore, cacheDir, "1110001_12.2.1.4.0", "p1110001.zip", 1000, 20);
+        CachePruner.Result result = new CachePruner(cacheStore).maxSize(0).keep("1110001_12.2.1.4.0").prune();
+        assertTrue(result.removedEntries().isEmpty());
+        assertNotNull(cacheStore.getValueFromCache("1110001_12.2.1.4.0"));
+    }
+
+    @Test
+    void keepToolDirectories(@TempDir Path cacheDir) throws IOException {
+        CacheStore cacheStore = new CacheStoreTestImpl(cacheDir);
+        addFile(cacheStore, cacheDir, "1110001_12.2.1.4.0", "p1110001.zip", 1000, 20);
+        Path aruDir = Files.createDirectories(cacheDir.resolve(AruUtil.METADATA_DIR));
+        Path response = addFile(cacheStore, aruDir, null, "search-0123abcd", 100, 2);
+        Path session = addFile(cacheStore, aruDir, null, "session-0123abcd", 100, 2);
+        Path quarantineDir = Files.createDirectories(cacheDir.resolve(CacheVerifier.QUARANTINE_DIR));
+        Path corrupt = addFile(cacheStore, quarantineDir, null, "p1110002.zip", 100, 2);
+
+        CachePruner.Result result = new CachePruner(cacheStore).maxSize(0).prune();
+        assertEquals(Collections.singletonList("1110001_12.2.1.4.0"), result.removedEntries());
+        assertEquals(1, result.removedFiles().size());
+        // saved ARU responses and sessions, and quarantined files, are not orphans
+        assertTrue(Files.exists(response));
+        assertTrue(Files.exists(session));
+        assertTrue(Files.exists(corrupt));
+    }
+}
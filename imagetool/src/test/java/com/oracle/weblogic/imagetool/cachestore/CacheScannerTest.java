@@ -0,0 +1,75 @@
+// Copyright (c) 2021, Oracle and/or its affiliates.
+// Licensed under the Universal Permissive License v 1.0 as shown at https://oss.oracle.com/licenses/upl.
+
+package com.oracle.weblogic.imagetool.cachestore;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+@Tag("unit")
+class CacheScannerTest {
+
+    @Test
+    void fileNames() {
+        assertEquals("wls_12.2.1.4.0", CacheScanner.keyForName("fmw_12.2.1.4.0_wls_disk1_1of1.zip"));
+        assertEquals("wls_14.1.1.0.0", CacheScanner.keyForName("fmw_14.1.1.0.0_wls_lite_generic.jar"));
+        assertEquals("wlsdev_12.2.1.4.0", CacheScanner.keyForName("fmw_12.2.1.4.0_wls_quick_disk1_1of1.zip"));
+        assertEquals("fmw_12.2.1.4.0", CacheScanner.keyForName("fmw_12.2.1.4.0_infrastructure_disk1_1of1.zip"));
+        assertEquals("soa_12.2.1.4.0", CacheScanner.keyForName("fmw_12.2.1.4.0_soa.jar"));
+        assertEquals("oid_12.2.1.4.0", CacheScanner.keyForName("fmw_12.2.1.4.0_oid_linux64.bin"));
+        assertEquals("jdk_8u202", CacheScanner.keyForName("jdk-8u202-linux-x64.tar.gz"));
+        assertEquals("jdk_11.0.12", CacheScanner.keyForName("jdk-11.0.12_linux-x64_bin.tar.gz"));
+        assertEquals("28186730_13.9.4.2.4", CacheScanner.keyForName("p28186730_139424_generic.zip"));
+        assertEquals("29135930_12.2.1.3.190416", CacheScanner.keyForName("p29135930_12213190416_generic.zip"));
+        assertNull(CacheScanner.keyForName("fmw_12.2.1.4.0_soa_quickstart_disk1_1of2.zip"));
+        assertNull(CacheScanner.keyForName("readme.txt"));
+    }
+
+    private static Path zip(Path file, String entry, String contents) throws IOException {
+        try (OutputStream output = Files.newOutputStream(file); ZipOutputStream zip = new ZipOutputStream(output)) {
+            zip.putNextEntry(new ZipEntry(entry));
+            zip.write(contents.getBytes(StandardCharsets.UTF_8));
+            zip.closeEntry();
+        }
+        return file;
+    }
+
+    @Test
+    void scanDirectory(@TempDir Path dir) throws IOException {
+        Path installers = Files.createDirectories(dir.resolve("installers"));
+        Path wls = zip(installers.resolve("fmw_12.2.1.4.0_wls_Disk1_1of1.zip"), "fmw_12.2.1.4.0_wls.jar", "wls");
+        // a renamed download, the installer inside the zip file is used
+        Path osb = zip(installers.resolve("osb.zip"), "fmw_12.2.1.4.0_osb.jar", "osb");
+        Path wdt = zip(installers.resolve("weblogic-deploy.zip"), "weblogic-deploy/VERSION.txt",
+            "WebLogic Deploy Tooling 1.9.17\n");
+        Path patches = Files.createDirectories(dir.resolve("patches"));
+        Path patch = zip(patches.resolve("p1110001_122140_Generic.zip"), "1110001/README.txt", "patch");
+        // the same installer in another directory
+        Path copy = Files.createDirectories(dir.resolve("z")).resolve("fmw_12.2.1.4.0_wls_Disk1_1of1.zip");
+        Files.copy(wls, copy);
+        Path readme = Files.write(dir.resolve("README.txt"), Collections.singletonList("hello"));
+
+        CacheScanner.Result result = new CacheScanner().threads(2).scan(dir);
+        assertEquals(4, result.files().size());
+        assertEquals(wls.toAbsolutePath(), result.files().get("wls_12.2.1.4.0"));
+        assertEquals(osb.toAbsolutePath(), result.files().get("osb_12.2.1.4.0"));
+        assertEquals(wdt.toAbsolutePath(), result.files().get("wdt_1.9.17"));
+        assertEquals(patch.toAbsolutePath(), result.files().get("1110001_12.2.1.4.0"));
+        assertEquals(2, result.unknown().size());
+        assertEquals(readme, result.unknown().get(0));
+        assertEquals(copy, result.unknown().get(1));
+    }
+}
@@ -41,7 +41,7 @@ public class CacheStoreTestImpl implements CacheStore {
 
     @Override
     public String deleteFromCache(String key) {
-        return null;
+        return cache.remove(key.toLowerCase());
     }
 
     @Override
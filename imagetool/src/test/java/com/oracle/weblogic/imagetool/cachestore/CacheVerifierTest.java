@@ -0,0 +1,85 @@
+// Copyright (c) 2021, Oracle and/or its affiliates.
+// Licensed under the Universal Permissive License v 1.0 as shown at https://oss.oracle.com/licenses/upl.
+
+package com.oracle.weblogic.imagetool.cachestore;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@Tag("unit")
+class CacheVerifierTest {
+
+    private static byte[] zipBytes() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ZipOutputStream zip = new ZipOutputStream(bytes)) {
+            zip.putNextEntry(new ZipEntry("README.txt"));
+            zip.write(String.join("", Collections.nCopies(100, "patch contents\n")).getBytes(StandardCharsets.UTF_8));
+            zip.closeEntry();
+        }
+        return bytes.toByteArray();
+    }
+
+    @Test
+    void quarantineCorruptFiles(@TempDir Path cacheDir, @TempDir Path otherDir) throws IOException {
+        CacheStore cache = new CacheStoreTestImpl(cacheDir);
+        byte[] zip = zipBytes();
+        Path good = Files.write(cacheDir.resolve("p1110001_122140_Generic.zip"), zip);
+        cache.addToCache("1110001_12.2.1.4.0", good.toString());
+        Path truncated = Files.write(cacheDir.resolve("p1110002_122140_Generic.zip"),
+            Arrays.copyOf(zip, zip.length / 2));
+        cache.addToCache("1110002_12.2.1.4.0", truncated.toString());
+        Path wrongDigest = Files.createDirectories(cacheDir.resolve(ContentStore.STORE_DIR)
+            .resolve(String.join("", Collections.nCopies(64, "0")))).resolve("fmw_wls.jar");
+        Files.write(wrongDigest, zip);
+        cache.addToCache("wls_12.2.1.4.0", wrongDigest.toString());
+        Path outside = Files.write(otherDir.resolve("fmw_soa.jar"), Arrays.copyOf(zip, 10));
+        cache.addToCache("soa_12.2.1.4.0", outside.toString());
+        cache.addToCache("jdk_8u202", cacheDir.resolve("missing.tar.gz").toString());
+
+        CacheVerifier.Result result = new CacheVerifier(cache).threads(2).verify();
+        assertEquals(5, result.entries());
+        assertEquals(4, result.hashed());
+        assertEquals(3, result.corrupt().size());
+        assertEquals(Collections.singletonList("jdk_8u202"), result.missing());
+
+        assertNotNull(cache.getValueFromCache("1110001_12.2.1.4.0"));
+        assertNull(cache.getValueFromCache("1110002_12.2.1.4.0"));
+        assertNull(cache.getValueFromCache("wls_12.2.1.4.0"));
+        assertNull(cache.getValueFromCache("soa_12.2.1.4.0"));
+        Path quarantine = cacheDir.resolve(CacheVerifier.QUARANTINE_DIR);
+        assertTrue(Files.exists(quarantine.resolve("p1110002_122140_Generic.zip")));
+        assertTrue(Files.exists(quarantine.resolve("fmw_wls.jar")));
+        assertFalse(Files.exists(truncated));
+        assertTrue(Files.exists(outside), "files outside the cache directory are not moved");
+
+        // the unchanged file is not read again
+        result = new CacheVerifier(cache).verify();
+        assertEquals(0, result.hashed());
+        assertEquals(1, result.files());
+        assertTrue(result.corrupt().isEmpty());
+
+        // a changed file is read again
+        Files.write(good, Arrays.copyOf(zip, zip.length - 1));
+        result = new CacheVerifier(cache).dryRun(true).verify();
+        assertEquals(1, result.hashed());
+        assertEquals(1, result.corrupt().size());
+        assertTrue(Files.exists(good), "dry run does not move files");
+    }
+}
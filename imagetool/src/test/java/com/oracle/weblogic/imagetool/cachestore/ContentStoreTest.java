@@ -0,0 +1,70 @@
+// Copyright (c) 2021, Oracle and/or its affiliates.
+// Licensed under the Universal Permissive License v 1.0 as shown at https://oss.oracle.com/licenses/upl.
+
+package com.oracle.weblogic.imagetool.cachestore;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+
+import com.oracle.weblogic.imagetool.util.Utils;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertLinesMatch;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@Tag("unit")
+class ContentStoreTest {
+
+    static final List<String> fileContents = Arrays.asList("A", "B", "C");
+
+    @Test
+    void sameContentStoredOnce(@TempDir Path cacheDir, @TempDir Path downloads) throws IOException {
+        Path first = Files.write(downloads.resolve("p1110001_122130_Generic.zip"), fileContents);
+        Path second = Files.write(cacheDir.resolve("p1110001_122130_Generic.zip"), fileContents);
+        ContentStore store = new ContentStore(cacheDir);
+
+        Path stored = store.store(first, first.getFileName().toString(), false);
+        assertTrue(Files.exists(first), "copied file should not be removed");
+        assertEquals(Utils.sha256(first), ContentStore.digestOf(stored.toString()));
+
+        // storing the same content again should return the existing file, and remove the moved source
+        assertEquals(stored, store.store(second, second.getFileName().toString(), true));
+        assertFalse(Files.exists(second), "moved file should be removed");
+        assertLinesMatch(fileContents, Files.readAllLines(stored));
+    }
+
+    @Test
+    void findByDigest(@TempDir Path cacheDir) throws IOException {
+        Path source = Files.write(cacheDir.resolve("installer.zip"), fileContents);
+        String digest = Utils.sha256(source);
+        ContentStore store = new ContentStore(cacheDir);
+
+        assertNull(store.find(digest, "installer.zip"), "digest should not be found before it is stored");
+        Path stored = store.store(source, "installer.zip", true);
+        assertEquals(stored, store.find(digest, "installer.zip"));
+
+        // the same content requested with a different name should be made available under the new name
+        Path renamed = store.find(digest, "renamed.zip");
+        assertEquals(digest, ContentStore.digestOf(renamed.toString()));
+        assertEquals("renamed.zip", renamed.getFileName().toString());
+        assertLinesMatch(fileContents, Files.readAllLines(renamed));
+
+        assertNull(store.find("111111", "installer.zip"), "invalid digest should not be found");
+    }
+
+    @Test
+    void contentAddressedPaths() {
+        assertFalse(ContentStore.isContentAddressed("/some/cache/p1110001_122130_Generic.zip"));
+        assertFalse(ContentStore.isContentAddressed(null));
+        String digest = "9f86d081884c7d659a2feaa0c55ad015a3bf4f1b2b0b822cd15d6c15b0f00a08";
+        assertEquals(digest, ContentStore.digestOf("/some/cache/sha256/" + digest + "/installer.zip"));
+    }
+}
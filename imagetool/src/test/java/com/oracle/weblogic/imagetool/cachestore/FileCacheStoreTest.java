@@ -3,7 +3,15 @@
 
 package com.oracle.weblogic.imagetool.cachestore;
 
+import java.io.Closeable;
 import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.MethodOrderer;
@@ -16,6 +24,7 @@ import org.junit.jupiter.api.io.TempDir;
 import static com.oracle.weblogic.imagetool.cachestore.CacheStoreFactory.cache;
 import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertTrue;
@@ -74,4 +83,52 @@ class FileCacheStoreTest {
             assertNotNull(cache().getCacheItems(), "Get cache items should never be null"),
             "getCacheItems threw an exception");
     }
+
+    @Test
+    @Order(5)
+    void sharedCacheDirectory() throws CacheStoreException {
+        // a second cache store on the same directory behaves like another process sharing the cache
+        FileCacheStore other = new FileCacheStore();
+        other.addToCache(testKey, testVal);
+        assertEquals(testVal, cache().getValueFromCache(testKey), "change from other store was not read");
+        assertEquals(testVal, cache().deleteFromCache(testKey));
+        assertNull(other.getValueFromCache(testKey), "delete from other store was not read");
+    }
+
+    @Test
+    @Order(6)
+    void artifactLock() throws Exception {
+        AtomicBoolean acquired = new AtomicBoolean(false);
+        Thread waiter = new Thread(() -> {
+            try (Closeable lock = cache().lock("p1110001_122130_Generic.zip")) {
+                acquired.set(true);
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        try (Closeable lock = cache().lock("p1110001_122130_Generic.zip")) {
+            waiter.start();
+            waiter.join(500);
+            assertFalse(acquired.get(), "lock should not be acquired while another holder has it");
+        }
+        waiter.join(5000);
+        assertTrue(acquired.get(), "lock should be acquired after it was released");
+    }
+
+    @Test
+    @Order(7)
+    void addFilesInOneUpdate(@TempDir Path dir) throws Exception {
+        Map<String, Path> files = new TreeMap<>();
+        files.put("wls_12.2.1.4.0", Files.write(dir.resolve("fmw_wls.jar"), Collections.singletonList("A")));
+        files.put("1110001_12.2.1.4.0", Files.write(dir.resolve("p1110001_122140_Generic.zip"),
+            Collections.singletonList("B")));
+        Map<String, String> values = cache().addFilesToCache(files);
+        assertEquals(2, values.size());
+
+        // another process sees both entries
+        FileCacheStore other = new FileCacheStore();
+        assertEquals(files.get("wls_12.2.1.4.0").toString(), other.getValueFromCache("wls_12.2.1.4.0"));
+        assertEquals(values.get("1110001_12.2.1.4.0"), other.getValueFromCache("1110001_12.2.1.4.0"));
+        assertNotNull(other.getUsage().get("wls_12.2.1.4.0"));
+    }
 }
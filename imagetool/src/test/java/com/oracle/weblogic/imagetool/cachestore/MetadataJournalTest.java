@@ -0,0 +1,154 @@
+// Copyright (c) 2021, Oracle and/or its affiliates.
+// Licensed under the Universal Permissive License v 1.0 as shown at https://oss.oracle.com/licenses/upl.
+
+package com.oracle.weblogic.imagetool.cachestore;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Properties;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@Tag("unit")
+class MetadataJournalTest {
+
+    @Test
+    void replayJournal(@TempDir Path cacheDir) throws IOException {
+        Path snapshot = cacheDir.resolve(".metadata");
+        MetadataJournal journal = new MetadataJournal(snapshot);
+        Properties initial = new Properties();
+        initial.put("cache.dir", cacheDir.toString());
+        journal.compact(initial);
+
+        journal.put("wls_12.2.1.4.0", "/some/dir/fmw_12.2.1.4.0_wls_Disk1_1of1.zip");
+        journal.put("odd\tkey", "line1\nline2\\");
+        journal.put("28186730_opatch", "/some/dir/p28186730_139424_Generic.zip");
+        journal.remove("28186730_opatch");
+        assertFalse(Files.readAllLines(snapshot).stream().anyMatch(l -> l.startsWith("wls")),
+            "journal records should not rewrite the snapshot");
+
+        Properties loaded = new Properties();
+        new MetadataJournal(snapshot).load(loaded);
+        assertEquals(cacheDir.toString(), loaded.getProperty("cache.dir"));
+        assertEquals("/some/dir/fmw_12.2.1.4.0_wls_Disk1_1of1.zip", loaded.getProperty("wls_12.2.1.4.0"));
+        assertEquals("line1\nline2\\", loaded.getProperty("odd\tkey"));
+        assertNull(loaded.getProperty("28186730_opatch"));
+    }
+
+    @Test
+    void discardIncompleteRecord(@TempDir Path cacheDir) throws IOException {
+        Path snapshot = cacheDir.resolve(".metadata");
+        MetadataJournal journal = new MetadataJournal(snapshot);
+        journal.put("complete", "value");
+        // simulate a process that stopped in the middle of writing a record
+        Files.write(journal.journalFile(), "+\tpartial\t/some/fi".getBytes(StandardCharsets.UTF_8),
+            StandardOpenOption.APPEND);
+
+        Properties loaded = new Properties();
+        MetadataJournal reloaded = new MetadataJournal(snapshot);
+        reloaded.load(loaded);
+        assertEquals("value", loaded.getProperty("complete"));
+        assertNull(loaded.getProperty("partial"));
+
+        // new records must not be appended to the discarded fragment
+        reloaded.put("next", "value2");
+        Properties again = new Properties();
+        new MetadataJournal(snapshot).load(again);
+        assertEquals("value2", again.getProperty("next"));
+        assertEquals(2, again.size());
+    }
+
+    @Test
+    void compactJournal(@TempDir Path cacheDir) throws IOException {
+        Path snapshot = cacheDir.resolve(".metadata");
+        MetadataJournal journal = new MetadataJournal(snapshot);
+        Properties properties = new Properties();
+        int count = 0;
+        // repeatedly updating the same few entries should trigger compaction
+        while (!journal.needsCompaction(properties.size())) {
+            properties.put("key" + count % 10, "value" + count);
+            journal.put("key" + count % 10, "value" + count);
+            count++;
+        }
+        assertTrue(count > 10);
+        journal.compact(properties);
+        assertEquals(1, Files.readAllLines(journal.journalFile()).size(), "only the generation should remain");
+        assertFalse(journal.needsCompaction(properties.size()));
+
+        Properties loaded = new Properties();
+        new MetadataJournal(snapshot).load(loaded);
+        assertEquals(properties, loaded);
+    }
+
+    @Test
+    void refreshFromOtherProcess(@TempDir Path cacheDir) throws IOException {
+        Path snapshot = cacheDir.resolve(".metadata");
+        // two journals on the same file behave like two processes sharing a cache directory
+        MetadataJournal first = new MetadataJournal(snapshot);
+        MetadataJournal second = new MetadataJournal(snapshot);
+        Properties firstProps = new Properties();
+        Properties secondProps = new Properties();
+        first.load(firstProps);
+        second.load(secondProps);
+
+        firstProps.put("key1", "value1");
+        first.put("key1", "value1");
+        second.refresh(secondProps);
+        assertEquals("value1", secondProps.getProperty("key1"));
+
+        // after the first process compacts, the second process reloads the new snapshot
+        firstProps.put("key2", "value2");
+        first.put("key2", "value2");
+        first.compact(firstProps);
+        firstProps.remove("key1");
+        first.remove("key1");
+        second.refresh(secondProps);
+        assertEquals(firstProps, secondProps);
+
+        secondProps.put("key3", "value3");
+        second.put("key3", "value3");
+        first.refresh(firstProps);
+        assertEquals("value3", firstProps.getProperty("key3"));
+        assertEquals(2, firstProps.size());
+    }
+
+    @Test
+    void usageRecords(@TempDir Path cacheDir) throws IOException {
+        Path snapshot = cacheDir.resolve(".metadata");
+        MetadataJournal journal = new MetadataJournal(snapshot);
+        Properties properties = new Properties();
+        properties.put("key1", "value1");
+        properties.put("key2", "value2");
+        journal.put("key1", "value1");
+        journal.put("key2", "value2");
+        journal.access("key1", new CacheUsage(1000, 10));
+        journal.access("key2", new CacheUsage(2000, 20));
+        journal.access("key1", new CacheUsage(3000, 10));
+
+        MetadataJournal reloaded = new MetadataJournal(snapshot);
+        reloaded.load(new Properties());
+        assertEquals(3000, reloaded.usage().get("key1").lastAccess());
+        assertEquals(20, reloaded.usage().get("key2").size());
+
+        // usage survives compaction, and is removed with the entry
+        journal.compact(properties);
+        properties.remove("key2");
+        journal.remove("key2");
+        reloaded = new MetadataJournal(snapshot);
+        Properties loaded = new Properties();
+        reloaded.load(loaded);
+        assertEquals(properties, loaded);
+        assertEquals(3000, reloaded.usage().get("key1").lastAccess());
+        assertNull(reloaded.usage().get("key2"));
+    }
+}
@@ -3,11 +3,10 @@
 
 package com.oracle.weblogic.imagetool.cachestore;
 
-import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
-import java.io.InputStreamReader;
+import java.io.InputStream;
 import java.lang.reflect.Field;
 import java.nio.file.Files;
 import java.nio.file.Path;
@@ -16,8 +15,6 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.logging.Level;
-import java.util.stream.Collectors;
-import javax.xml.xpath.XPathExpressionException;
 
 import com.oracle.weblogic.imagetool.aru.AruException;
 import com.oracle.weblogic.imagetool.aru.AruPatch;
@@ -25,13 +22,11 @@ import com.oracle.weblogic.imagetool.aru.AruUtil;
 import com.oracle.weblogic.imagetool.aru.VersionNotFoundException;
 import com.oracle.weblogic.imagetool.logging.LoggingFacade;
 import com.oracle.weblogic.imagetool.logging.LoggingFactory;
-import com.oracle.weblogic.imagetool.util.HttpUtil;
 import org.junit.jupiter.api.AfterAll;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.Tag;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.io.TempDir;
-import org.w3c.dom.Document;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
@@ -79,7 +74,7 @@ class PatchFileTest {
      * Intercept calls to the ARU REST API during unit testing.
      */
     public static class TestAruUtil extends AruUtil {
-        private Map<String, Document> responseCache = new HashMap<>();
+        private Map<String, List<AruPatch>> responseCache = new HashMap<>();
 
         /**
          * Intercept calls to the ARU REST API during unit testing.
@@ -95,19 +90,17 @@ class PatchFileTest {
 
         @Override
         public List<AruPatch> getPatches(String bugNumber, String userId, String password)
-            throws XPathExpressionException, AruException, IOException {
+            throws AruException, IOException {
             if (userId == null) {
                 return super.getPatches(bugNumber, userId, password);
             } else {
-                return AruPatch.getPatches(responseCache.get(bugNumber));
+                return responseCache.get(bugNumber);
             }
         }
 
-        private Document getResource(String path) throws IOException {
-            try (BufferedReader buffer = new BufferedReader(new InputStreamReader(
-                this.getClass().getResourceAsStream(path)))) {
-                String doc = buffer.lines().collect(Collectors.joining("\n"));
-                return HttpUtil.parseXmlString(doc);
+        private List<AruPatch> getResource(String path) throws IOException {
+            try (InputStream input = this.getClass().getResourceAsStream(path)) {
+                return AruPatch.getPatches(input);
             }
         }
 
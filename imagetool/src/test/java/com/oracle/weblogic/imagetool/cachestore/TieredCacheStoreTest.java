@@ -0,0 +1,148 @@
+// Copyright (c) 2021, Oracle and/or its affiliates.
+// Licensed under the Universal Permissive License v 1.0 as shown at https://oss.oracle.com/licenses/upl.
+
+package com.oracle.weblogic.imagetool.cachestore;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.oracle.weblogic.imagetool.util.Utils;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertLinesMatch;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@Tag("unit")
+class TieredCacheStoreTest {
+
+    static final List<String> fileContents = Arrays.asList("A", "B", "C");
+
+    /**
+     * Create a shared cache directory with one installer and one patch, and a corrupt patch.
+     */
+    private static void createSharedCache(Path shared) throws IOException {
+        CacheManifest manifest = new CacheManifest();
+        Path installer = Files.write(Files.createDirectories(shared.resolve("files")).resolve("fmw_wls.zip"),
+            fileContents);
+        manifest.add("wls_12.2.1.4.0", "files/fmw_wls.zip", Utils.sha256(installer), Files.size(installer));
+        Path patch = Files.write(shared.resolve("files/p1110001_122140_Generic.zip"), Arrays.asList("D", "E"));
+        manifest.add("1110001_12.2.1.4.0", "files/p1110001_122140_Generic.zip", Utils.sha256(patch),
+            Files.size(patch));
+        Path corrupt = Files.write(shared.resolve("files/p1110002_122140_Generic.zip"), Arrays.asList("F"));
+        manifest.add("1110002_12.2.1.4.0", "files/p1110002_122140_Generic.zip", Utils.sha256(corrupt),
+            Files.size(corrupt) + 1);
+        try (OutputStream output = Files.newOutputStream(shared.resolve(CacheManifest.FILE_NAME))) {
+            manifest.write(output);
+        }
+    }
+
+    @Test
+    void readThroughDirectory(@TempDir Path cacheDir, @TempDir Path shared) throws IOException {
+        createSharedCache(shared);
+        CacheStore local = new CacheStoreTestImpl(cacheDir);
+        CacheStore cache = new TieredCacheStore(local, RemoteCacheTier.of(shared.toString()));
+
+        // checking the cache does not copy the file from the shared cache
+        assertNull(cache.getValueFromCache("wls_12.2.1.4.0"));
+        assertFalse(Files.exists(cacheDir.resolve("fmw_wls.zip")));
+
+        String value = cache.fetchValue("wls_12.2.1.4.0");
+        assertEquals(cacheDir.resolve("fmw_wls.zip").toString(), value);
+        assertLinesMatch(fileContents, Files.readAllLines(cacheDir.resolve("fmw_wls.zip")));
+        assertEquals(value, local.getValueFromCache("wls_12.2.1.4.0"), "file should be kept in the local cache");
+
+        // a patch can be found by digest, like PatchFile does when the key is not in the cache
+        String digest = Utils.sha256(shared.resolve("files/p1110001_122140_Generic.zip"));
+        assertEquals(cacheDir.resolve("p1110001_122140_Generic.zip").toString(),
+            cache.getFileByDigest(digest, "p1110001_122140_Generic.zip"));
+
+        assertNull(cache.fetchValue("wls_14.1.1.0.0"));
+    }
+
+    @Test
+    void rejectCorruptFile(@TempDir Path cacheDir, @TempDir Path shared) throws IOException {
+        createSharedCache(shared);
+        CacheStore local = new CacheStoreTestImpl(cacheDir);
+        CacheStore cache = new TieredCacheStore(local, RemoteCacheTier.of(shared.toUri().toString()));
+
+        assertNull(cache.fetchValue("1110002_12.2.1.4.0"));
+        assertFalse(Files.exists(cacheDir.resolve("p1110002_122140_Generic.zip")));
+        assertFalse(Files.exists(cacheDir.resolve("p1110002_122140_Generic.zip.part")));
+    }
+
+    @Test
+    void readThroughHttp(@TempDir Path cacheDir, @TempDir Path shared) throws IOException {
+        createSharedCache(shared);
+        AtomicInteger requests = new AtomicInteger();
+        HttpServer server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/shared/", exchange -> {
+            requests.incrementAndGet();
+            Path file = shared.resolve(exchange.getRequestURI().getPath().substring("/shared/".length()));
+            if (Files.isRegularFile(file)) {
+                exchange.sendResponseHeaders(200, Files.size(file));
+                try (OutputStream output = exchange.getResponseBody()) {
+                    Files.copy(file, output);
+                }
+            } else {
+                exchange.sendResponseHeaders(404, -1);
+            }
+            exchange.close();
+        });
+        server.start();
+        try {
+            String url = "http://localhost:" + server.getAddress().getPort() + "/shared";
+            CacheStore local = new CacheStoreTestImpl(cacheDir);
+            CacheStore cache = new TieredCacheStore(local, RemoteCacheTier.of(url));
+
+            String value = cache.fetchValue("1110001_12.2.1.4.0");
+            assertTrue(value.endsWith("p1110001_122140_Generic.zip"));
+            assertLinesMatch(Arrays.asList("D", "E"),
+                Files.readAllLines(cacheDir.resolve("p1110001_122140_Generic.zip")));
+            // the manifest and the file
+            assertEquals(2, requests.get());
+
+            // the second lookup is served from the local cache
+            assertEquals(value, cache.fetchValue("1110001_12.2.1.4.0"));
+            assertEquals(2, requests.get());
+        } finally {
+            server.stop(0);
+        }
+    }
+
+    @Test
+    void rememberManifestFailure(@TempDir Path cacheDir) throws IOException {
+        AtomicInteger requests = new AtomicInteger();
+        HttpServer server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/shared/", exchange -> {
+            requests.incrementAndGet();
+            exchange.sendResponseHeaders(500, -1);
+            exchange.close();
+        });
+        server.start();
+        try {
+            String url = "http://localhost:" + server.getAddress().getPort() + "/shared";
+            CacheStore cache = new TieredCacheStore(new CacheStoreTestImpl(cacheDir), RemoteCacheTier.of(url));
+
+            assertNull(cache.fetchValue("wls_12.2.1.4.0"));
+            assertEquals(1, requests.get());
+            // the shared cache is not asked again for the rest of the run
+            assertNull(cache.fetchValue("1110001_12.2.1.4.0"));
+            assertNull(cache.getFileByDigest("abcdef", "p1110001_122140_Generic.zip"));
+            assertEquals(1, requests.get());
+        } finally {
+            server.stop(0);
+        }
+    }
+}
@@ -0,0 +1,58 @@
+// Copyright (c) 2021, Oracle and/or its affiliates.
+// Licensed under the Universal Permissive License v 1.0 as shown at https://oss.oracle.com/licenses/upl.
+
+package com.oracle.weblogic.imagetool.cli.cache;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintWriter;
+
+import com.oracle.weblogic.imagetool.api.model.CommandResponse;
+import com.oracle.weblogic.imagetool.cli.ImageTool;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@Tag("unit")
+class PrefetchPatchesTest {
+
+    private ByteArrayOutputStream byteArrayOutputStream = null;
+    private PrintWriter printStream = null;
+
+    @BeforeEach
+    void setup() {
+        byteArrayOutputStream = new ByteArrayOutputStream();
+        printStream = new PrintWriter(byteArrayOutputStream);
+    }
+
+    @AfterEach
+    void teardown() {
+        if (printStream != null) {
+            printStream.close();
+        }
+    }
+
+    @Test
+    void testMissingVersion() {
+        ImageTool.run(new PrefetchPatches(), printStream, printStream, "--user", "user@example.com");
+        assertTrue(new String(byteArrayOutputStream.toByteArray()).contains("Missing required option"));
+    }
+
+    @Test
+    void testInvalidType() {
+        CommandResponse response = ImageTool.run(new PrefetchPatches(), printStream, printStream,
+            "--user", "user@example.com", "--version", "12.2.1.4.0", "--type", "WLS,NOTATYPE");
+        assertEquals(2, response.getStatus());
+    }
+
+    @Test
+    void testMissingPassword() {
+        CommandResponse response = ImageTool.run(new PrefetchPatches(), printStream, printStream,
+            "--user", "user@example.com", "--version", "12.2.1.4.0,14.1.1.0.0", "--type", "WLS,FMW");
+        assertEquals(1, response.getStatus());
+        assertTrue(response.getMessage().contains("No credentials provided"), response.getMessage());
+    }
+}
@@ -12,12 +12,16 @@ import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 import java.util.logging.Level;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
 import com.oracle.weblogic.imagetool.api.model.CachedFile;
+import com.oracle.weblogic.imagetool.aru.AruPatch;
+import com.oracle.weblogic.imagetool.aru.PatchLock;
+import com.oracle.weblogic.imagetool.installer.FmwInstallerType;
 import com.oracle.weblogic.imagetool.logging.LoggingFacade;
 import com.oracle.weblogic.imagetool.logging.LoggingFactory;
 import com.oracle.weblogic.imagetool.util.DockerfileOptions;
@@ -27,6 +31,8 @@ import org.junit.jupiter.api.io.TempDir;
 import picocli.CommandLine;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.junit.jupiter.api.Assertions.fail;
 
 @Tag("unit")
@@ -152,6 +158,33 @@ class CommonOptionsTest {
         }
     }
 
+    /**
+     * A patch lock file can only be used for the installer type and version that it was resolved for.
+     * @throws Exception if reflection fails (developer error)
+     */
+    @Test
+    void patchLockInstallerMismatch() throws Exception {
+        AruPatch patch = new AruPatch().patchId("31544340").version("12.2.1.4.0")
+            .fileName("p31544340_122140_Generic.zip");
+        PatchLock lock = new PatchLock("WLS", "12.2.1.4.0", Collections.singletonList(patch), null);
+
+        CreateImage createImage = new CreateImage();
+        new CommandLine(createImage).parseArgs("--tag", "tag:1", "--version", "12.2.1.4.0");
+        // accessing private fields normally set by initializeOptions
+        Field lockField = CommonPatchingOptions.class.getDeclaredField("patchLock");
+        lockField.setAccessible(true);
+        lockField.set(createImage, lock);
+
+        // same version, different installer type
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class,
+            () -> createImage.handlePatchFiles(FmwInstallerType.FMW, Collections.emptyList()));
+        assertTrue(e.getMessage().contains("WLS 12.2.1.4.0"), e.getMessage());
+        // same installer type, different version
+        lockField.set(createImage, new PatchLock("FMW", "14.1.1.0.0", Collections.singletonList(patch), null));
+        assertThrows(IllegalArgumentException.class,
+            () -> createImage.handlePatchFiles(FmwInstallerType.FMW, Collections.emptyList()));
+    }
+
     /**
      * Test resolving options in a list of input files.
      *
@@ -0,0 +1,49 @@
+// Copyright (c) 2021, Oracle and/or its affiliates.
+// Licensed under the Universal Permissive License v 1.0 as shown at https://oss.oracle.com/licenses/upl.
+
+package com.oracle.weblogic.imagetool.cli.menu;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import com.oracle.weblogic.imagetool.installer.FmwInstallerType;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@Tag("unit")
+class PatchResolverTest {
+
+    private static List<String> provided(String... patches) {
+        return PatchResolver.providedPatches(Arrays.asList(patches)).stream()
+            .map(PatchResolver.ProvidedPatch::toString)
+            .collect(Collectors.toList());
+    }
+
+    @Test
+    void providedPatchesInOrder() {
+        // the OPatch patch is skipped, and a patch listed twice with the same version is used once
+        assertEquals(Arrays.asList("123_12.2.1.4.0", "456", "789_12.2.1.4.210330"),
+            provided("123_12.2.1.4.0", "456", "28186730", "123_12.2.1.4.0", "789_12.2.1.4.210330", "456"));
+    }
+
+    @Test
+    void duplicateBugNumberWithDifferentVersions() {
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class,
+            () -> provided("123_12.2.1.4.0", "456", "123_12.2.1.4.210330"));
+        assertTrue(e.getMessage().contains("123_12.2.1.4.0 and 123_12.2.1.4.210330"), e.getMessage());
+
+        // a version for a patch that was also listed without one
+        assertThrows(IllegalArgumentException.class, () -> provided("123", "123_12.2.1.4.0"));
+
+        // resolve fails before searching ARU
+        PatchResolver resolver = new PatchResolver(FmwInstallerType.WLS, "12.2.1.4.0")
+            .patches(Arrays.asList("123_A", "123_B"));
+        assertThrows(IllegalArgumentException.class, () -> resolver.resolve(Collections.emptyList()));
+    }
+}
@@ -0,0 +1,154 @@
+// Copyright (c) 2021, Oracle and/or its affiliates.
+// Licensed under the Universal Permissive License v 1.0 as shown at https://oss.oracle.com/licenses/upl.
+
+package com.oracle.weblogic.imagetool.util;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.apache.http.client.fluent.Executor;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+@Tag("unit")
+class HttpDownloaderTest {
+
+    private final byte[] contents = new byte[300 * 1024];
+    private final List<String> ranges = Collections.synchronizedList(new ArrayList<>());
+    private HttpServer server;
+    private String url;
+    private boolean ignoreRanges;
+
+    @BeforeEach
+    void startServer() throws IOException {
+        new Random(42).nextBytes(contents);
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/patch.zip", this::serve);
+        server.start();
+        url = "http://127.0.0.1:" + server.getAddress().getPort() + "/patch.zip";
+    }
+
+    @AfterEach
+    void stopServer() {
+        server.stop(0);
+    }
+
+    /**
+     * The first request fails after sending half of the file, and later requests honor the Range header.
+     */
+    private void serve(HttpExchange exchange) throws IOException {
+        String range = exchange.getRequestHeaders().getFirst("Range");
+        ranges.add(String.valueOf(range));
+        if (ignoreRanges) {
+            range = null;
+        }
+        try (OutputStream output = exchange.getResponseBody()) {
+            if (range == null) {
+                exchange.sendResponseHeaders(200, contents.length);
+                if (ranges.size() == 1) {
+                    // closing the stream before the whole body was sent drops the connection
+                    output.write(contents, 0, contents.length / 2);
+                    return;
+                }
+                output.write(contents);
+            } else {
+                String[] bounds = range.substring("bytes=".length()).split("-", -1);
+                int start = Integer.parseInt(bounds[0]);
+                int end = bounds[1].isEmpty() ? contents.length - 1 : Integer.parseInt(bounds[1]);
+                exchange.getResponseHeaders().add("Content-Range",
+                    "bytes " + start + "-" + end + "/" + contents.length);
+                exchange.sendResponseHeaders(206, end + 1 - start);
+                output.write(contents, start, end + 1 - start);
+            }
+        }
+    }
+
+    private static RetryPolicy retries(int attempts) {
+        return new RetryPolicy(attempts, 0, 0, 100, 100, 0);
+    }
+
+    @Test
+    void resumeInterruptedDownload(@TempDir Path dir) throws IOException {
+        Path target = dir.resolve("patch.zip");
+        new HttpDownloader(Executor.newInstance()).retryPolicy(retries(2))
+            .download(url, target, contents.length, Utils.toHex(Utils.sha256Digest().digest(contents)));
+        assertArrayEquals(contents, Files.readAllBytes(target));
+        assertFalse(Files.exists(Paths.get(target + ".part")));
+        assertEquals(2, ranges.size());
+        assertEquals("bytes=" + contents.length / 2 + "-", ranges.get(1));
+    }
+
+    @Test
+    void resumePartialFile(@TempDir Path dir) throws IOException {
+        // a partial file left by an earlier build
+        Path target = dir.resolve("patch.zip");
+        byte[] partial = new byte[100 * 1024];
+        System.arraycopy(contents, 0, partial, 0, partial.length);
+        Files.write(Paths.get(target + ".part"), partial);
+
+        new HttpDownloader(Executor.newInstance()).retryPolicy(retries(1))
+            .download(url, target, contents.length, Utils.toHex(Utils.sha256Digest().digest(contents)));
+        assertArrayEquals(contents, Files.readAllBytes(target));
+        assertEquals(Collections.singletonList("bytes=" + partial.length + "-"), ranges);
+    }
+
+    @Test
+    void segmentedDownload(@TempDir Path dir) throws IOException {
+        ranges.add("skip the interrupted response");
+        Path target = dir.resolve("patch.zip");
+        new HttpDownloader(Executor.newInstance()).retryPolicy(retries(1)).segments(4, 64 * 1024)
+            .download(url, target, contents.length, Utils.toHex(Utils.sha256Digest().digest(contents)));
+        assertArrayEquals(contents, Files.readAllBytes(target));
+        assertFalse(Files.exists(Paths.get(target + ".part")));
+        List<String> requested = new ArrayList<>(ranges.subList(1, ranges.size()));
+        Collections.sort(requested);
+        // 300K in segments of at least 64K
+        assertEquals(Arrays.asList("bytes=0-76799", "bytes=153600-230399", "bytes=230400-307199",
+            "bytes=76800-153599"), requested);
+    }
+
+    @Test
+    void segmentedDownloadWithoutRanges(@TempDir Path dir) throws IOException {
+        ranges.add("skip the interrupted response");
+        ignoreRanges = true;
+        Path target = dir.resolve("patch.zip");
+        new HttpDownloader(Executor.newInstance()).retryPolicy(retries(1)).segments(2, 64 * 1024)
+            .download(url, target, contents.length, Utils.toHex(Utils.sha256Digest().digest(contents)));
+        assertArrayEquals(contents, Files.readAllBytes(target));
+        // two segment requests, and then one request for the whole file
+        assertEquals(4, ranges.size());
+        assertEquals("null", ranges.get(3));
+    }
+
+    @Test
+    void rejectWrongDigest(@TempDir Path dir) {
+        ranges.add("skip the interrupted response");
+        Path target = dir.resolve("patch.zip");
+        String wrongHash = Utils.toHex(Utils.sha256Digest().digest(new byte[1]));
+        HttpDownloader downloader = new HttpDownloader(Executor.newInstance()).retryPolicy(retries(3));
+        assertThrows(IOException.class, () -> downloader.download(url, target, contents.length, wrongHash));
+        assertFalse(Files.exists(target));
+        assertFalse(Files.exists(Paths.get(target + ".part")));
+        // a complete download with the wrong digest is not retried
+        assertEquals(2, ranges.size());
+    }
+}
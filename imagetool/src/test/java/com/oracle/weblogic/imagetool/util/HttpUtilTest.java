@@ -0,0 +1,56 @@
+// Copyright (c) 2021, Oracle and/or its affiliates.
+// Licensed under the Universal Permissive License v 1.0 as shown at https://oss.oracle.com/licenses/upl.
+
+package com.oracle.weblogic.imagetool.util;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import com.sun.net.httpserver.HttpServer;
+import org.apache.http.client.fluent.Executor;
+import org.apache.http.client.fluent.Request;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+@Tag("unit")
+class HttpUtilTest {
+
+    @Test
+    void oneClientPerCredentials() {
+        Executor executor = HttpUtil.getHttpExecutor("user@example.com", "password1");
+        assertSame(executor, HttpUtil.getHttpExecutor("user@example.com", "password1"));
+        assertNotSame(executor, HttpUtil.getHttpExecutor("user@example.com", "password2"));
+        assertNotSame(executor, HttpUtil.getHttpExecutor(null, null));
+        assertSame(HttpUtil.getOraClient("user@example.com", "password1"),
+            HttpUtil.getOraClient("user@example.com", "password1"));
+    }
+
+    @Test
+    void keepSessionCookies() throws IOException {
+        List<String> cookies = Collections.synchronizedList(new ArrayList<>());
+        HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/", exchange -> {
+            cookies.add(String.valueOf(exchange.getRequestHeaders().getFirst("Cookie")));
+            exchange.getResponseHeaders().add("Set-Cookie", "session=abc; Path=/");
+            exchange.sendResponseHeaders(200, -1);
+            exchange.close();
+        });
+        server.start();
+        try {
+            String url = "http://127.0.0.1:" + server.getAddress().getPort() + "/";
+            HttpUtil.getHttpExecutor("cookie@example.com", "password").execute(Request.Get(url)).discardContent();
+            HttpUtil.getHttpExecutor("cookie@example.com", "password").execute(Request.Get(url)).discardContent();
+            assertEquals("null", cookies.get(0));
+            assertEquals("session=abc", cookies.get(1));
+        } finally {
+            server.stop(0);
+        }
+    }
+}
@@ -0,0 +1,48 @@
+// Copyright (c) 2021, Oracle and/or its affiliates.
+// Licensed under the Universal Permissive License v 1.0 as shown at https://oss.oracle.com/licenses/upl.
+
+package com.oracle.weblogic.imagetool.util;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@Tag("unit")
+class ParallelTasksTest {
+
+    @Test
+    void collectFailures() throws InterruptedException {
+        List<Integer> items = Arrays.asList(1, 2, 3, 4, 5, 6);
+        AtomicInteger done = new AtomicInteger();
+        Map<Integer, Exception> failures = ParallelTasks.forEach(items, 3, "test", item -> {
+            if (item % 2 == 0) {
+                throw new IOException("failed " + item);
+            }
+            done.incrementAndGet();
+        });
+        assertEquals(3, done.get(), "every item is processed, even after a failure");
+        assertEquals(Arrays.asList(2, 4, 6), Arrays.asList(failures.keySet().toArray()));
+        assertEquals("failed 4", failures.get(4).getMessage());
+    }
+
+    @Test
+    void runConcurrently() throws InterruptedException {
+        // every task waits for all of the others, which only works if they run at the same time
+        CountDownLatch running = new CountDownLatch(3);
+        Map<String, Exception> failures = ParallelTasks.forEach(Arrays.asList("a", "b", "c"), 3, "test", item -> {
+            running.countDown();
+            assertTrue(running.await(10, TimeUnit.SECONDS));
+        });
+        assertTrue(failures.isEmpty());
+    }
+}
@@ -0,0 +1,104 @@
+// Copyright (c) 2021, Oracle and/or its affiliates.
+// Licensed under the Universal Permissive License v 1.0 as shown at https://oss.oracle.com/licenses/upl.
+
+package com.oracle.weblogic.imagetool.util;
+
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.UnknownHostException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.http.HttpStatus;
+import org.apache.http.HttpVersion;
+import org.apache.http.client.HttpResponseException;
+import org.apache.http.message.BasicHttpResponse;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@Tag("unit")
+class RetryPolicyTest {
+
+    private final AtomicInteger calls = new AtomicInteger();
+
+    private String failTimes(int failures) throws IOException {
+        if (calls.incrementAndGet() <= failures) {
+            throw new ConnectException("Connection refused");
+        }
+        return "ok";
+    }
+
+    @Test
+    void retryableErrors() {
+        assertTrue(RetryPolicy.isRetryable(new ConnectException("Connection refused")));
+        assertTrue(RetryPolicy.isRetryable(new HttpResponseException(503, "Service Unavailable")));
+        assertTrue(RetryPolicy.isRetryable(new HttpResponseException(429, "Too Many Requests")));
+        assertFalse(RetryPolicy.isRetryable(new HttpResponseException(404, "Not Found")));
+        assertFalse(RetryPolicy.isRetryable(new UnknownHostException("updates.oracle.com")));
+    }
+
+    @Test
+    void exponentialDelayWithJitter() {
+        RetryPolicy policy = new RetryPolicy(10, 1000, 8000, 10, 10, 0);
+        IOException error = new ConnectException("Connection refused");
+        for (int i = 0; i < 20; i++) {
+            long first = policy.delay(1, error);
+            assertTrue(first >= 500 && first <= 1000, String.valueOf(first));
+            long third = policy.delay(3, error);
+            assertTrue(third >= 2000 && third <= 4000, String.valueOf(third));
+            long capped = policy.delay(9, error);
+            assertTrue(capped >= 4000 && capped <= 8000, String.valueOf(capped));
+        }
+    }
+
+    @Test
+    void honorRetryAfter() {
+        BasicHttpResponse response = new BasicHttpResponse(HttpVersion.HTTP_1_1, 429, "Too Many Requests");
+        response.addHeader("Retry-After", "30");
+        HttpResponseException error = RetryPolicy.statusError(response, "https://updates.oracle.com");
+        assertEquals(429, error.getStatusCode());
+        long delay = new RetryPolicy(5, 1000, 8000, 10, 10, 0).delay(1, error);
+        assertTrue(delay >= 30000 && delay <= 31000, String.valueOf(delay));
+
+        BasicHttpResponse notFound = new BasicHttpResponse(HttpVersion.HTTP_1_1, HttpStatus.SC_NOT_FOUND, "Not Found");
+        assertFalse(RetryPolicy.statusError(notFound, "url") instanceof RetryPolicy.RetryAfterException);
+    }
+
+    @Test
+    void retryUntilSuccess() throws IOException {
+        RetryPolicy policy = new RetryPolicy(3, 0, 0, 10, 10, 0);
+        assertEquals("ok", policy.execute("test", () -> failTimes(2)));
+        assertEquals(3, calls.get());
+
+        calls.set(0);
+        assertThrows(ConnectException.class, () -> policy.execute("test", () -> failTimes(3)));
+        assertEquals(3, calls.get());
+    }
+
+    @Test
+    void retryBudget() throws IOException {
+        // one retry for the whole run
+        RetryPolicy policy = new RetryPolicy(3, 0, 0, 1, 10, 0);
+        assertEquals("ok", policy.execute("first", () -> failTimes(1)));
+        calls.set(0);
+        assertThrows(ConnectException.class, () -> policy.execute("second", () -> failTimes(1)));
+        assertEquals(1, calls.get());
+    }
+
+    @Test
+    void openCircuitAfterFailures() {
+        RetryPolicy policy = new RetryPolicy(2, 0, 0, 100, 3, 60000);
+        assertThrows(ConnectException.class, () -> policy.execute("first", () -> failTimes(100)));
+        // the third failure in a row opens the circuit
+        assertThrows(ConnectException.class, () -> policy.execute("second", () -> failTimes(100)));
+        assertEquals(3, calls.get());
+        // requests fail without being sent while the circuit is open
+        IOException error = assertThrows(IOException.class, () -> policy.execute("third", () -> failTimes(0)));
+        assertTrue(error.getMessage().contains("third"), error.getMessage());
+        assertEquals(3, calls.get());
+    }
+}
@@ -0,0 +1,90 @@
+// Copyright (c) 2021, Oracle and/or its affiliates.
+// Licensed under the Universal Permissive License v 1.0 as shown at https://oss.oracle.com/licenses/upl.
+
+package com.oracle.weblogic.imagetool.util;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@Tag("unit")
+class SingleFlightTest {
+
+    private final SingleFlight<String, Object> requests = new SingleFlight<>();
+    private final AtomicInteger calls = new AtomicInteger();
+
+    private List<Integer> threads(int count) {
+        List<Integer> result = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            result.add(i);
+        }
+        return result;
+    }
+
+    /**
+     * A call that stays in flight until every thread is about to ask for the same key, and a little longer.
+     */
+    private <V> SingleFlight.Call<V> slowCall(CountDownLatch started, SingleFlight.Call<V> call) {
+        return () -> {
+            calls.incrementAndGet();
+            try {
+                started.await(5, TimeUnit.SECONDS);
+                Thread.sleep(200);
+            } catch (InterruptedException e) {
+                throw new IOException(e);
+            }
+            return call.call();
+        };
+    }
+
+    @Test
+    void shareOneCall() throws Exception {
+        CountDownLatch started = new CountDownLatch(8);
+        Object response = new Object();
+        Map<Integer, Object> results = new ConcurrentHashMap<>();
+        Map<Integer, Exception> failures = ParallelTasks.forEach(threads(8), 8, "single-flight", thread -> {
+            started.countDown();
+            results.put(thread, requests.execute("https://example.com/releases", slowCall(started, () -> response)));
+        });
+
+        assertTrue(failures.isEmpty(), failures.toString());
+        assertEquals(1, calls.get());
+        assertEquals(8, results.size());
+        results.values().forEach(result -> assertSame(response, result));
+        assertEquals(0, requests.inFlight());
+
+        // the result is not kept after the call
+        requests.execute("https://example.com/releases", calls::incrementAndGet);
+        assertEquals(2, calls.get());
+    }
+
+    @Test
+    void shareFailure() throws Exception {
+        CountDownLatch started = new CountDownLatch(4);
+        Map<Integer, Exception> failures = ParallelTasks.forEach(threads(4), 4, "single-flight", thread -> {
+            started.countDown();
+            requests.execute("https://example.com/search", slowCall(started, () -> {
+                throw new IOException("ARU is not available");
+            }));
+        });
+
+        assertEquals(4, failures.size());
+        assertEquals(1, calls.get());
+        for (Exception failure : failures.values()) {
+            assertTrue(failure instanceof IOException);
+            assertTrue(failure.getMessage().contains("ARU is not available"), failure.getMessage());
+        }
+    }
+}
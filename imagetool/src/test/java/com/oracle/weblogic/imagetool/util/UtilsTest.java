@@ -6,6 +6,7 @@ package com.oracle.weblogic.imagetool.util;
 import java.io.IOException;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.logging.Level;
@@ -17,6 +18,7 @@ import org.junit.jupiter.api.Tag;
 import org.junit.jupiter.api.Test;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 @Tag("unit")
@@ -29,6 +31,20 @@ class UtilsTest {
         assertTrue(Utils.compareVersions("1.1", "1.0") > 0);
     }
 
+    @Test
+    void sizes() {
+        assertEquals(512, Utils.parseSize("512"));
+        assertEquals(20L * 1024 * 1024 * 1024, Utils.parseSize("20g"));
+        assertEquals(500L * 1024 * 1024, Utils.parseSize("500MB"));
+        assertThrows(IllegalArgumentException.class, () -> Utils.parseSize("lots"));
+        assertEquals("1.5G", Utils.formatSize(3L * 512 * 1024 * 1024));
+        assertEquals("100B", Utils.formatSize(100));
+        assertEquals(Duration.ofDays(30), Utils.parseDuration("30d"));
+        assertEquals("2.5s", Utils.formatDuration(Duration.ofMillis(2500)));
+        assertEquals("1m30s", Utils.formatDuration(Duration.ofSeconds(90)));
+        assertThrows(IllegalArgumentException.class, () -> Utils.parseDuration("30"));
+    }
+
     @Test
     void isEmptyString() {
         assertTrue(Utils.isEmptyString(""));
@@ -0,0 +1,46 @@
+// Copyright (c) 2021, Oracle and/or its affiliates.
+// Licensed under the Universal Permissive License v 1.0 as shown at https://oss.oracle.com/licenses/upl.
+
+package com.oracle.weblogic.imagetool.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import javax.xml.xpath.XPathExpressionException;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.w3c.dom.Document;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@Tag("unit")
+class XPathUtilTest {
+
+    @Test
+    void compileOncePerThread() throws XPathExpressionException {
+        assertSame(XPathUtil.compile("/results/patch/name"), XPathUtil.compile("/results/patch/name"));
+    }
+
+    @Test
+    void concurrentEvaluation() throws Exception {
+        List<Integer> items = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            items.add(i);
+        }
+        Map<Integer, String> results = new ConcurrentHashMap<>();
+        Map<Integer, Exception> failures = ParallelTasks.forEach(items, 8, "xpath", item -> {
+            Document document = HttpUtil.parseXmlString("<results><patch><name>" + item
+                + "</name></patch></results>");
+            results.put(item, XPathUtil.string(document, "/results/patch/name")
+                + XPathUtil.nodelist(document, "/results/patch").getLength());
+        });
+        assertTrue(failures.isEmpty(), failures.toString());
+        for (int item : items) {
+            assertEquals(item + "1", results.get(item));
+        }
+    }
+}